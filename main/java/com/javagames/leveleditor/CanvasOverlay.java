@@ -0,0 +1,187 @@
+package com.javagames.leveleditor;
+
+import com.javagames.leveleditor.model.Tile;
+
+import javax.swing.*;
+import javax.swing.plaf.LayerUI;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+// Draws the editing aids on top of the level canvas - the tile grid, the hovered cell with a preview of the
+// brush, and the marquees - through a JLayer, so they live apart from the tile layers. Moving the mouse only
+// repaints the cells the hover left and entered, and the canvas serves those from its tile back buffer.
+class CanvasOverlay extends LayerUI<LevelCanvas> {
+    private static final Color GRID_COLOR = new Color(0x80, 0x80, 0x80, 0x60);
+    private static final int MIN_GRID_CELL = 4;         // canvas pixels; finer grids are just noise
+    private static final Color HOVER_COLOR = new Color(0x00, 0x00, 0x00, 0x80);
+    private static final Color SELECTION_COLOR = Color.BLUE;
+    private static final Stroke SELECTION_STROKE = new BasicStroke(1.0f, BasicStroke.CAP_SQUARE,
+            BasicStroke.JOIN_MITER, 10.0f, new float[] {4.0f, 4.0f}, 0.0f);
+    private static final AlphaComposite PREVIEW_COMPOSITE = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f);
+
+    private final LevelCanvas canvas;
+    private JLayer<? extends LevelCanvas> layer;
+    private boolean showGrid;
+    private Point hoverCell;            // cell under the mouse (in tiles), or null
+    private TexturePaint gridPaint;     // one cell of grid lines, tiled; rebuilt when the cell size changes
+    private double gridCellWidth;
+    private double gridCellHeight;
+
+    CanvasOverlay(LevelCanvas canvas) {
+        this.canvas = canvas;
+    }
+
+    @Override
+    public void installUI(JComponent c) {
+        super.installUI(c);
+        @SuppressWarnings("unchecked")
+        JLayer<? extends LevelCanvas> installed = (JLayer<? extends LevelCanvas>) c;
+        layer = installed;
+        layer.setLayerEventMask(AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK);
+    }
+
+    @Override
+    public void uninstallUI(JComponent c) {
+        layer.setLayerEventMask(0);
+        layer = null;
+        super.uninstallUI(c);
+    }
+
+    public boolean isShowGrid() {
+        return showGrid;
+    }
+
+    public void setShowGrid(boolean showGrid) {
+        this.showGrid = showGrid;
+        repaint(null);
+    }
+
+    // repaints area (in canvas pixels, padded for the hover outline and brush), or everything if null
+    void repaint(Rectangle area) {
+        if (layer != null) {
+            if (area == null) {
+                layer.repaint();
+            } else {
+                layer.repaint(area.x - 2, area.y - 2, area.width + 4, area.height + 4);
+            }
+        }
+    }
+
+    // ------------------ mouse
+
+    @Override
+    protected void processMouseMotionEvent(MouseEvent e, JLayer<? extends LevelCanvas> l) {
+        setHoverCell(cellAt(SwingUtilities.convertPoint(e.getComponent(), e.getPoint(), canvas)));
+    }
+
+    @Override
+    protected void processMouseEvent(MouseEvent e, JLayer<? extends LevelCanvas> l) {
+        if (e.getID() == MouseEvent.MOUSE_EXITED) {
+            setHoverCell(null);
+        }
+    }
+
+    private Point cellAt(Point p) {
+        if (p.x < 0 || p.y < 0 || p.x >= canvas.getWidth() || p.y >= canvas.getHeight()) {
+            return null;
+        }
+        return canvas.tileAt(p);
+    }
+
+    private void setHoverCell(Point cell) {
+        if (cell == null ? hoverCell != null : !cell.equals(hoverCell)) {
+            Rectangle before = hoverArea();
+            hoverCell = cell;
+            Rectangle after = hoverArea();
+            if (before != null) {
+                repaint(before);
+            }
+            if (after != null) {
+                repaint(after);
+            }
+        }
+    }
+
+    // canvas pixels covered by the hovered cell and the brush drawn there, or null
+    private Rectangle hoverArea() {
+        if (hoverCell == null) {
+            return null;
+        }
+        Dimension brush = canvas.getBrushSize();
+        return canvas.tilesToCanvas(new Rectangle(hoverCell.x, hoverCell.y, brush.width, brush.height));
+    }
+
+    // ------------------ painting
+
+    @Override
+    public void paint(Graphics g, JComponent c) {
+        super.paint(g, c);
+        Graphics2D g2d = (Graphics2D) g.create();
+        Rectangle bounds = new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight());
+        g2d.clip(bounds);
+        if (showGrid) {
+            paintGrid(g2d, bounds);
+        }
+        paintHover(g2d);
+        paintMarquees(g2d);
+        g2d.dispose();
+    }
+
+    private void paintGrid(Graphics2D g2d, Rectangle bounds) {
+        double cellWidth = canvas.getTileSize().width() * canvas.getScale();
+        double cellHeight = canvas.getTileSize().height() * canvas.getScale();
+        if (cellWidth < MIN_GRID_CELL || cellHeight < MIN_GRID_CELL) {
+            return;
+        }
+        if (gridPaint == null || cellWidth != gridCellWidth || cellHeight != gridCellHeight) {
+            BufferedImage pattern = new BufferedImage((int) Math.ceil(cellWidth), (int) Math.ceil(cellHeight),
+                    BufferedImage.TYPE_INT_ARGB);
+            Graphics2D pg = pattern.createGraphics();
+            pg.setColor(GRID_COLOR);
+            pg.drawLine(0, 0, pattern.getWidth() - 1, 0);
+            pg.drawLine(0, 1, 0, pattern.getHeight() - 1);
+            pg.dispose();
+            gridPaint = new TexturePaint(pattern, new Rectangle2D.Double(0, 0, cellWidth, cellHeight));
+            gridCellWidth = cellWidth;
+            gridCellHeight = cellHeight;
+        }
+        g2d.setPaint(gridPaint);
+        Rectangle clip = g2d.getClipBounds();
+        g2d.fill(clip != null ? clip : bounds);
+    }
+
+    // the selected tile at half opacity, or the stamp's outline, with the hovered cell outlined on top
+    private void paintHover(Graphics2D g2d) {
+        Rectangle area = hoverArea();
+        if (area == null) {
+            return;
+        }
+        Tile selected = canvas.getSelectedTile();
+        if (canvas.getBrushSize().width == 1 && selected != null && selected.getImage() != null) {
+            Composite composite = g2d.getComposite();
+            g2d.setComposite(PREVIEW_COMPOSITE);
+            g2d.drawImage(selected.getImage(), area.x, area.y, area.width, area.height, null);
+            g2d.setComposite(composite);
+        }
+        g2d.setColor(HOVER_COLOR);
+        g2d.drawRect(area.x, area.y, area.width - 1, area.height - 1);
+    }
+
+    private void paintMarquees(Graphics2D g2d) {
+        g2d.setColor(SELECTION_COLOR);
+        g2d.setStroke(SELECTION_STROKE);
+        Rectangle selection = canvas.getSelection();
+        if (selection != null) {
+            Rectangle area = canvas.tilesToCanvas(selection);
+            g2d.drawRect(area.x, area.y, area.width - 1, area.height - 1);
+        }
+        Rectangle objectMarquee = canvas.getObjectMarquee();
+        if (objectMarquee != null) {
+            double scale = canvas.getScale();
+            g2d.drawRect((int) (objectMarquee.x * scale), (int) (objectMarquee.y * scale),
+                    (int) (objectMarquee.width * scale), (int) (objectMarquee.height * scale));
+        }
+    }
+}
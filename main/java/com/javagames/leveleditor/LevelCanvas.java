@@ -1,33 +1,117 @@
 package com.javagames.leveleditor;
 
+import com.javagames.leveleditor.model.AnimatedCells;
+import com.javagames.leveleditor.model.AutoTiler;
+import com.javagames.leveleditor.model.CellBitmap;
+import com.javagames.leveleditor.model.CollisionMap;
+import com.javagames.leveleditor.model.DirtyRegion;
 import com.javagames.leveleditor.model.ImageSize;
+import com.javagames.leveleditor.model.LevelChangeEvent;
+import com.javagames.leveleditor.model.LevelChangeListener;
 import com.javagames.leveleditor.model.LevelData;
+import com.javagames.leveleditor.model.LevelObject;
+import com.javagames.leveleditor.model.LevelSnapshot;
+import com.javagames.leveleditor.model.ObjectLayer;
+import com.javagames.leveleditor.model.PathFinder;
 import com.javagames.leveleditor.model.Tile;
+import com.javagames.leveleditor.model.TileAnimations;
+import com.javagames.leveleditor.model.TileIndex;
+import com.javagames.leveleditor.model.TileRegion;
+import com.javagames.leveleditor.render.LevelRasterizer;
+import com.javagames.leveleditor.render.TileAtlas;
+import com.javagames.leveleditor.telemetry.EditorTelemetry;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.VolatileImage;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
 
 public class LevelCanvas extends JPanel {
     private static final String CURSOR_IMAGE_PATH = "images/cursor.png";
     private static final double DEFAULT_SCALE = 1.0d;
+    public static final double MIN_SCALE = 0.1d;
+    public static final double MAX_SCALE = 5.0d;
+    private static final int ZOOM_FRAME_MS = 16;    // wheel clicks arriving within one frame are applied as one zoom
+    private static final int ANIMATION_FRAME_MS = 16;   // animation ticks at about 60 fps
+    private static final int RASTERIZE_MIN_CELLS = 4096;   // cells to compose at once before it's worth going parallel
+    private static final int RESOLVE_CHUNK_ROWS = 64;   // level rows per task when resolving a loaded level's tiles
+    private static final Color HIGHLIGHT_COLOR = new Color(0xff, 0x00, 0xff, 0x60);    // translucent magenta
+    private static final Color PATH_COLOR = new Color(0x00, 0xc0, 0x40, 0xc0);        // translucent green
+    private static final Color NO_PATH_COLOR = new Color(0xff, 0x20, 0x20, 0xc0);     // translucent red
+    private static final Color OBJECT_SELECTED_COLOR = Color.YELLOW;
+    private static final Stroke OBJECT_SELECTED_STROKE = new BasicStroke(2.0f);
+    private static final String DEFAULT_OBJECT_TYPE = "spawn";
+    private static final Stroke PATH_STROKE = new BasicStroke(3.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
 
     private final LevelEditor editor;
     private final BufferedImage cursorImage;
+    private final Timer zoomTimer;
+    private final Timer animationTimer;
+    private final CanvasOverlay overlay;
+    private final LevelChangeListener levelListener = this::onLevelChanged;
 
     private LevelData data;
+    private SpritePanel palette;
     private Tile selectedTile;  // the currently selected tile (paint tool)
     private Tile[][] tiles;     // the multi-layer tile array to be rendered
     private Point buttonTile;   // the tile that was under the cursor when a button was pressed (in tiles, not pixels)
     private boolean dropping;   // true if dropping tiles onto canvas; false if clearing them
     private int currentLayer;   // the zero-based index of the current editing layer
     private double scale;       // the current scale factor of the canvas - used during rendering
+    private int highlightCode = Tile.EMPTY_CODE;    // tile code whose occurrences are highlighted (find all)
+    private Rectangle selection;        // marquee selection (in tiles), or null if nothing is selected
+    private Point selectionAnchor;      // tile where the current marquee drag started, or null if not dragging
+    private boolean selectAllLayers;    // true if selections span all layers; false for just the current layer
+    private TileRegion clipboard;       // last copied or cut region
+    private TileRegion stamp;           // the multi-tile stamp brush (paste tool), or null
+    private StrokeEdit stroke;          // undoable edits made by the current paint stroke
+    private int pendingZoomClicks;      // wheel clicks not yet applied to the scale
+    private Point zoomAnchor;           // canvas point under the cursor at the last wheel click
+    private AutoTiler autoTiler;        // terrain rules of the level, or null if it has none
+    private boolean autoTiling;         // true if painting terrain tiles picks edges and corners automatically
+    private CollisionMap collisionMap;  // solid cells of the level (path preview), or null
+    private IntPredicate blocked;       // collisionMap::isSetOnAnyLayer, made once so searches don't allocate
+    private PathFinder pathFinder;      // reused by every search while the level size stays the same
+    private boolean pathPreview;        // true if clicks and drags pick a start and goal instead of painting
+    private int pathStart = -1;         // start and goal cells of the previewed path, or -1
+    private int pathGoal = -1;
+    private long pathVersion;           // level version the path finder's search was started at
+    private Rectangle pathBounds;       // cells covered by the drawn path and its markers (for repaints), or null
+    private boolean objectMode;         // true if the mouse places, selects and moves objects instead of tiles
+    private String objectType = DEFAULT_OBJECT_TYPE;            // type of the objects placed by double clicks
+    private List<LevelObject> selectedObjects = new ArrayList<>();
+    private List<LevelObject> movedObjects;     // selected objects as they were when the current move began
+    private Point moveAnchor;           // level pixel where the current move began, or null if not moving
+    private Point objectAnchor;         // level pixel where the current box selection began, or null
+    private Rectangle objectMarquee;    // box selection being dragged (in level pixels), or null
+    private final Map<String, Color> objectColors = new HashMap<>();
+    private TileAnimations tileAnimations;      // animated tiles of the palette, or null
+    private AnimatedCells animatedCells;        // where the animated cells are, or null without animations
+    private long animationTime;                 // clock time the animated cells are painted at
+    private final Map<Integer, Tile> frameTiles = new HashMap<>();  // frame code -> tile
+    private Image tileBuffer;           // composed tile layers of the visible area, reused across paints;
+                                        // a VolatileImage on screen, so tile blits stay in video memory
+    private Rectangle bufferBounds;     // canvas pixels held by tileBuffer
+    private double bufferScale;         // scale tileBuffer was composed at
+    private Rectangle bufferDirty;      // canvas pixels of tileBuffer to compose again, or null
+    private LevelRasterizer rasterizer; // palette pixel data for composing large areas in parallel, or null
+    private BufferedImage rasterImage;  // int pixels the rasterizer composes into, reused across paints
 
     public LevelCanvas(LevelEditor editor, LevelData data, SpritePanel palette) {
         super(new BorderLayout(), true);
@@ -36,6 +120,10 @@ public class LevelCanvas extends JPanel {
         this.scale = DEFAULT_SCALE;
 
         this.cursorImage = loadCursorImage();
+        this.zoomTimer = new Timer(ZOOM_FRAME_MS, e -> applyPendingZoom());
+        this.zoomTimer.setRepeats(false);
+        this.animationTimer = new Timer(ANIMATION_FRAME_MS, e -> onAnimationTick());
+        this.overlay = new CanvasOverlay(this);
 
         setBackground(Color.WHITE);
         setFocusable(true);
@@ -47,10 +135,28 @@ public class LevelCanvas extends JPanel {
             @Override
             public void mousePressed(MouseEvent e) {
                 super.mousePressed(e);
-                if (selectedTile != null) {
+                if (pathPreview) {
+                    onMousePressedForPath(e);
+                } else if (objectMode) {
+                    onMousePressedForObjects(e);
+                } else if (stamp != null) {
+                    onMousePressedWithStamp(e);
+                } else if (selectedTile != null && !e.isShiftDown()) {
                     onMousePressedWithTileSelected(e);
+                } else if (e.getButton() == MouseEvent.BUTTON1) {
+                    onMousePressedToSelect(e);
                 }
             }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                super.mouseReleased(e);
+                if (objectMode) {
+                    onMouseReleasedForObjects();
+                }
+                selectionAnchor = null;
+                endStroke();
+            }
         });
         addMouseWheelListener(e -> {
             if (!e.isAltDown() && e.isControlDown() && !e.isShiftDown()) {
@@ -63,7 +169,13 @@ public class LevelCanvas extends JPanel {
             @Override
             public void mouseDragged(MouseEvent e) {
                 super.mouseDragged(e);
-                if (selectedTile != null) {
+                if (pathPreview) {
+                    onMouseDraggedForPath(e);
+                } else if (objectMode) {
+                    onMouseDraggedForObjects(e);
+                } else if (selectionAnchor != null) {
+                    onMouseDraggedToSelect(e);
+                } else if (stamp == null && selectedTile != null) {
                     onMouseDraggedWithTileSelected(e);
                 }
             }
@@ -74,6 +186,8 @@ public class LevelCanvas extends JPanel {
                 super.keyTyped(e);
                 if (e.getKeyChar() == 27) {  // escape character
                     onEscapeTyped();
+                } else if (e.getKeyChar() == KeyEvent.VK_DELETE && objectMode) {
+                    deleteSelectedObjects();
                 }
             }
         });
@@ -96,51 +210,177 @@ public class LevelCanvas extends JPanel {
         currentLayer = layer;
     }
 
+    public Tile getSelectedTile() {
+        return selectedTile;
+    }
+
     public double getScale() {
         return scale;
     }
 
+    // zooms around the middle of the visible part of the canvas
     public void setScale(double scale) {
-        this.scale = scale;
+        zoomTo(scale, null);
         repaint();
     }
 
     public void onLevelLoaded(LevelData data, SpritePanel palette) {
+        long start = System.nanoTime();
+        if (this.data != null) {
+            this.data.removeLevelChangeListener(levelListener);
+        }
         this.data = data;
+        this.palette = palette;
+        this.highlightCode = Tile.EMPTY_CODE;
+        this.selection = null;
+        this.selectedObjects = new ArrayList<>();
+        clearPath();
         ImageSize canvasSize = data.getDataSize();
         int layers = data.getLayers();
+        if (palette == null || data.getDataFile() == null) {
+            data.clearLayers();                                     // fill pixel array with EMPTY_CODE
+        }
         tiles = new Tile[layers][];
-        int[][] pixels = data.getData();
-        assert tiles.length == pixels.length : "tile layers is not the same as data layers";
         for (int layer = 0; layer < layers; layer++) {
             tiles[layer] = new Tile[canvasSize.width() * canvasSize.height()];
             if (palette == null || data.getDataFile() == null) {
                 Arrays.fill(tiles[layer], Tile.EMPTY_TILE);         // fill tile array with EMPTY_TILE
-                Arrays.fill(pixels[layer], Tile.EMPTY_CODE);        // fill pixel array with EMPTY_CODE
-            } else {                                                // fill tile array with loaded pixel data
-                assert tiles[layer].length == pixels[layer].length : "for layer " + layer
-                        + ", tile array is not the same size as data array";
-                for (int i = 0; i < tiles[layer].length; i++) {
-                    int code = pixels[layer][i] & Tile.EMPTY_CODE;  // & 0x00FFFFFF - mask off the alpha byte
-                    tiles[layer][i] = code != Tile.EMPTY_CODE
-                            ? Tile.of(code, palette.getImageAt(code))
-                            : Tile.EMPTY_TILE;
+            }
+        }
+        if (palette != null && data.getDataFile() != null) {
+            resolveTiles(palette);                                  // fill tile array with loaded pixel data
+        }
+        data.addLevelChangeListener(levelListener);
+        attachAnimatedCells();
+        invalidateTileBuffer();
+        EditorTelemetry.CANVAS_LOADS.recordSince(start);
+    }
+
+    // re-resolves every cell after the level's cells were replaced from elsewhere (e.g.: joining a shared
+    // session), keeping them - unlike onLevelLoaded() for a level without a data file
+    public void reloadTiles() {
+        ImageSize dataSize = data.getDataSize();
+        tiles = new Tile[data.getLayers()][dataSize.width() * dataSize.height()];
+        if (palette != null) {
+            resolveTiles(palette);
+        } else {
+            for (Tile[] layer : tiles) {
+                Arrays.fill(layer, Tile.EMPTY_TILE);
+            }
+        }
+        invalidateTileBuffer();
+        revalidate();
+    }
+
+    // one shared tile per code in use, resolved up front (the palette slices lazily and isn't thread safe), then
+    // the cells are filled in chunks of rows across the common fork-join pool
+    private void resolveTiles(SpritePanel palette) {
+        Tile[] byCode = new Tile[palette.getTileCount()];
+        for (int code : data.getTileIndex().codes()) {
+            byCode[code] = Tile.of(code, palette.getImageAt(code));
+        }
+        LevelSnapshot snapshot = data.snapshot();
+        int width = snapshot.getDataSize().width();
+        int height = snapshot.getDataSize().height();
+        int chunksPerLayer = (height + RESOLVE_CHUNK_ROWS - 1) / RESOLVE_CHUNK_ROWS;
+        IntStream.range(0, tiles.length * chunksPerLayer).parallel().forEach(chunk -> {
+            int layer = chunk / chunksPerLayer;
+            int y0 = (chunk % chunksPerLayer) * RESOLVE_CHUNK_ROWS;
+            int[] row = new int[width];
+            for (int y = y0; y < Math.min(y0 + RESOLVE_CHUNK_ROWS, height); y++) {
+                snapshot.getRow(layer, 0, y, width, row, 0);
+                for (int x = 0; x < width; x++) {
+                    tiles[layer][x + y * width] = row[x] != Tile.EMPTY_CODE ? byCode[row[x]] : Tile.EMPTY_TILE;
                 }
             }
+        });
+    }
+
+    // re-resolve only the cells whose palette tile was changed on disk, found through the tile index, and
+    // compose again only those of them that are in the back buffer; everything else is left as is
+    public void onPaletteTilesChanged(SpritePanel palette, int[] changedTiles) {
+        if (changedTiles.length == 0) {
+            return;
+        }
+        TileIndex index = data.getTileIndex();
+        int levelWidth = data.getDataSize().width();
+        Rectangle bufferTiles = bufferBounds != null ? tilesIn(bufferBounds) : new Rectangle();
+        int[] bounds = { Integer.MAX_VALUE, Integer.MAX_VALUE, -1, -1 };   // changed cells in it: x0, y0, x1, y1
+        for (int code : changedTiles) {
+            Tile replacement = Tile.of(code, palette.getImageAt(code));    // one shared tile per changed code
+            for (int layer = 0; layer < tiles.length; layer++) {
+                Tile[] layerTiles = tiles[layer];
+                index.occurrences(code, layer).forEach(cell -> {
+                    layerTiles[cell] = replacement;
+                    int x = cell % levelWidth;
+                    int y = cell / levelWidth;
+                    if (bufferTiles.contains(x, y)) {
+                        bounds[0] = Math.min(bounds[0], x);
+                        bounds[1] = Math.min(bounds[1], y);
+                        bounds[2] = Math.max(bounds[2], x);
+                        bounds[3] = Math.max(bounds[3], y);
+                    }
+                });
+            }
+            if (selectedTile != null && selectedTile.getCode() == code) {
+                selectedTile = replacement;
+            }
+        }
+        frameTiles.clear();
+        if (bounds[2] >= 0) {
+            invalidateTiles(new Rectangle(bounds[0], bounds[1],
+                    bounds[2] - bounds[0] + 1, bounds[3] - bounds[1] + 1));
         }
-        repaint();
     }
 
     public void onLayerAdded() {
         int layers = data.getLayers();
-        int[][] pixels = data.getData();
         Tile[][] prev = tiles;
         tiles = new Tile[layers][];
         System.arraycopy(prev, 0, tiles, 0, layers - 1);
         ImageSize dataSize = data.getDataSize();
         tiles[layers - 1] = new Tile[dataSize.width() * dataSize.height()];
         Arrays.fill(tiles[layers - 1], Tile.EMPTY_TILE);
-        Arrays.fill(pixels[layers - 1], Tile.EMPTY_CODE);
+    }
+
+    // ------------------ find / replace
+
+    public int getHighlightCode() {
+        return highlightCode;
+    }
+
+    // highlights every occurrence of code on all layers; pass Tile.EMPTY_CODE to clear the highlight
+    public void setHighlightCode(int code) {
+        highlightCode = code;
+        repaint();
+    }
+
+    private void paintHighlights(Graphics2D g2d, ImageSize dataSize, ImageSize tileSize) {
+        TileIndex index = data.getTileIndex();
+        if (highlightCode == Tile.EMPTY_CODE || !index.contains(highlightCode)) {
+            return;
+        }
+        int levelTilesWide = dataSize.width();
+        int tileWidth = tileSize.width();
+        int tileHeight = tileSize.height();
+        Rectangle clip = levelClip(g2d);                // only the occurrences in the clip's rows are visited
+        int y0 = Math.max(0, clip.y / tileHeight);
+        int y1 = Math.min(dataSize.height() - 1, (clip.y + clip.height - 1) / tileHeight);
+        int x0 = Math.max(0, clip.x / tileWidth);
+        int x1 = (clip.x + clip.width - 1) / tileWidth;
+        if (y0 > y1) {
+            return;
+        }
+        g2d.setColor(HIGHLIGHT_COLOR);
+        for (int layer = 0; layer < data.getLayers(); layer++) {
+            CellBitmap cells = index.occurrences(highlightCode, layer);
+            cells.forEachInRange(y0 * levelTilesWide, (y1 + 1) * levelTilesWide, i -> {
+                int x = i % levelTilesWide;
+                if (x >= x0 && x <= x1) {
+                    g2d.fillRect(x * tileWidth, (i / levelTilesWide) * tileHeight, tileWidth, tileHeight);
+                }
+            });
+        }
     }
 
     private Dimension getTargetSize() {
@@ -165,31 +405,762 @@ public class LevelCanvas extends JPanel {
         return getTargetSize();
     }
 
+    // The tile layers of the visible area are composed once into a back buffer and then just copied out: only
+    // cells invalidated by edits and animation, or newly scrolled into view, are composed again. Repaints
+    // that don't change tiles (the overlay's hover, grid and marquee, the selection, objects) cost one blit.
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+        Rectangle visible = getVisibleRect();
+        Rectangle clip = g2d.getClipBounds();
+        if (!visible.isEmpty() && (clip == null || visible.contains(clip))) {
+            updateTileBuffer(visible);
+            g2d.drawImage(tileBuffer, bufferBounds.x, bufferBounds.y, null);
+            if (tileBuffer instanceof VolatileImage buffer && buffer.contentsLost()) {
+                invalidateTileBuffer();     // the device dropped it mid paint - compose it all again
+            }
+            g2d.scale(scale, scale);
+        } else {
+            g2d.scale(scale, scale);        // painting off screen (printing, snapshots) - compose directly
+            paintTiles(g2d, null);
+        }
+        ImageSize tileSize = data.getTileSize();
+        paintObjects(g2d, levelClip(g2d));
+        paintHighlights(g2d, data.getDataSize(), tileSize);
+        paintPath(g2d, tileSize);
+        g.dispose();
+    }
+
+    // only the tiles intersecting the clip are drawn (g2d is scaled to unscaled level pixels). Tiles are blitted
+    // by code from the palette's atlas, which is already in the destination's format; returns false if the
+    // atlas lost its video memory copy while drawing into destination (null if not an image).
+    private boolean paintTiles(Graphics2D g2d, Image destination) {
         ImageSize dataSize = data.getDataSize();
         ImageSize tileSize = data.getTileSize();
         int layers = data.getLayers();
         int levelTilesWide = dataSize.width();
-        int canvasWidth = dataSize.width() * tileSize.width();
-        int canvasHeight = dataSize.height() * tileSize.height();
-        Graphics2D g2d = (Graphics2D) g;
-        g2d.scale(scale, scale);
+        Rectangle clip = levelClip(g2d);
         g2d.setColor(Color.WHITE);
-        g2d.fillRect(0, 0, canvasWidth, canvasHeight);
+        g2d.fill(clip);
+        int firstCol = Math.max(0, clip.x / tileSize.width());
+        int lastCol = Math.min(levelTilesWide - 1, (clip.x + clip.width) / tileSize.width());
+        int firstRow = Math.max(0, clip.y / tileSize.height());
+        int lastRow = Math.min(dataSize.height() - 1, (clip.y + clip.height) / tileSize.height());
+        TileAnimations animations = animatedCells != null && !animatedCells.isEmpty() ? tileAnimations : null;
+        TileAtlas atlas = palette != null ? palette.getAtlas(getGraphicsConfiguration()) : null;
+        if (atlas != null) {
+            atlas.beginDraw(destination);
+        }
         for (int layer = 0; layer < layers; layer++) {
-            for (int i = 0; i < tiles[layer].length; i++) {
-                int xPosPixels = (i % levelTilesWide) * tileSize.width();
-                int yPosPixels = (i / levelTilesWide) * tileSize.height();
-                tiles[layer][i].render(g2d, xPosPixels, yPosPixels, this);
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
+                    Tile tile = tiles[layer][col + row * levelTilesWide];
+                    int code = tile.getCode();
+                    if (animations != null && animations.isAnimated(code)) {
+                        code = animations.frameCode(code, animationTime);
+                        tile = atlas == null ? frameTile(code) : tile;
+                    }
+                    if (atlas != null) {
+                        atlas.drawTile(g2d, code, col * tileSize.width(), row * tileSize.height());
+                    } else {
+                        tile.render(g2d, col * tileSize.width(), row * tileSize.height(), this);
+                    }
+                }
             }
         }
-        g.dispose();
+        return atlas == null || !atlas.endDraw();
+    }
+
+    private Rectangle levelClip(Graphics2D g2d) {
+        Rectangle clip = g2d.getClipBounds();
+        ImageSize dataSize = data.getDataSize();
+        ImageSize tileSize = data.getTileSize();
+        return clip != null ? clip : new Rectangle(0, 0,
+                dataSize.width() * tileSize.width(), dataSize.height() * tileSize.height());
+    }
+
+    // ------------------ overlay
+
+    // the canvas wrapped in the layer that draws the grid, hover cell and marquees on top of it
+    public JLayer<LevelCanvas> createLayer() {
+        return new JLayer<>(this, overlay);
+    }
+
+    public boolean isShowGrid() {
+        return overlay.isShowGrid();
+    }
+
+    public void setShowGrid(boolean showGrid) {
+        overlay.setShowGrid(showGrid);
+    }
+
+    ImageSize getTileSize() {
+        return data.getTileSize();
+    }
+
+    // marquee selection in tiles, or null
+    Rectangle getSelection() {
+        return selection;
+    }
+
+    // box selection of objects being dragged, in level pixels, or null
+    Rectangle getObjectMarquee() {
+        return objectMarquee;
+    }
+
+    // cells covered by one application of the current brush: the stamp, or a single tile
+    Dimension getBrushSize() {
+        return stamp != null ? new Dimension(stamp.width(), stamp.height()) : new Dimension(1, 1);
+    }
+
+    // ------------------ tile back buffer
+
+    // bytes held by the back buffer and the rasterizer's image - for EditorTelemetry
+    public long getImageCacheBytes() {
+        return EditorTelemetry.imageBytes(tileBuffer) + EditorTelemetry.imageBytes(rasterImage);
+    }
+
+    // marks the whole buffer for composing again - after anything that changes many tiles at once
+    private void invalidateTileBuffer() {
+        bufferDirty = bufferBounds != null ? new Rectangle(bufferBounds) : null;
+        repaint();
+    }
+
+    // marks a block of cells (in tiles) for composing again and repaints it
+    private void invalidateTiles(Rectangle area) {
+        Rectangle canvasArea = tilesToCanvas(area);
+        canvasArea.grow(1, 1);                      // scaling round-off
+        bufferDirty = bufferDirty != null ? bufferDirty.union(canvasArea) : canvasArea;
+        repaint(canvasArea);
+    }
+
+    // (re)allocates the buffer for the visible area, shifts its content on scrolls and composes what's dirty
+    private void updateTileBuffer(Rectangle visible) {
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        int validation = tileBuffer instanceof VolatileImage buffer ? buffer.validate(gc) : VolatileImage.IMAGE_OK;
+        if (tileBuffer == null || validation == VolatileImage.IMAGE_INCOMPATIBLE
+                || tileBuffer.getWidth(null) != visible.width || tileBuffer.getHeight(null) != visible.height) {
+            if (tileBuffer != null) {
+                tileBuffer.flush();
+            }
+            tileBuffer = gc != null
+                    ? gc.createCompatibleVolatileImage(visible.width, visible.height)
+                    : new BufferedImage(visible.width, visible.height, BufferedImage.TYPE_INT_RGB);
+            bufferDirty = new Rectangle(visible);
+        } else if (validation == VolatileImage.IMAGE_RESTORED) {
+            bufferDirty = new Rectangle(visible);   // contents were lost along with the video memory
+        } else if (bufferScale != scale || !visible.intersects(bufferBounds)) {
+            bufferDirty = new Rectangle(visible);
+        } else if (!visible.getLocation().equals(bufferBounds.getLocation())) {
+            Graphics2D bg = (Graphics2D) tileBuffer.getGraphics();
+            bg.copyArea(0, 0, visible.width, visible.height, bufferBounds.x - visible.x, bufferBounds.y - visible.y);
+            bg.dispose();
+            Rectangle kept = visible.intersection(bufferBounds);
+            addDirty(new Rectangle(visible.x, visible.y, visible.width, kept.y - visible.y));       // above
+            addDirty(new Rectangle(visible.x, kept.y + kept.height, visible.width,
+                    visible.y + visible.height - kept.y - kept.height));                           // below
+            addDirty(new Rectangle(visible.x, kept.y, kept.x - visible.x, kept.height));            // left
+            addDirty(new Rectangle(kept.x + kept.width, kept.y,
+                    visible.x + visible.width - kept.x - kept.width, kept.height));                 // right
+        }
+        bufferBounds = new Rectangle(visible);
+        bufferScale = scale;
+        Rectangle compose = bufferDirty != null ? bufferDirty.intersection(visible) : null;
+        bufferDirty = null;
+        if (compose != null && !compose.isEmpty()) {
+            Graphics2D bg = (Graphics2D) tileBuffer.getGraphics();
+            bg.translate(-visible.x, -visible.y);
+            bg.clip(compose);
+            if (isWorthRasterizing(compose)) {
+                rasterizeTiles(bg, compose);
+            } else {
+                bg.scale(scale, scale);
+                if (!paintTiles(bg, tileBuffer)) {
+                    addDirty(compose);              // drawn from a lost atlas copy - compose again next paint
+                    repaint(compose);
+                }
+            }
+            bg.dispose();
+        }
+    }
+
+    // zoomed out, an area holds so many cells that one drawImage per cell dominates the paint
+    private boolean isWorthRasterizing(Rectangle area) {
+        ImageSize tileSize = data.getTileSize();
+        double cells = area.width / (tileSize.width() * scale) * (area.height / (tileSize.height() * scale));
+        return palette != null && data.getPaletteImage() != null && cells * data.getLayers() >= RASTERIZE_MIN_CELLS;
+    }
+
+    // composes area (canvas pixels) straight from the layer data and palette pixels, in bands of rows on the
+    // common fork-join pool; the EDT only waits for the bands and blits the result
+    private void rasterizeTiles(Graphics2D bg, Rectangle area) {
+        LevelSnapshot snapshot = data.snapshot();
+        if (rasterizer == null || !rasterizer.isFor(snapshot)) {
+            rasterizer = new LevelRasterizer(snapshot, null);
+        }
+        TileAnimations animations = animatedCells != null && !animatedCells.isEmpty() ? tileAnimations : null;
+        long time = animationTime;
+        IntUnaryOperator frames = animations != null
+                ? code -> animations.isAnimated(code) ? animations.frameCode(code, time) : code
+                : null;
+        if (rasterImage == null || rasterImage.getWidth() < area.width || rasterImage.getHeight() < area.height) {
+            rasterImage = new BufferedImage(Math.max(area.width, bufferBounds.width),
+                    Math.max(area.height, bufferBounds.height), BufferedImage.TYPE_INT_RGB);
+        }
+        int[] pixels = ((DataBufferInt) rasterImage.getRaster().getDataBuffer()).getData();
+        rasterizer.withLevel(snapshot, frames).renderScaled(area.x, area.y, area.width, area.height, scale,
+                pixels, 0, rasterImage.getWidth(), ForkJoinPool.commonPool());
+        bg.drawImage(rasterImage, area.x, area.y, area.x + area.width, area.y + area.height,
+                0, 0, area.width, area.height, null);
+    }
+
+    private void addDirty(Rectangle area) {
+        if (area.width > 0 && area.height > 0) {
+            bufferDirty = bufferDirty != null ? bufferDirty.union(area) : area;
+        }
+    }
+
+    // ------------------ autotiling
+
+    public void setAutoTiler(AutoTiler autoTiler) {
+        this.autoTiler = autoTiler;
+    }
+
+    public AutoTiler getAutoTiler() {
+        return autoTiler;
+    }
+
+    public void setAutoTiling(boolean autoTiling) {
+        this.autoTiling = autoTiling;
+    }
+
+    // ------------------ tile animations
+
+    public void setTileAnimations(TileAnimations tileAnimations) {
+        this.tileAnimations = tileAnimations;
+        frameTiles.clear();
+        attachAnimatedCells();
+        invalidateTileBuffer();
+    }
+
+    private void attachAnimatedCells() {
+        if (animatedCells != null) {
+            animatedCells.getLevel().removeLevelChangeListener(animatedCells);
+            animatedCells = null;
+        }
+        if (tileAnimations != null) {
+            animatedCells = new AnimatedCells(data, tileAnimations);
+            data.addLevelChangeListener(animatedCells);
+            animationTimer.start();
+        } else {
+            animationTimer.stop();
+        }
+    }
+
+    // repaints only when some animation moved to its next frame, and then only the visible blocks of cells
+    // that hold animated codes - a still level or one scrolled away from its water costs nothing
+    private void onAnimationTick() {
+        long now = System.currentTimeMillis();
+        if (animatedCells == null || animatedCells.isEmpty() || !isShowing()
+                || !tileAnimations.framesChanged(animationTime, now)) {
+            return;
+        }
+        animationTime = now;
+        animatedCells.forEachAnimatedBlock(tilesIn(getVisibleRect()), this::invalidateTiles);
+    }
+
+    // the cells (in tiles) that an area of the canvas (in pixels) touches
+    private Rectangle tilesIn(Rectangle canvasArea) {
+        ImageSize tileSize = data.getTileSize();
+        double tileWidth = tileSize.width() * scale;
+        double tileHeight = tileSize.height() * scale;
+        int x0 = (int) (canvasArea.x / tileWidth);
+        int y0 = (int) (canvasArea.y / tileHeight);
+        return new Rectangle(x0, y0,
+                (int) Math.ceil((canvasArea.x + canvasArea.width) / tileWidth) - x0,
+                (int) Math.ceil((canvasArea.y + canvasArea.height) / tileHeight) - y0);
+    }
+
+    private Tile frameTile(int code) {
+        return frameTiles.computeIfAbsent(code, this::tileFor);
+    }
+
+    // ------------------ objects
+
+    public void setObjectMode(boolean objectMode, String objectType) {
+        this.objectMode = objectMode;
+        this.objectType = objectType != null ? objectType : DEFAULT_OBJECT_TYPE;
+        setToolTipText(objectMode ? "" : null);            // registers for getToolTipText(MouseEvent)
+        setSelectedObjects(new ArrayList<>());
+    }
+
+    public String getObjectType() {
+        return objectType;
+    }
+
+    // removes and adds objects as one change - used by undo / redo
+    void applyObjects(List<LevelObject> remove, List<LevelObject> add) {
+        ObjectLayer objects = data.getObjects();
+        data.begin();
+        try {
+            remove.forEach(objects::remove);
+            add.forEach(objects::add);
+        } finally {
+            data.commit();
+        }
+        setSelectedObjects(new ArrayList<>());
+    }
+
+    // a press on an object selects it (shift adds to the selection) and starts moving the selection; a press
+    // elsewhere starts a box selection, and a double click there places a new object on the tile
+    private void onMousePressedForObjects(MouseEvent e) {
+        if (e.getButton() != MouseEvent.BUTTON1) {
+            return;
+        }
+        Point p = levelPixelAt(e.getPoint());
+        LevelObject hit = data.getObjects().objectAt(p.x, p.y);
+        if (hit == null && e.getClickCount() == 2) {
+            placeObject(p);
+        } else if (hit != null) {
+            if (!selectedObjects.contains(hit)) {
+                List<LevelObject> selected = e.isShiftDown() ? new ArrayList<>(selectedObjects) : new ArrayList<>();
+                selected.add(hit);
+                setSelectedObjects(selected);
+            }
+            moveAnchor = p;
+            movedObjects = List.copyOf(selectedObjects);
+        } else {
+            objectAnchor = p;
+            objectMarquee = new Rectangle(p.x, p.y, 0, 0);
+            if (!e.isShiftDown()) {
+                setSelectedObjects(new ArrayList<>());
+            }
+        }
+        requestFocus();
+    }
+
+    private void onMouseDraggedForObjects(MouseEvent e) {
+        Point p = levelPixelAt(e.getPoint());
+        if (moveAnchor != null) {
+            int dx = p.x - moveAnchor.x;
+            int dy = p.y - moveAnchor.y;
+            ObjectLayer objects = data.getObjects();
+            List<LevelObject> moved = new ArrayList<>(movedObjects.size());
+            data.begin();
+            try {
+                for (int i = 0; i < movedObjects.size(); i++) {
+                    LevelObject original = movedObjects.get(i);
+                    LevelObject next = original.movedTo(original.x() + dx, original.y() + dy);
+                    objects.replace(selectedObjects.get(i), next);
+                    moved.add(next);
+                }
+            } finally {
+                data.commit();
+            }
+            selectedObjects = moved;
+        } else if (objectAnchor != null) {
+            Rectangle dirty = objectMarquee;
+            objectMarquee = new Rectangle(Math.min(p.x, objectAnchor.x), Math.min(p.y, objectAnchor.y),
+                    Math.abs(p.x - objectAnchor.x), Math.abs(p.y - objectAnchor.y));
+            repaintPixels(dirty.union(objectMarquee));
+        }
+    }
+
+    private void onMouseReleasedForObjects() {
+        if (moveAnchor != null && !movedObjects.equals(selectedObjects)) {
+            editor.addUndoableEdit(new ObjectEdit(this, "Move Objects", movedObjects, selectedObjects));
+        } else if (objectMarquee != null) {
+            List<LevelObject> selected = new ArrayList<>(selectedObjects);
+            data.getObjects().forEachIn(objectMarquee, object -> {
+                if (!selected.contains(object)) {
+                    selected.add(object);
+                }
+            });
+            repaintPixels(objectMarquee);
+            setSelectedObjects(selected);
+        }
+        moveAnchor = null;
+        movedObjects = null;
+        objectAnchor = null;
+        objectMarquee = null;
+    }
+
+    private void placeObject(Point p) {
+        ImageSize tileSize = data.getTileSize();
+        int x = Math.floorDiv(p.x, tileSize.width()) * tileSize.width();
+        int y = Math.floorDiv(p.y, tileSize.height()) * tileSize.height();
+        LevelObject object = LevelObject.of(data.getObjects().nextId(), objectType, x, y,
+                tileSize.width(), tileSize.height());
+        data.getObjects().add(object);
+        editor.addUndoableEdit(new ObjectEdit(this, "Place Object", List.of(), List.of(object)));
+        setSelectedObjects(new ArrayList<>(List.of(object)));
+    }
+
+    private void deleteSelectedObjects() {
+        if (!selectedObjects.isEmpty()) {
+            List<LevelObject> deleted = selectedObjects;
+            applyObjects(deleted, List.of());
+            editor.addUndoableEdit(new ObjectEdit(this, "Delete Objects", deleted, List.of()));
+        }
+    }
+
+    private void setSelectedObjects(List<LevelObject> selected) {
+        for (LevelObject object : selectedObjects) {
+            repaintPixels(object.getBounds());
+        }
+        selectedObjects = selected;
+        for (LevelObject object : selectedObjects) {
+            repaintPixels(object.getBounds());
+        }
+    }
+
+    // only the objects in the clip are looked up (through the object layer's grid); higher ids are drawn on top
+    private void paintObjects(Graphics2D g2d, Rectangle clip) {
+        List<LevelObject> visible = data.getObjects().objectsIn(clip);
+        visible.sort(Comparator.comparingInt(LevelObject::id));
+        for (LevelObject object : visible) {
+            Color color = objectColors.computeIfAbsent(object.type(), type -> {
+                Color hue = Color.getHSBColor((type.hashCode() & 0xFF) / 255.0f, 0.8f, 0.9f);
+                return new Color(hue.getRed(), hue.getGreen(), hue.getBlue(), 0x80);
+            });
+            Rectangle bounds = object.getBounds();
+            g2d.setColor(color);
+            g2d.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+            g2d.setColor(color.darker());
+            g2d.drawRect(bounds.x, bounds.y, bounds.width - 1, bounds.height - 1);
+        }
+        if (!selectedObjects.isEmpty()) {
+            g2d.setColor(OBJECT_SELECTED_COLOR);
+            g2d.setStroke(OBJECT_SELECTED_STROKE);
+            for (LevelObject object : selectedObjects) {
+                Rectangle bounds = object.getBounds();
+                g2d.drawRect(bounds.x, bounds.y, bounds.width - 1, bounds.height - 1);
+            }
+        }
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        Point p = levelPixelAt(e.getPoint());
+        LevelObject object = objectMode ? data.getObjects().objectAt(p.x, p.y) : null;
+        if (object == null) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder(object.type()).append(" #").append(object.id())
+                .append(" (").append(object.x()).append(", ").append(object.y()).append(')');
+        object.properties().forEach((name, value) -> text.append(", ").append(name).append('=').append(value));
+        return text.toString();
+    }
+
+    // ------------------ path preview
+
+    public void setCollisionMap(CollisionMap collisionMap) {
+        this.collisionMap = collisionMap;
+        this.blocked = collisionMap != null ? collisionMap::isSetOnAnyLayer : null;
+        clearPath();
+    }
+
+    public CollisionMap getCollisionMap() {
+        return collisionMap;
+    }
+
+    public void setPathPreview(boolean pathPreview) {
+        this.pathPreview = pathPreview;
+        clearPath();
+        setCursor(pathPreview ? Cursor.getPredefinedCursor(Cursor.CROSSHAIR_CURSOR) : Cursor.getDefaultCursor());
+    }
+
+    // the button press picks the start; the goal follows the drag and the path is searched again per cell
+    private void onMousePressedForPath(MouseEvent e) {
+        if (e.getButton() == MouseEvent.BUTTON1 && collisionMap != null) {
+            Point tile = tileAt(e.getPoint());
+            if (!data.clipToLevel(new Rectangle(tile.x, tile.y, 1, 1)).isEmpty()) {
+                pathStart = tile.x + tile.y * data.getDataSize().width();
+                pathGoal = -1;
+                updatePath(pathStart);
+            }
+            requestFocus();
+        }
+    }
+
+    private void onMouseDraggedForPath(MouseEvent e) {
+        if (pathStart >= 0) {
+            ImageSize dataSize = data.getDataSize();
+            Point tile = tileAt(e.getPoint());
+            int x = Math.max(0, Math.min(dataSize.width() - 1, tile.x));
+            int y = Math.max(0, Math.min(dataSize.height() - 1, tile.y));
+            int goal = x + y * dataSize.width();
+            if (goal != pathGoal) {
+                updatePath(goal);
+            }
+        }
+    }
+
+    private void updatePath(int goal) {
+        ImageSize dataSize = data.getDataSize();
+        if (collisionMap.getWidth() != dataSize.width() || collisionMap.getHeight() != dataSize.height()) {
+            return;                         // collision map not rebuilt for a resize yet
+        }
+        if (pathFinder == null || pathFinder.getWidth() != dataSize.width()
+                || pathFinder.getHeight() != dataSize.height()) {
+            pathFinder = new PathFinder(dataSize.width(), dataSize.height());
+        }
+        // drag steps resume the search from the same start unless the level was edited in between
+        if (pathGoal < 0 || pathVersion != data.getVersion()) {
+            pathVersion = data.getVersion();
+            pathFinder.findPath(pathStart, goal, blocked);
+        } else {
+            pathFinder.continuePath(goal);
+        }
+        pathGoal = goal;
+        Rectangle dirty = pathBounds;
+        pathBounds = pathCellBounds(dataSize.width());
+        repaintTiles(dirty != null ? dirty.union(pathBounds) : pathBounds);
+    }
+
+    private Rectangle pathCellBounds(int levelWidth) {
+        Rectangle bounds = new Rectangle(pathStart % levelWidth, pathStart / levelWidth, 1, 1);
+        bounds.add(new Rectangle(pathGoal % levelWidth, pathGoal / levelWidth, 1, 1));
+        int[] path = pathFinder.getPath();
+        for (int i = 0; i < pathFinder.getPathLength(); i++) {
+            bounds.add(new Rectangle(path[i] % levelWidth, path[i] / levelWidth, 1, 1));
+        }
+        return bounds;
+    }
+
+    private void clearPath() {
+        if (pathBounds != null) {
+            repaintTiles(pathBounds);
+        }
+        pathStart = -1;
+        pathGoal = -1;
+        pathBounds = null;
+    }
+
+    // a polyline through the centers of the path's cells; start and goal are marked red if there's no path
+    private void paintPath(Graphics2D g2d, ImageSize tileSize) {
+        if (pathStart < 0 || pathFinder == null) {
+            return;
+        }
+        int levelWidth = data.getDataSize().width();
+        int tileWidth = tileSize.width();
+        int tileHeight = tileSize.height();
+        int length = pathFinder.getPathLength();
+        g2d.setColor(length > 0 ? PATH_COLOR : NO_PATH_COLOR);
+        g2d.setStroke(PATH_STROKE);
+        if (length > 1) {
+            int[] path = pathFinder.getPath();
+            int[] xs = new int[length];
+            int[] ys = new int[length];
+            for (int i = 0; i < length; i++) {
+                xs[i] = (path[i] % levelWidth) * tileWidth + tileWidth / 2;
+                ys[i] = (path[i] / levelWidth) * tileHeight + tileHeight / 2;
+            }
+            g2d.drawPolyline(xs, ys, length);
+        }
+        for (int cell : new int[] { pathStart, pathGoal }) {
+            g2d.drawOval((cell % levelWidth) * tileWidth + tileWidth / 4,
+                    (cell / levelWidth) * tileHeight + tileHeight / 4, tileWidth / 2, tileHeight / 2);
+        }
+    }
+
+    // ------------------ selection, clipboard and stamp brush
+
+    public void setSelectAllLayers(boolean selectAllLayers) {
+        this.selectAllLayers = selectAllLayers;
+    }
+
+    public boolean copySelection() {
+        if (selection == null) {
+            return false;
+        }
+        clipboard = data.copyRegion(selection, selectionFirstLayer(), selectionLayerCount());
+        return true;
+    }
+
+    public boolean cutSelection() {
+        if (!copySelection()) {
+            return false;
+        }
+        int firstLayer = selectionFirstLayer();
+        TileRegion before = data.clearRegion(selection, firstLayer, selectionLayerCount());
+        TileRegion after = data.copyRegion(selection, firstLayer, selectionLayerCount());
+        editor.addUndoableEdit(new RegionEdit(this, "Cut", before, after, selection.x, selection.y, firstLayer));
+        return true;
+    }
+
+    // turns the clipboard into a stamp brush; each click then drops the whole region as one undoable edit
+    public boolean pasteAsStamp() {
+        if (clipboard == null) {
+            return false;
+        }
+        stamp = clipboard;
+        overlay.repaint(null);                  // the brush preview changes size
+        setCursor(Cursor.getPredefinedCursor(Cursor.CROSSHAIR_CURSOR));
+        requestFocus();
+        return true;
+    }
+
+    // writes region into the level with its top left cell at (x, y); returns the overwritten cells
+    TileRegion applyRegion(TileRegion region, int x, int y, int firstLayer) {
+        return data.pasteRegion(region, x, y, firstLayer);
+    }
+
+    // sets the cells of every layer to code, as one change - used by replace-all undo / redo
+    void applyCells(CellBitmap[] cells, int code) {
+        data.begin();
+        try {
+            for (int layer = 0; layer < cells.length; layer++) {
+                int l = layer;
+                cells[layer].forEach(i -> data.setTile(l, i, code));
+            }
+        } finally {
+            data.commit();
+        }
+    }
+
+    // every edit to the level arrives here, one event per transaction: re-resolve the tiles of just the
+    // dirty blocks and cells and repaint them. Structural changes are handled by onLevelLoaded / onLayerAdded.
+    private void onLevelChanged(LevelChangeEvent event) {
+        if (event.structural()) {
+            return;
+        }
+        if (event.objects() != null) {
+            repaintPixels(event.objects());
+        }
+        int levelWidth = data.getDataSize().width();
+        Map<Integer, Tile> resolved = new HashMap<>();
+        for (int layer = 0; layer < event.layers(); layer++) {
+            DirtyRegion dirty = event.dirty(layer);
+            for (Rectangle area : dirty.getRectangles()) {
+                for (int y = area.y; y < area.y + area.height; y++) {
+                    for (int x = area.x; x < area.x + area.width; x++) {
+                        int index = x + y * levelWidth;
+                        tiles[layer][index] = resolved.computeIfAbsent(data.getTile(layer, index), this::tileFor);
+                    }
+                }
+                invalidateTiles(area);
+            }
+            if (!dirty.getCells().isEmpty()) {
+                // scattered cells (a replace-all): re-resolve just them, compose again what of them is on screen
+                Tile[] layerTiles = tiles[layer];
+                int l = layer;
+                dirty.getCells().forEach(index ->
+                        layerTiles[index] = resolved.computeIfAbsent(data.getTile(l, index), this::tileFor));
+                Rectangle onScreen = bufferBounds != null
+                        ? dirty.getBounds().intersection(tilesIn(bufferBounds)) : null;
+                if (onScreen != null && !onScreen.isEmpty()) {
+                    invalidateTiles(onScreen);
+                }
+            }
+        }
+        editor.onCanvasModified();
+    }
+
+    private Tile tileFor(int code) {
+        return code != Tile.EMPTY_CODE && palette != null ? Tile.of(code, palette.getImageAt(code)) : Tile.EMPTY_TILE;
+    }
+
+    private int selectionFirstLayer() {
+        return selectAllLayers ? 0 : currentLayer;
+    }
+
+    private int selectionLayerCount() {
+        return selectAllLayers ? data.getLayers() : 1;
+    }
+
+    // converts a point in canvas pixels into the tile that contains it
+    Point tileAt(Point p) {
+        ImageSize tileSize = data.getTileSize();
+        return new Point((int) (p.x / (tileSize.width() * scale)), (int) (p.y / (tileSize.height() * scale)));
+    }
+
+    // converts a point in canvas pixels into unscaled level pixels
+    private Point levelPixelAt(Point p) {
+        return new Point((int) Math.floor(p.x / scale), (int) Math.floor(p.y / scale));
+    }
+
+    // repaints an area in level pixels, padded to cover scaling round-off and the selected object outline
+    private void repaintPixels(Rectangle area) {
+        repaint((int) ((area.x - 2) * scale), (int) ((area.y - 2) * scale),
+                (int) Math.ceil((area.width + 4) * scale) + 1, (int) Math.ceil((area.height + 4) * scale) + 1);
+    }
+
+    // repaints a block of cells (in tiles), padded by a pixel to cover scaling round-off
+    private void repaintTiles(Rectangle area) {
+        Rectangle canvasArea = tilesToCanvas(area);
+        repaint(canvasArea.x - 1, canvasArea.y - 1, canvasArea.width + 2, canvasArea.height + 2);
+    }
+
+    // the canvas pixels covered by a block of cells (in tiles)
+    Rectangle tilesToCanvas(Rectangle area) {
+        ImageSize tileSize = data.getTileSize();
+        double tileWidth = tileSize.width() * scale;
+        double tileHeight = tileSize.height() * scale;
+        int x = (int) (area.x * tileWidth);
+        int y = (int) (area.y * tileHeight);
+        return new Rectangle(x, y, (int) Math.ceil((area.x + area.width) * tileWidth) - x,
+                (int) Math.ceil((area.y + area.height) * tileHeight) - y);
+    }
+
+    private void onMousePressedToSelect(MouseEvent e) {
+        Point tile = tileAt(e.getPoint());
+        if (selection != null) {
+            repaintTiles(selection);
+        }
+        selectionAnchor = tile;
+        selection = data.clipToLevel(new Rectangle(tile.x, tile.y, 1, 1));
+        if (selection.isEmpty()) {
+            selection = null;
+        } else {
+            repaintTiles(selection);
+        }
+        requestFocus();
+    }
+
+    private void onMouseDraggedToSelect(MouseEvent e) {
+        Point tile = tileAt(e.getPoint());
+        Rectangle area = new Rectangle(Math.min(tile.x, selectionAnchor.x), Math.min(tile.y, selectionAnchor.y),
+                Math.abs(tile.x - selectionAnchor.x) + 1, Math.abs(tile.y - selectionAnchor.y) + 1);
+        area = data.clipToLevel(area);
+        if (!area.isEmpty() && !area.equals(selection)) {
+            Rectangle dirty = selection != null ? selection.union(area) : area;
+            selection = area;
+            repaintTiles(dirty);
+        }
+    }
+
+    private void onMousePressedWithStamp(MouseEvent e) {
+        if (e.getButton() == MouseEvent.BUTTON1) {
+            Point tile = tileAt(e.getPoint());
+            int firstLayer = stamp.layers() > 1 ? 0 : currentLayer;
+            TileRegion before = applyRegion(stamp, tile.x, tile.y, firstLayer);
+            Rectangle area = data.clipToLevel(new Rectangle(tile.x, tile.y, stamp.width(), stamp.height()));
+            if (!area.isEmpty()) {
+                TileRegion after = data.copyRegion(area, firstLayer, before.layers());
+                editor.addUndoableEdit(new RegionEdit(this, "Stamp", before, after, area.x, area.y, firstLayer));
+            }
+        }
+    }
+
+    private void endStroke() {
+        if (stroke != null) {
+            stroke.end();
+            if (stroke.isSignificant()) {
+                editor.addUndoableEdit(stroke);
+            }
+            stroke = null;
+        }
     }
 
     public void onPaletteTileSelected(Tile selected) {
         this.selectedTile = selected;   // store off newly selected tile
+        this.stamp = null;              // picking a single tile replaces the stamp brush
+        overlay.repaint(null);
+        if (palette != null) {
+            palette.setSelectedIndex(selected.getCode());
+        }
 
         // Windows limits cursor size to 32 x 32, but java scales down anything larger
         // to that size, so don't bother trying to create a scaled up cursor tile.
@@ -205,60 +1176,133 @@ public class LevelCanvas extends JPanel {
         requestFocus();
     }
 
-    private void dropOrClearTileAt(boolean drop, int xTile, int yTile, int layer, ImageSize tileSize) {
+    private void dropOrClearTileAt(boolean drop, int xTile, int yTile, int layer) {
         // update tile and data array content at specified array position
         ImageSize dataSize = data.getDataSize();
         int index = xTile + yTile * dataSize.width();
+        if (xTile < 0 || yTile < 0 || xTile >= dataSize.width() || yTile >= dataSize.height()) {
+            return;                         // dragged off the edge of the level
+        }
         Tile selected = drop ? selectedTile : Tile.EMPTY_TILE;
-        tiles[layer][index] = selected;
-        data.getData()[layer][index] = selected.getCode();
-        editor.onCanvasModified();
+        if (autoTiling && autoTiler != null) {
+            autoTileAt(selected.getCode(), xTile, yTile, layer);
+            return;
+        }
+        int oldCode = data.setTile(layer, index, selected.getCode());   // tile and repaint follow via onLevelChanged
+        if (stroke != null && oldCode != selected.getCode()) {
+            stroke.addEdit(new RegionEdit(this, "Paint", singleTile(oldCode), singleTile(selected.getCode()),
+                    xTile, yTile, layer));
+        }
+    }
 
-        // repaint the region containing the new tile
-        int xDrop = (int) (xTile * tileSize.width() * scale);
-        int yDrop = (int) (yTile * tileSize.height() * scale);
-        int xSize = (int) (tileSize.width() * scale);
-        int ySize = (int) (tileSize.height() * scale);
-        repaint(xDrop, yDrop, xSize, ySize);
+    // the edit may re-pick the neighbours too, so the undo step covers the 3 x 3 block around the cell
+    private void autoTileAt(int code, int xTile, int yTile, int layer) {
+        Rectangle area = data.clipToLevel(new Rectangle(xTile - 1, yTile - 1, 3, 3));
+        TileRegion before = data.copyRegion(area, layer, 1);
+        autoTiler.place(data, layer, xTile, yTile, code);
+        TileRegion after = data.copyRegion(area, layer, 1);
+        if (stroke != null && !Arrays.equals(before.codes()[0], after.codes()[0])) {
+            stroke.addEdit(new RegionEdit(this, "Paint", before, after, area.x, area.y, layer));
+        }
+    }
+
+    private static TileRegion singleTile(int code) {
+        return new TileRegion(1, 1, new int[][] { { code } });
     }
 
     private void onMousePressedWithTileSelected(MouseEvent e) {
         int button = e.getButton();
         if (button == MouseEvent.BUTTON1 || button == MouseEvent.BUTTON3) {
-            // calculate the tile at button press (save it off)
-            ImageSize tileSize = data.getTileSize();
-            Point p = e.getPoint();
-            int xTile = p.x / (int) (tileSize.width() * scale);
-            int yTile = p.y / (int) (tileSize.height() * scale);
-            buttonTile = new Point(xTile, yTile);
-            dropOrClearTileAt(dropping = button == MouseEvent.BUTTON1, xTile, yTile, currentLayer, tileSize);
+            endStroke();
+            stroke = new StrokeEdit();
+            // calculate the tile at button press (save it off) - the same cell the overlay outlines
+            buttonTile = tileAt(e.getPoint());
+            dropOrClearTileAt(dropping = button == MouseEvent.BUTTON1, buttonTile.x, buttonTile.y, currentLayer);
         }
     }
 
     private void onMouseDraggedWithTileSelected(MouseEvent e) {
-        // calculate the tile at button press (save it off)
-        ImageSize tileSize = data.getTileSize();
-        Point p = e.getPoint();
-        int xTile = p.x / (int) (tileSize.width() * scale);
-        int yTile = p.y / (int) (tileSize.height() * scale);
-        Point buttonTile = new Point(xTile, yTile);
+        // calculate the tile under the cursor (save it off)
+        Point buttonTile = tileAt(e.getPoint());
         if (!Objects.equals(this.buttonTile, buttonTile)) {
             this.buttonTile = buttonTile;
-            dropOrClearTileAt(dropping, xTile, yTile, currentLayer, tileSize);
+            dropOrClearTileAt(dropping, buttonTile.x, buttonTile.y, currentLayer);
         }
     }
 
+    // ------------------ zoom
+
+    // clicks are only counted here; they're applied together once per frame, anchored on the cursor
     private void onCtrlMouseScroll(MouseWheelEvent e) {
-        int count = e.getWheelRotation();  // -1 is up one click; 1 is down one click;
-        int newScale = (int) (scale * 10) - count;
-        if (newScale > 0) {
-            scale = (double) newScale / 10.0d;
+        pendingZoomClicks += e.getWheelRotation();  // -1 is up one click; 1 is down one click;
+        zoomAnchor = e.getPoint();
+        if (!zoomTimer.isRunning()) {
+            zoomTimer.start();
+        }
+    }
+
+    private void applyPendingZoom() {
+        long newScale = Math.round(scale * 10) - pendingZoomClicks;
+        pendingZoomClicks = 0;
+        zoomTo(Math.max(MIN_SCALE, Math.min(MAX_SCALE, newScale / 10.0d)), zoomAnchor);
+    }
+
+    // changes the scale keeping the level point under anchor (in canvas pixels, or null for the middle of the
+    // visible area) at the same place in the viewport. Only the scroll pane is laid out again, not the frame.
+    private void zoomTo(double newScale, Point anchor) {
+        if (newScale == scale) {
+            return;
+        }
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+        if (viewport == null) {
+            scale = newScale;
+            revalidate();
+            repaint();
             editor.onScaleChange();
+            return;
         }
+        if (anchor == null) {
+            Rectangle visible = getVisibleRect();
+            anchor = new Point(visible.x + visible.width / 2, visible.y + visible.height / 2);
+        }
+        Point inViewport = SwingUtilities.convertPoint(this, anchor, viewport);
+        double ratio = newScale / scale;
+        scale = newScale;
+
+        // lay out just the scroll pane now, so the new view size is known before scrolling
+        invalidate();
+        viewport.getParent().validate();
+
+        Point origin = SwingUtilities.convertPoint(this, 0, 0, viewport.getView());
+        Dimension viewSize = viewport.getViewSize();
+        Dimension extent = viewport.getExtentSize();
+        int x = origin.x + (int) Math.round(anchor.x * ratio) - inViewport.x;
+        int y = origin.y + (int) Math.round(anchor.y * ratio) - inViewport.y;
+        viewport.setViewPosition(new Point(Math.max(0, Math.min(x, viewSize.width - extent.width)),
+                Math.max(0, Math.min(y, viewSize.height - extent.height))));
+        repaint();
+        editor.onScaleChange();
     }
 
     private void onEscapeTyped() {
+        if (highlightCode != Tile.EMPTY_CODE) {
+            setHighlightCode(Tile.EMPTY_CODE);
+        }
+        if (selection != null) {
+            repaintTiles(selection);
+            selection = null;
+        }
+        clearPath();
+        setSelectedObjects(new ArrayList<>());
+        if (pathPreview || objectMode) {
+            return;                         // stays in the tool; escape only drops the path / object selection
+        }
         selectedTile = null;
+        stamp = null;
+        overlay.repaint(null);
+        if (palette != null) {
+            palette.setSelectedIndex(-1);
+        }
         setCursor(Cursor.getDefaultCursor());
     }
 }
@@ -1,19 +1,32 @@
 package com.javagames.leveleditor;
 
+import com.javagames.leveleditor.dialogs.LevelBrowserDialog;
+import com.javagames.leveleditor.dialogs.ReplaceTileDialog;
 import com.javagames.leveleditor.dialogs.RequestSizeDialog;
-import com.javagames.leveleditor.model.ImageSize;
-import com.javagames.leveleditor.model.LevelData;
+import com.javagames.leveleditor.model.*;
+import com.javagames.leveleditor.net.CollabClient;
+import com.javagames.leveleditor.net.CollabServer;
+import com.javagames.leveleditor.render.LevelExporter;
+import com.javagames.leveleditor.render.LevelRasterizer;
+import com.javagames.leveleditor.render.ThumbnailCache;
+import com.javagames.leveleditor.telemetry.EditorTelemetry;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.border.BevelBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.undo.UndoableEdit;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutionException;
 
 public class LevelEditor extends JPanel {
     private static final String APP_NAME = "JavaGames Level Editor";
@@ -24,6 +37,8 @@ public class LevelEditor extends JPanel {
     private static final int DEFAULT_CANVAS_TILES_Y = 32;
     private static final int DEFAULT_INITIAL_LAYERS = 1;
     private static final int DEFAULT_SCROLL_UNIT = 16;
+    private static final int MEMORY_GAUGE_MS = 1000;
+    private static final int MEMORY_GAUGE_WIDTH = 160;
     private static final FileNameExtensionFilter FNX_FILTER_LEVEL
             = new FileNameExtensionFilter("Level files", "level");
 
@@ -33,9 +48,20 @@ public class LevelEditor extends JPanel {
     private final JLabel levelSizeLabel;
     private final JLabel layerInfoLabel;
     private final JLabel scaleLabel;
+    private final JLabel memoryLabel;
+    private final JProgressBar memoryGauge;     // heap used of the maximum; footprint details in the tooltip
+    private final UndoHistory undoManager = new UndoHistory();
 
     private JDialog paletteDialog;
     private SpritePanel palette;
+    private PaletteWatcher paletteWatcher;
+    private TileProperties tileProperties;      // gameplay flags of the palette's tiles
+    private CollisionMap collisionMap;          // solid cells of the level, exported on save
+    private LiveLink liveLink;                  // the level published to a running game, or null if not linked
+    private CollabServer collabServer;          // shared editing session hosted by this editor, or null
+    private CollabClient collabClient;          // this editor's connection to a shared session, or null
+    private ThumbnailCache thumbnailCache;
+    private File browseFolder;
     private LevelData levelData;
     private boolean modified;
 
@@ -53,8 +79,9 @@ public class LevelEditor extends JPanel {
         // | | +- scroll pane (default scroll layout) ---------
         // | | | +- jpanel (box layout, x axis + l/r hglue) ---
         // | | | |
-        // | | | |     +- canvas (pref/min/max size) ----------
-        // | | | |     |
+        // | | | |     +- jlayer (canvas overlay) ----------------
+        // | | | |     | +- canvas (pref/min/max size) --------
+        // | | | |     | |
 
         // build canvas
         canvas = new LevelCanvas(this, levelData, null);
@@ -64,7 +91,7 @@ public class LevelEditor extends JPanel {
         inner.setLayout(new BoxLayout(inner, BoxLayout.X_AXIS));
         inner.setBackground(Color.LIGHT_GRAY);
         inner.add(Box.createHorizontalGlue());
-        inner.add(canvas);
+        inner.add(canvas.createLayer());        // the canvas, with the grid / hover / marquee overlay on top
         inner.add(Box.createHorizontalGlue());
 
         // build resizeable scroll pane
@@ -90,6 +117,14 @@ public class LevelEditor extends JPanel {
         scaleLabel = new JLabel();
         setScaleText();
 
+        memoryLabel = new JLabel("  |  Memory: ");
+        memoryGauge = new JProgressBar();
+        memoryGauge.setStringPainted(true);
+        memoryGauge.setMaximumSize(new Dimension(MEMORY_GAUGE_WIDTH, memoryGauge.getPreferredSize().height));
+        updateMemoryGauge();
+        new Timer(MEMORY_GAUGE_MS, e -> updateMemoryGauge()).start();
+        EditorTelemetry.register();
+
         try {
             JButton paletteButton = new JButton(new ImageIcon(loadPaletteButtonImage()));
             paletteButton.addActionListener(e -> showPalette());
@@ -107,6 +142,8 @@ public class LevelEditor extends JPanel {
         statusBar.add(tileSizeLabel);
         statusBar.add(layerInfoLabel);
         statusBar.add(scaleLabel);
+        statusBar.add(memoryLabel);
+        statusBar.add(memoryGauge);
         this.add(statusBar, BorderLayout.SOUTH);
 
         setTitle();
@@ -153,19 +190,14 @@ public class LevelEditor extends JPanel {
         saveLevelIfNeededAndThen(this::getNameAndOpenLevel);
     }
 
+    public void cmdBrowseLevels() {
+        saveLevelIfNeededAndThen(this::browseAndOpenLevel);
+    }
+
     public void cmdOpenPalette() {
         File paletteFile = openPaletteDialog();
         if (paletteFile != null) {
-            try {
-                levelData.setPaletteFile(paletteFile);  // last possible throw point
-                closePalette();
-                createPalette(frame, levelData.getPaletteFile(),
-                        levelData.getPaletteImage(), levelData.getTileSize(), canvas);
-                canvas.onLevelLoaded(levelData, palette);
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(frame, e.getMessage(),
-                        "Error reading palette file", JOptionPane.ERROR_MESSAGE);
-            }
+            loadPalette(paletteFile);
         }
     }
 
@@ -180,7 +212,67 @@ public class LevelEditor extends JPanel {
         }
     }
 
+    public void cmdExportImage() {
+        if (levelData.getPaletteImage() == null) {
+            JOptionPane.showMessageDialog(frame, "Open a palette before exporting an image.",
+                    "Export Image", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        File pngFile = exportImageDialog();
+        if (pngFile != null) {
+            LevelRasterizer rasterizer = LevelRasterizer.forLevel(levelData);
+            frame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            new SwingWorker<Void, Void>() {
+                @Override
+                protected Void doInBackground() throws IOException {
+                    LevelExporter.exportPng(rasterizer, pngFile);
+                    return null;
+                }
+
+                @Override
+                protected void done() {
+                    frame.setCursor(Cursor.getDefaultCursor());
+                    try {
+                        get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        JOptionPane.showMessageDialog(frame, e.getCause() != null ? e.getCause().getMessage()
+                                : e.getMessage(), "Error writing image file", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
+        }
+    }
+
+    public void cmdExportRegions() {
+        File regionsFile = exportRegionsDialog();
+        if (regionsFile != null) {
+            LevelSnapshot snapshot = levelData.snapshot();
+            frame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            new SwingWorker<Void, Void>() {
+                @Override
+                protected Void doInBackground() throws IOException {
+                    RegionFile.export(snapshot, regionsFile, RegionFile.DEFAULT_REGION_SIZE);
+                    return null;
+                }
+
+                @Override
+                protected void done() {
+                    frame.setCursor(Cursor.getDefaultCursor());
+                    try {
+                        get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        JOptionPane.showMessageDialog(frame, e.getCause() != null ? e.getCause().getMessage()
+                                : e.getMessage(), "Error writing regions file", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
+        }
+    }
+
     public void cmdSetTileSize() {
+        if (isSharingSession(LevelEditorAction.CMD_SET_TILE_SIZE)) {
+            return;
+        }
         if (saveLevelInternal()) {
             ImageSize tileSize = setTileSizeDialog();
             if (tileSize != null) {
@@ -194,7 +286,6 @@ public class LevelEditor extends JPanel {
 
     private void cmdSetScale() {
         canvas.setScale(setScaleDialog());
-        onScaleChange();
     }
 
     public void cmdSelectLayer() {
@@ -203,12 +294,18 @@ public class LevelEditor extends JPanel {
     }
 
     public void cmdAddLayer() {
+        if (isSharingSession(LevelEditorAction.CMD_ADD_LAYER)) {
+            return;
+        }
         levelData.addLayer();
         canvas.onLayerAdded();
         setLayerInfoText();
     }
 
     public void cmdSetLevelSizeInTiles() {
+        if (isSharingSession(LevelEditorAction.CMD_SET_LEVEL_SIZE)) {
+            return;
+        }
         if (saveLevelInternal()) {
             ImageSize levelSizeInTiles = setLevelSizeDialog();
             if (levelSizeInTiles != null) {
@@ -222,6 +319,156 @@ public class LevelEditor extends JPanel {
         }
     }
 
+    public void cmdUndo() {
+        if (undoManager.canUndo()) {
+            undoManager.undo();
+        }
+    }
+
+    public void cmdRedo() {
+        if (undoManager.canRedo()) {
+            undoManager.redo();
+        }
+    }
+
+    public void cmdCopyRegion() {
+        if (!canvas.copySelection()) {
+            showNoSelectionMessage();
+        }
+    }
+
+    public void cmdCutRegion() {
+        if (!canvas.cutSelection()) {
+            showNoSelectionMessage();
+        }
+    }
+
+    public void cmdPasteAsStamp() {
+        if (!canvas.pasteAsStamp()) {
+            JOptionPane.showMessageDialog(frame, "Nothing has been copied yet.",
+                    "Paste as Stamp", JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    public void cmdSelectAllLayers(boolean selectAllLayers) {
+        canvas.setSelectAllLayers(selectAllLayers);
+    }
+
+    private void showNoSelectionMessage() {
+        JOptionPane.showMessageDialog(frame, "Shift-drag on the level to select a region first.",
+                "No Selection", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    public void cmdFindTile() {
+        Integer code = findTileDialog();
+        if (code != null) {
+            canvas.setHighlightCode(code);
+            TileIndex index = levelData.getTileIndex();
+            StringBuilder usage = new StringBuilder("Tile " + code + " is used " + index.count(code) + " time(s).");
+            for (int layer = 0; layer < levelData.getLayers(); layer++) {
+                usage.append("\n  Layer ").append(layer + 1).append(": ").append(index.count(code, layer));
+            }
+            JOptionPane.showMessageDialog(frame, usage.toString(), "Find Tile", JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    public void cmdReplaceTile() {
+        int[] codes = replaceTileDialog();
+        if (codes != null) {
+            int fromCode = codes[0];
+            int toCode = codes[1];
+            int count = levelData.getTileIndex().count(fromCode);
+            if (count > 0 && fromCode != toCode) {
+                // the canvas refreshes from the change event
+                CellBitmap[] replaced = levelData.replaceAll(fromCode, toCode, -1);
+                addUndoableEdit(new ReplaceEdit(canvas, replaced, fromCode, toCode));
+            }
+            JOptionPane.showMessageDialog(frame, "Replaced " + (fromCode != toCode ? count : 0)
+                    + " occurrence(s) of tile " + fromCode + ".", "Replace Tile", JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    public void cmdAutoTile(AbstractButton source) {
+        if (source.isSelected() && canvas.getAutoTiler() == null) {
+            String expected = levelData.getLevelFile() != null
+                    ? AutoTiler.rulesFileFor(levelData.getLevelFile()).getName()
+                    : "<level>.autotile.xml";
+            JOptionPane.showMessageDialog(frame, "This level has no autotile rules.\nTerrain rules are read from "
+                    + expected + " next to the level file.", "Autotile", JOptionPane.INFORMATION_MESSAGE);
+            source.setSelected(false);
+        }
+        canvas.setAutoTiling(source.isSelected());
+    }
+
+    public void cmdShowGrid(boolean showGrid) {
+        canvas.setShowGrid(showGrid);
+    }
+
+    public void cmdObjectMode(AbstractButton source) {
+        String type = null;
+        if (source.isSelected()) {
+            type = (String) JOptionPane.showInputDialog(frame, "Type of the objects placed by double clicking:",
+                    "Object Mode", JOptionPane.QUESTION_MESSAGE, null, null, canvas.getObjectType());
+            if (type == null || type.isBlank()) {
+                source.setSelected(false);
+            }
+        }
+        canvas.setObjectMode(source.isSelected(), source.isSelected() ? type.strip() : canvas.getObjectType());
+    }
+
+    public void cmdPathPreview(AbstractButton source) {
+        if (source.isSelected() && canvas.getCollisionMap() == null) {
+            JOptionPane.showMessageDialog(frame, "Open a palette first - walkable cells come from its tile properties.",
+                    "Path Preview", JOptionPane.INFORMATION_MESSAGE);
+            source.setSelected(false);
+        }
+        canvas.setPathPreview(source.isSelected());
+    }
+
+    public void cmdLiveLink(AbstractButton source) {
+        if (source.isSelected()) {
+            attachLiveLink();
+            source.setSelected(liveLink != null);
+        } else {
+            detachLiveLink();
+        }
+    }
+
+    public void cmdHostSession() {
+        Integer port = sessionPortDialog("Host Session", "Port to host the session on (localhost):",
+                Integer.toString(CollabServer.DEFAULT_PORT));
+        if (port != null) {
+            leaveSession();
+            try {
+                collabServer = CollabServer.onLocalhost(levelData, port);
+                collabServer.start();
+                joinSession(new InetSocketAddress(InetAddress.getLoopbackAddress(), collabServer.getPort()));
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(frame, e.getMessage(),
+                        "Error hosting session", JOptionPane.ERROR_MESSAGE);
+                leaveSession();
+            }
+        }
+    }
+
+    public void cmdJoinSession() {
+        Integer port = sessionPortDialog("Join Session", "Port of the session on localhost:",
+                Integer.toString(CollabServer.DEFAULT_PORT));
+        if (port != null) {
+            leaveSession();
+            try {
+                joinSession(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(frame, e.getMessage(),
+                        "Error joining session", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    public void cmdLeaveSession() {
+        leaveSession();
+    }
+
     public void cmdExit() {
         frame.dispatchEvent(new WindowEvent(frame, WindowEvent.WINDOW_CLOSING));
     }
@@ -263,6 +510,52 @@ public class LevelEditor extends JPanel {
         }
     }
 
+    private Integer findTileDialog() {
+        Tile selected = canvas.getSelectedTile();
+        int paletteTiles = paletteTileCount();
+        try {
+            Object codeStr = JOptionPane.showInputDialog(this,
+                    "Enter a tile number to find:", "Find Tile", JOptionPane.QUESTION_MESSAGE,
+                    null, null, selected != null ? Integer.toString(selected.getCode()) : "");
+            if (codeStr == null) {
+                return null;
+            }
+            int code = Integer.parseInt(codeStr.toString().trim());
+            if (code < 0 || code >= paletteTiles) {
+                throw new NumberFormatException();
+            }
+            return code;
+        } catch (NumberFormatException nfx) {
+            JOptionPane.showMessageDialog(this, "Invalid tile number entered.\n" +
+                    "Enter a value between 0 and " + (paletteTiles - 1), "Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+    }
+
+    private int[] replaceTileDialog() {
+        Tile selected = canvas.getSelectedTile();
+        ReplaceTileDialog rtDialog = new ReplaceTileDialog(frame, "Replace Tile",
+                selected != null ? selected.getCode() : -1);
+        rtDialog.pack();
+        rtDialog.setLocationRelativeTo(frame);      // must come after pack
+        rtDialog.setVisible(true);
+        int[] codes = rtDialog.getEnteredCodes();
+        int paletteTiles = paletteTileCount();
+        if (codes != null && (codes[0] < 0 || codes[0] >= paletteTiles || codes[1] < 0 || codes[1] >= paletteTiles)) {
+            JOptionPane.showMessageDialog(this, "Invalid tile number entered.\n" +
+                    "Enter values between 0 and " + (paletteTiles - 1), "Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+        return codes;
+    }
+
+    // number of tiles in the current palette sheet; 0 if no palette is loaded
+    private int paletteTileCount() {
+        BufferedImage image = levelData.getPaletteImage();
+        ImageSize tileSize = levelData.getTileSize();
+        return image != null ? (image.getWidth() / tileSize.width()) * (image.getHeight() / tileSize.height()) : 0;
+    }
+
     private double setScaleDialog() {
         double oldScale = canvas.getScale();
         try {
@@ -270,13 +563,14 @@ public class LevelEditor extends JPanel {
                     "Enter a magnification scale factor:", "Scale",
                     JOptionPane.QUESTION_MESSAGE);
             double newScale = Double.parseDouble(newScaleStr);
-            if (newScale < 0.1d || newScale > 5.0d) {
+            if (newScale < LevelCanvas.MIN_SCALE || newScale > LevelCanvas.MAX_SCALE) {
                 throw new NumberFormatException();
             }
             return newScale;
         } catch (NumberFormatException nfx) {
             JOptionPane.showMessageDialog(this, "Invalid magnification value entered.\nEnter a "
-                    + "decimal value between 0.1 and 5.0", "Error", JOptionPane.ERROR_MESSAGE);
+                    + "decimal value between " + LevelCanvas.MIN_SCALE + " and " + LevelCanvas.MAX_SCALE,
+                    "Error", JOptionPane.ERROR_MESSAGE);
             return oldScale;
         }
     }
@@ -286,6 +580,8 @@ public class LevelEditor extends JPanel {
     private void clearCanvas() {
         levelData.clearLevelFile();
         canvas.onLevelLoaded(levelData, palette);
+        canvas.setAutoTiler(null);                  // rules belong to the level file
+        undoManager.discardAllEdits();
         setModified(false);
     }
 
@@ -296,6 +592,26 @@ public class LevelEditor extends JPanel {
         }
     }
 
+    private void browseAndOpenLevel() {
+        if (thumbnailCache == null) {
+            thumbnailCache = new ThumbnailCache();
+        }
+        if (browseFolder == null) {
+            File levelFile = levelData.getLevelFile();
+            browseFolder = levelFile != null ? levelFile.getAbsoluteFile().getParentFile()
+                    : new File(System.getProperty("user.dir"));
+        }
+        LevelBrowserDialog lbDialog = new LevelBrowserDialog(frame, thumbnailCache, browseFolder);
+        lbDialog.pack();
+        lbDialog.setLocationRelativeTo(frame);      // must come after pack
+        lbDialog.setVisible(true);
+        File levelFile = lbDialog.getSelectedLevel();
+        if (levelFile != null) {
+            browseFolder = levelFile.getParentFile();
+            openLevel(levelFile);
+        }
+    }
+
     private void saveLevelIfNeededAndThen(Runnable doThis) {
         if (modified) {
             Boolean saveLevel = querySaveLevel();
@@ -360,6 +676,37 @@ public class LevelEditor extends JPanel {
         };
     }
 
+    private File exportImageDialog() {
+        FileNameExtensionFilter pngFilter = new FileNameExtensionFilter("PNG Files", "png");
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Export image");
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        fileChooser.addChoosableFileFilter(pngFilter);
+        fileChooser.setAcceptAllFileFilterUsed(false);
+        int state = fileChooser.showSaveDialog(frame);
+        return switch (state) {
+            case JFileChooser.ERROR_OPTION, JFileChooser.CANCEL_OPTION -> null;
+            default -> ensureExtension(fileChooser.getSelectedFile(), pngFilter.getExtensions()[0]);
+        };
+    }
+
+    private File exportRegionsDialog() {
+        FileNameExtensionFilter regionsFilter = new FileNameExtensionFilter("Region Files", "regions");
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Export regions");
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        fileChooser.addChoosableFileFilter(regionsFilter);
+        fileChooser.setAcceptAllFileFilterUsed(false);
+        if (levelData.getLevelFile() != null) {
+            fileChooser.setSelectedFile(RegionFile.fileFor(levelData.getLevelFile()));
+        }
+        int state = fileChooser.showSaveDialog(frame);
+        return switch (state) {
+            case JFileChooser.ERROR_OPTION, JFileChooser.CANCEL_OPTION -> null;
+            default -> ensureExtension(fileChooser.getSelectedFile(), regionsFilter.getExtensions()[0]);
+        };
+    }
+
     private File ensureExtension(File file, String ext) {
         String absPath = file.getAbsolutePath();
         if (!absPath.substring(absPath.lastIndexOf('.') + 1).equals(ext)) {
@@ -372,10 +719,17 @@ public class LevelEditor extends JPanel {
     private void openLevel(File levelFile) {
         try {
             levelData = LevelData.forLoadingALevel(levelFile);
+            leaveSession();                         // the session is about the level being replaced
             closePalette();
             createPalette(frame, levelData.getPaletteFile(),
                     levelData.getPaletteImage(), levelData.getTileSize(), canvas);
             canvas.onLevelLoaded(levelData, palette);
+            attachCollisionMap();
+            if (liveLink != null) {
+                attachLiveLink();                   // follow the opened level
+            }
+            loadAutoTiler(levelFile);
+            undoManager.discardAllEdits();
             setTitle();
             setLevelSizeText();
             setTileSizeText();
@@ -403,6 +757,9 @@ public class LevelEditor extends JPanel {
     private void saveLevel(File levelFile) {
         try {
             levelData.saveXmlLevelFile(levelFile);
+            if (collisionMap != null) {
+                collisionMap.export(CollisionMap.fileFor(levelFile));
+            }
             setTitle();
             setModified(false);
         } catch (IOException e) {
@@ -411,19 +768,232 @@ public class LevelEditor extends JPanel {
         }
     }
 
+    // the level's terrain rules are optional - a level without a rules file just can't autotile
+    private void loadAutoTiler(File levelFile) {
+        File rulesFile = AutoTiler.rulesFileFor(levelFile);
+        AutoTiler autoTiler = null;
+        if (rulesFile.isFile()) {
+            try {
+                autoTiler = AutoTiler.load(rulesFile);
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(frame, e.getMessage(),
+                        "Error reading autotile rules", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+        canvas.setAutoTiler(autoTiler);
+    }
+
     // --------------- Palette Management
 
+    private void loadPalette(File paletteFile) {
+        try {
+            levelData.setPaletteFile(paletteFile);  // last possible throw point
+            closePalette();
+            createPalette(frame, levelData.getPaletteFile(),
+                    levelData.getPaletteImage(), levelData.getTileSize(), canvas);
+            canvas.onLevelLoaded(levelData, palette);
+            attachCollisionMap();
+            undoManager.discardAllEdits();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, e.getMessage(),
+                    "Error reading palette file", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private void createPalette(JFrame frame, File file, BufferedImage image,
             ImageSize tileSize, LevelCanvas canvas) {
+        watchPalette(file);
         palette = new SpritePanel(file, image, tileSize, canvas);
+        loadTileProperties(file);
+        palette.setTileProperties(tileProperties, this::onTilePropertiesChanged);
+        canvas.setTileAnimations(loadTileAnimations(file));
         paletteDialog = new JDialog(frame, file.toString());
         paletteDialog.setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
-        paletteDialog.setResizable(false);
-        paletteDialog.add(palette);
+        paletteDialog.add(createPaletteToolBar(palette), BorderLayout.NORTH);
+        paletteDialog.add(new JScrollPane(palette));
         paletteDialog.pack();
         paletteDialog.setVisible(true);
     }
 
+    // filter field (e.g.: "3, 10-20") and a go-to field that scrolls to and selects a tile by index
+    private JToolBar createPaletteToolBar(SpritePanel palette) {
+        JTextField filterField = new JTextField(12);
+        filterField.setToolTipText("Show only these tiles, e.g.: 3, 10-20");
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                palette.setFilter(filterField.getText());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                palette.setFilter(filterField.getText());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                palette.setFilter(filterField.getText());
+            }
+        });
+
+        JTextField goToField = new JTextField(6);
+        goToField.setToolTipText("Tile number to scroll to and select");
+        goToField.addActionListener(e -> {
+            try {
+                if (!palette.scrollToTile(Integer.parseInt(goToField.getText().trim()))) {
+                    Toolkit.getDefaultToolkit().beep();
+                }
+            } catch (NumberFormatException nfx) {
+                Toolkit.getDefaultToolkit().beep();
+            }
+        });
+
+        JToolBar toolBar = new JToolBar();
+        toolBar.setFloatable(false);
+        toolBar.add(new JLabel(" Filter: "));
+        toolBar.add(filterField);
+        toolBar.addSeparator();
+        toolBar.add(new JLabel(" Go to: "));
+        toolBar.add(goToField);
+        return toolBar;
+    }
+
+    private TileAnimations loadTileAnimations(File paletteFile) {
+        try {
+            return TileAnimations.forPalette(paletteFile);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, e.getMessage(),
+                    "Error reading tile animations", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+    }
+
+    private void loadTileProperties(File paletteFile) {
+        try {
+            tileProperties = TileProperties.forPalette(paletteFile);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, e.getMessage(),
+                    "Error reading tile properties", JOptionPane.ERROR_MESSAGE);
+            tileProperties = new TileProperties();
+        }
+    }
+
+    // tile flags are saved with the palette as soon as they're edited - they're shared by every level using it
+    private void onTilePropertiesChanged(int code) {
+        try {
+            tileProperties.save(TileProperties.fileFor(levelData.getPaletteFile()));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, e.getMessage(),
+                    "Error writing tile properties", JOptionPane.ERROR_MESSAGE);
+        }
+        if (collisionMap != null) {
+            collisionMap.onTilePropertiesChanged(code);
+            canvas.setCollisionMap(collisionMap);       // drops a previewed path that may now cross solid cells
+        }
+    }
+
+    // (re)builds the collision map of the current level and palette; it follows level edits from then on
+    private void attachCollisionMap() {
+        if (collisionMap != null) {
+            collisionMap.getLevel().removeLevelChangeListener(collisionMap);
+            collisionMap = null;
+        }
+        if (tileProperties != null) {
+            collisionMap = new CollisionMap(levelData, tileProperties, tileProperties.maskOf("solid"));
+            levelData.addLevelChangeListener(collisionMap);
+        }
+        canvas.setCollisionMap(collisionMap);
+    }
+
+    // ------------------ Shared Editing Sessions
+
+    private Integer sessionPortDialog(String title, String message, String defaultPort) {
+        String portStr = (String) JOptionPane.showInputDialog(frame, message, title,
+                JOptionPane.QUESTION_MESSAGE, null, null, defaultPort);
+        if (portStr == null) {
+            return null;
+        }
+        try {
+            int port = Integer.parseInt(portStr.trim());
+            if (port < 0 || port > 0xFFFF) {
+                throw new NumberFormatException();
+            }
+            return port;
+        } catch (NumberFormatException nfx) {
+            JOptionPane.showMessageDialog(frame, "Invalid port entered.\nEnter a value between 0 and 65535",
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+    }
+
+    // the level takes the session's size and cells; from then on tile edits are shared both ways
+    private void joinSession(InetSocketAddress address) throws IOException {
+        collabClient = new CollabClient(levelData, address, SwingUtilities::invokeLater);
+        collabClient.setOnDisconnected(() -> {
+            leaveSession();
+            JOptionPane.showMessageDialog(frame, "Left the shared session: it was closed, or the level was resized.",
+                    "Shared Session", JOptionPane.INFORMATION_MESSAGE);
+        });
+        canvas.reloadTiles();
+        undoManager.discardAllEdits();
+        setLevelSizeText();
+        setLayerInfoText();
+        frame.pack();
+    }
+
+    // resizing, adding layers and changing the tile size can't be shared; they need the session left first
+    private boolean isSharingSession(String command) {
+        if (collabClient == null) {
+            return false;
+        }
+        JOptionPane.showMessageDialog(frame, "Leave the shared session before using " + command,
+                "Shared Session", JOptionPane.INFORMATION_MESSAGE);
+        return true;
+    }
+
+    private void leaveSession() {
+        try {
+            if (collabClient != null) {
+                collabClient.close();
+            }
+            if (collabServer != null) {
+                collabServer.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Unable to close session: " + e.getMessage());
+        }
+        collabClient = null;
+        collabServer = null;
+    }
+
+    // publishes the current level next to its file (or in the temp folder until it's saved); edits are
+    // copied into the link as they're committed
+    private void attachLiveLink() {
+        detachLiveLink();
+        File levelFile = levelData.getLevelFile();
+        File linkFile = LiveLink.fileFor(levelFile != null
+                ? levelFile : new File(System.getProperty("java.io.tmpdir"), "untitled.level"));
+        try {
+            liveLink = new LiveLink(levelData, linkFile);
+            levelData.addLevelChangeListener(liveLink);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, e.getMessage(),
+                    "Error creating live link", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void detachLiveLink() {
+        if (liveLink != null) {
+            liveLink.getLevel().removeLevelChangeListener(liveLink);
+            try {
+                liveLink.close();
+            } catch (IOException e) {
+                System.out.println("Unable to close live link: " + e.getMessage());
+            }
+            liveLink = null;
+        }
+    }
+
     private void setPaletteTileSize(ImageSize tileSize) {
         if (palette != null) {
             palette.setTileSize(tileSize);
@@ -441,7 +1011,63 @@ public class LevelEditor extends JPanel {
         }
     }
 
+    private void watchPalette(File paletteFile) {
+        unwatchPalette();
+        try {
+            paletteWatcher = new PaletteWatcher(paletteFile, this::onPaletteFileChanged);
+        } catch (IOException e) {
+            System.out.println("Unable to watch palette file for changes: " + e.getMessage());
+        }
+    }
+
+    private void unwatchPalette() {
+        if (paletteWatcher != null) {
+            paletteWatcher.close();
+            paletteWatcher = null;
+        }
+    }
+
+    // the palette file was rewritten by another program - decode and diff it off the EDT, then patch in place
+    private void onPaletteFileChanged() {
+        File paletteFile = levelData.getPaletteFile();
+        BufferedImage oldImage = levelData.getPaletteImage();
+        ImageSize tileSize = levelData.getTileSize();
+        new SwingWorker<int[], Void>() {
+            private BufferedImage newImage;
+
+            @Override
+            protected int[] doInBackground() throws IOException {
+                newImage = LevelData.readPaletteImage(paletteFile);
+                return PaletteDiff.isCompatible(oldImage, newImage)
+                        ? PaletteDiff.changedTiles(oldImage, newImage, tileSize)
+                        : null;
+            }
+
+            @Override
+            protected void done() {
+                if (palette == null || levelData.getPaletteFile() != paletteFile
+                        || levelData.getPaletteImage() != oldImage) {
+                    return;                         // palette was replaced while we were reading - stale result
+                }
+                try {
+                    int[] changedTiles = get();
+                    if (changedTiles == null) {
+                        loadPalette(paletteFile);   // sheet dimensions changed - tile indices are not stable
+                    } else {
+                        levelData.setPaletteImage(newImage);
+                        palette.onPaletteImageChanged(newImage, changedTiles);
+                        canvas.onPaletteTilesChanged(palette, changedTiles);
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    // most likely caught the file mid-write; the next change event will retry
+                    System.out.println("Unable to reload palette file: " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+
     private void closePalette() {
+        unwatchPalette();
         if (palette != null) {
             paletteDialog.dispatchEvent(new WindowEvent(paletteDialog, WindowEvent.WINDOW_CLOSING));
         }
@@ -494,10 +1120,38 @@ public class LevelEditor extends JPanel {
         scaleLabel.repaint();
     }
 
+    // measures the footprint on the EDT, which owns the level and the caches, and publishes it for JMX too
+    private void updateMemoryGauge() {
+        EditorTelemetry telemetry = EditorTelemetry.get();
+        long layerBytes = levelData.getLayerDataBytes();
+        long indexBytes = levelData.getTileIndex().retainedBytes();
+        long undoBytes = undoManager.retainedBytes();
+        long tileBytes = palette != null ? palette.getTileCacheBytes() : 0;
+        long cacheBytes = canvas.getImageCacheBytes() + (palette != null ? palette.getImageCacheBytes() : 0);
+        long paletteBytes = EditorTelemetry.imageBytes(levelData.getPaletteImage());
+        telemetry.setFootprint(layerBytes, indexBytes, undoBytes, tileBytes, cacheBytes, paletteBytes);
+        long usedMb = telemetry.getHeapUsedBytes() >> 20;
+        long maxMb = telemetry.getHeapMaxBytes() >> 20;
+        memoryGauge.setMaximum((int) maxMb);
+        memoryGauge.setValue((int) usedMb);
+        memoryGauge.setString(usedMb + " / " + maxMb + " MB");
+        memoryGauge.setToolTipText("Layers " + toMb(layerBytes) + ", tile index " + toMb(indexBytes)
+                + ", undo " + toMb(undoBytes) + ", tiles " + toMb(tileBytes)
+                + ", image caches " + toMb(cacheBytes) + ", palette " + toMb(paletteBytes));
+    }
+
+    private static String toMb(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
     public void onCanvasModified() {
         setModified(true);
     }
 
+    public void addUndoableEdit(UndoableEdit edit) {
+        undoManager.addEdit(edit);
+    }
+
     private void onFrameClosing() {
         saveLevelIfNeededAndThen(frame::dispose);
     }
@@ -511,8 +1165,6 @@ public class LevelEditor extends JPanel {
 
     public void onScaleChange() {
         setScaleText();
-        frame.pack();
-        canvas.invalidate();
     }
 
     private class LevelEditorAction extends AbstractAction {
@@ -521,17 +1173,37 @@ public class LevelEditor extends JPanel {
         static final String CMD_OPEN = "Open";                          // mid-level Open menu
         static final String CMD_OPEN_LEVEL = "Existing Level...";
         static final String CMD_OPEN_PALETTE = "Palette";
+        static final String CMD_BROWSE_LEVELS = "Browse Levels...";
         static final String CMD_SAVE_LEVEL = "Save Level";
         static final String CMD_SAVE_LEVEL_AS = "Save Level As...";
+        static final String CMD_EXPORT_IMAGE = "Export Image...";
+        static final String CMD_EXPORT_REGIONS = "Export Regions...";
+        static final String CMD_LIVE_LINK = "Live Link";
+        static final String CMD_SESSION = "Shared Session";              // mid-level Shared Session menu
+        static final String CMD_HOST_SESSION = "Host...";
+        static final String CMD_JOIN_SESSION = "Join...";
+        static final String CMD_LEAVE_SESSION = "Leave";
         static final String CMD_EXIT = "Exit";
 
         static final String CMD_EDIT = "Edit";                          // top-level Edit menu
+        static final String CMD_UNDO = "Undo";
+        static final String CMD_REDO = "Redo";
+        static final String CMD_COPY_REGION = "Copy Region";
+        static final String CMD_CUT_REGION = "Cut Region";
+        static final String CMD_PASTE_AS_STAMP = "Paste as Stamp";
+        static final String CMD_SELECT_ALL_LAYERS = "Select Across All Layers";
         static final String CMD_LAYER = "Layer";                        // mid-level Layer menu
         static final String CMD_SELECT_LAYER = "Set Layer...";
         static final String CMD_ADD_LAYER = "Add Layer";
         static final String CMD_SET_LEVEL_SIZE = "Set Level Size...";
         static final String CMD_SET_TILE_SIZE = "Set Tile Size...";
         static final String CMD_SET_SCALE = "Set Scale...";
+        static final String CMD_FIND_TILE = "Find Tile...";
+        static final String CMD_REPLACE_TILE = "Replace Tile...";
+        static final String CMD_AUTOTILE = "Autotile Terrain";
+        static final String CMD_PATH_PREVIEW = "Path Preview";
+        static final String CMD_OBJECT_MODE = "Object Mode...";
+        static final String CMD_SHOW_GRID = "Show Grid";
 
         @Override
         public void actionPerformed(ActionEvent e) {
@@ -540,14 +1212,33 @@ public class LevelEditor extends JPanel {
                 case CMD_NEW_LEVEL -> cmdNewLevel();
                 case CMD_OPEN_LEVEL -> cmdOpenLevel();
                 case CMD_OPEN_PALETTE -> cmdOpenPalette();
+                case CMD_BROWSE_LEVELS -> cmdBrowseLevels();
                 case CMD_SAVE_LEVEL -> cmdSaveLevel();
                 case CMD_SAVE_LEVEL_AS -> cmdSaveLevelAs();
+                case CMD_EXPORT_IMAGE -> cmdExportImage();
+                case CMD_EXPORT_REGIONS -> cmdExportRegions();
+                case CMD_LIVE_LINK -> cmdLiveLink((AbstractButton) e.getSource());
+                case CMD_HOST_SESSION -> cmdHostSession();
+                case CMD_JOIN_SESSION -> cmdJoinSession();
+                case CMD_LEAVE_SESSION -> cmdLeaveSession();
                 case CMD_EXIT -> cmdExit();
                 case CMD_SELECT_LAYER -> cmdSelectLayer();
                 case CMD_ADD_LAYER -> cmdAddLayer();
                 case CMD_SET_LEVEL_SIZE -> cmdSetLevelSizeInTiles();
                 case CMD_SET_TILE_SIZE -> cmdSetTileSize();
                 case CMD_SET_SCALE -> cmdSetScale();
+                case CMD_UNDO -> cmdUndo();
+                case CMD_REDO -> cmdRedo();
+                case CMD_COPY_REGION -> cmdCopyRegion();
+                case CMD_CUT_REGION -> cmdCutRegion();
+                case CMD_PASTE_AS_STAMP -> cmdPasteAsStamp();
+                case CMD_SELECT_ALL_LAYERS -> cmdSelectAllLayers(((AbstractButton) e.getSource()).isSelected());
+                case CMD_FIND_TILE -> cmdFindTile();
+                case CMD_REPLACE_TILE -> cmdReplaceTile();
+                case CMD_AUTOTILE -> cmdAutoTile((AbstractButton) e.getSource());
+                case CMD_PATH_PREVIEW -> cmdPathPreview((AbstractButton) e.getSource());
+                case CMD_OBJECT_MODE -> cmdObjectMode((AbstractButton) e.getSource());
+                case CMD_SHOW_GRID -> cmdShowGrid(((AbstractButton) e.getSource()).isSelected());
                 default -> System.out.println("Unknown command '" + command + "'; ignoring.");
             }
         }
@@ -571,9 +1262,15 @@ public class LevelEditor extends JPanel {
         openTileSheetItem.setMnemonic(KeyEvent.VK_P);
         openTileSheetItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_P, InputEvent.CTRL_DOWN_MASK));
 
+        JMenuItem browseLevelsItem = new JMenuItem(menuItemAction);
+        browseLevelsItem.setText(LevelEditorAction.CMD_BROWSE_LEVELS);
+        browseLevelsItem.setMnemonic(KeyEvent.VK_B);
+        browseLevelsItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_B, InputEvent.CTRL_DOWN_MASK));
+
         JMenu fileOpen = new JMenu(LevelEditorAction.CMD_OPEN);
         fileOpen.setMnemonic(KeyEvent.VK_O);
         fileOpen.add(openLevelItem);
+        fileOpen.add(browseLevelsItem);
         fileOpen.add(openTileSheetItem);
 
         JMenuItem fileSaveLevelItem = new JMenuItem(menuItemAction);
@@ -586,6 +1283,41 @@ public class LevelEditor extends JPanel {
         fileSaveLevelAsItem.setMnemonic(KeyEvent.VK_A);
         fileSaveLevelAsItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_A, InputEvent.CTRL_DOWN_MASK));
 
+        JMenuItem fileExportImageItem = new JMenuItem(menuItemAction);
+        fileExportImageItem.setText(LevelEditorAction.CMD_EXPORT_IMAGE);
+        fileExportImageItem.setMnemonic(KeyEvent.VK_E);
+        fileExportImageItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_E, InputEvent.CTRL_DOWN_MASK));
+
+        JMenuItem fileExportRegionsItem = new JMenuItem(menuItemAction);
+        fileExportRegionsItem.setText(LevelEditorAction.CMD_EXPORT_REGIONS);
+        fileExportRegionsItem.setMnemonic(KeyEvent.VK_R);
+        fileExportRegionsItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_E,
+                InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));
+
+        JCheckBoxMenuItem fileLiveLinkItem = new JCheckBoxMenuItem(menuItemAction);
+        fileLiveLinkItem.setText(LevelEditorAction.CMD_LIVE_LINK);
+        fileLiveLinkItem.setMnemonic(KeyEvent.VK_L);
+        fileLiveLinkItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_L,
+                InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));
+
+        JMenuItem hostSessionItem = new JMenuItem(menuItemAction);
+        hostSessionItem.setText(LevelEditorAction.CMD_HOST_SESSION);
+        hostSessionItem.setMnemonic(KeyEvent.VK_H);
+
+        JMenuItem joinSessionItem = new JMenuItem(menuItemAction);
+        joinSessionItem.setText(LevelEditorAction.CMD_JOIN_SESSION);
+        joinSessionItem.setMnemonic(KeyEvent.VK_J);
+
+        JMenuItem leaveSessionItem = new JMenuItem(menuItemAction);
+        leaveSessionItem.setText(LevelEditorAction.CMD_LEAVE_SESSION);
+        leaveSessionItem.setMnemonic(KeyEvent.VK_L);
+
+        JMenu fileSession = new JMenu(LevelEditorAction.CMD_SESSION);
+        fileSession.setMnemonic(KeyEvent.VK_D);
+        fileSession.add(hostSessionItem);
+        fileSession.add(joinSessionItem);
+        fileSession.add(leaveSessionItem);
+
         JMenuItem fileExitItem = new JMenuItem(menuItemAction);
         fileExitItem.setText(LevelEditorAction.CMD_EXIT);
         fileExitItem.setMnemonic(KeyEvent.VK_X);
@@ -599,8 +1331,46 @@ public class LevelEditor extends JPanel {
         fileMenu.add(fileSaveLevelItem);
         fileMenu.add(fileSaveLevelAsItem);
         fileMenu.addSeparator();
+        fileMenu.add(fileExportImageItem);
+        fileMenu.add(fileExportRegionsItem);
+        fileMenu.add(fileLiveLinkItem);
+        fileMenu.add(fileSession);
+        fileMenu.addSeparator();
         fileMenu.add(fileExitItem);
 
+        JMenuItem editUndoItem = new JMenuItem(menuItemAction);
+        editUndoItem.setText(LevelEditorAction.CMD_UNDO);
+        editUndoItem.setMnemonic(KeyEvent.VK_U);
+        editUndoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+
+        JMenuItem editRedoItem = new JMenuItem(menuItemAction);
+        editRedoItem.setText(LevelEditorAction.CMD_REDO);
+        editRedoItem.setMnemonic(KeyEvent.VK_E);
+        editRedoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z,
+                InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));
+
+        JMenuItem editCopyRegionItem = new JMenuItem(menuItemAction);
+        editCopyRegionItem.setText(LevelEditorAction.CMD_COPY_REGION);
+        editCopyRegionItem.setMnemonic(KeyEvent.VK_O);
+        editCopyRegionItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_C,
+                InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));
+
+        JMenuItem editCutRegionItem = new JMenuItem(menuItemAction);
+        editCutRegionItem.setText(LevelEditorAction.CMD_CUT_REGION);
+        editCutRegionItem.setMnemonic(KeyEvent.VK_U);
+        editCutRegionItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_X,
+                InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));
+
+        JMenuItem editPasteAsStampItem = new JMenuItem(menuItemAction);
+        editPasteAsStampItem.setText(LevelEditorAction.CMD_PASTE_AS_STAMP);
+        editPasteAsStampItem.setMnemonic(KeyEvent.VK_P);
+        editPasteAsStampItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_V,
+                InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));
+
+        JCheckBoxMenuItem editSelectAllLayersItem = new JCheckBoxMenuItem(menuItemAction);
+        editSelectAllLayersItem.setText(LevelEditorAction.CMD_SELECT_ALL_LAYERS);
+        editSelectAllLayersItem.setMnemonic(KeyEvent.VK_A);
+
         JMenuItem editSetTileSizeItem = new JMenuItem(menuItemAction);
         editSetTileSizeItem.setText(LevelEditorAction.CMD_SET_TILE_SIZE);
         editSetTileSizeItem.setMnemonic(KeyEvent.VK_T);
@@ -626,6 +1396,39 @@ public class LevelEditor extends JPanel {
         editLayerAddLayerItem.setMnemonic(KeyEvent.VK_D);
         editLayerAddLayerItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_D, InputEvent.CTRL_DOWN_MASK));
 
+        JMenuItem editFindTileItem = new JMenuItem(menuItemAction);
+        editFindTileItem.setText(LevelEditorAction.CMD_FIND_TILE);
+        editFindTileItem.setMnemonic(KeyEvent.VK_F);
+        editFindTileItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F, InputEvent.CTRL_DOWN_MASK));
+
+        JMenuItem editReplaceTileItem = new JMenuItem(menuItemAction);
+        editReplaceTileItem.setText(LevelEditorAction.CMD_REPLACE_TILE);
+        editReplaceTileItem.setMnemonic(KeyEvent.VK_R);
+        editReplaceTileItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_R, InputEvent.CTRL_DOWN_MASK));
+
+        JCheckBoxMenuItem editAutoTileItem = new JCheckBoxMenuItem(menuItemAction);
+        editAutoTileItem.setText(LevelEditorAction.CMD_AUTOTILE);
+        editAutoTileItem.setMnemonic(KeyEvent.VK_I);
+        editAutoTileItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_A,
+                InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));
+
+        JCheckBoxMenuItem editPathPreviewItem = new JCheckBoxMenuItem(menuItemAction);
+        editPathPreviewItem.setText(LevelEditorAction.CMD_PATH_PREVIEW);
+        editPathPreviewItem.setMnemonic(KeyEvent.VK_H);
+        editPathPreviewItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_P,
+                InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));
+
+        JCheckBoxMenuItem editShowGridItem = new JCheckBoxMenuItem(menuItemAction);
+        editShowGridItem.setText(LevelEditorAction.CMD_SHOW_GRID);
+        editShowGridItem.setMnemonic(KeyEvent.VK_G);
+        editShowGridItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_G, InputEvent.CTRL_DOWN_MASK));
+
+        JCheckBoxMenuItem editObjectModeItem = new JCheckBoxMenuItem(menuItemAction);
+        editObjectModeItem.setText(LevelEditorAction.CMD_OBJECT_MODE);
+        editObjectModeItem.setMnemonic(KeyEvent.VK_J);
+        editObjectModeItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O,
+                InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));
+
         JMenu editLayer = new JMenu(LevelEditorAction.CMD_LAYER);
         editLayer.setMnemonic(KeyEvent.VK_Y);
         editLayer.add(editLayerSelectLayerItem);
@@ -633,9 +1436,25 @@ public class LevelEditor extends JPanel {
 
         JMenu editMenu = new JMenu(LevelEditorAction.CMD_EDIT);
         editMenu.setMnemonic(KeyEvent.VK_E);
+        editMenu.add(editUndoItem);
+        editMenu.add(editRedoItem);
+        editMenu.addSeparator();
+        editMenu.add(editCopyRegionItem);
+        editMenu.add(editCutRegionItem);
+        editMenu.add(editPasteAsStampItem);
+        editMenu.add(editSelectAllLayersItem);
+        editMenu.addSeparator();
         editMenu.add(editSetTileSizeItem);
         editMenu.add(editSetLevelSizeItem);
         editMenu.add(editSetScaleItem);
+        editMenu.add(editShowGridItem);
+        editMenu.addSeparator();
+        editMenu.add(editFindTileItem);
+        editMenu.add(editReplaceTileItem);
+        editMenu.addSeparator();
+        editMenu.add(editAutoTileItem);
+        editMenu.add(editPathPreviewItem);
+        editMenu.add(editObjectModeItem);
         editMenu.addSeparator();
         editMenu.add(editLayer);
 
@@ -0,0 +1,39 @@
+package com.javagames.leveleditor;
+
+import com.javagames.leveleditor.model.LevelObject;
+
+import javax.swing.undo.AbstractUndoableEdit;
+import java.util.List;
+
+// Undoable change to the level's objects - placing, moving or deleting. A move removes the objects as they
+// were and adds them back at their new positions.
+class ObjectEdit extends AbstractUndoableEdit {
+    private final LevelCanvas canvas;
+    private final List<LevelObject> removed;
+    private final List<LevelObject> added;
+    private final String name;
+
+    ObjectEdit(LevelCanvas canvas, String name, List<LevelObject> removed, List<LevelObject> added) {
+        this.canvas = canvas;
+        this.name = name;
+        this.removed = List.copyOf(removed);
+        this.added = List.copyOf(added);
+    }
+
+    @Override
+    public void undo() {
+        super.undo();
+        canvas.applyObjects(added, removed);
+    }
+
+    @Override
+    public void redo() {
+        super.redo();
+        canvas.applyObjects(removed, added);
+    }
+
+    @Override
+    public String getPresentationName() {
+        return name;
+    }
+}
@@ -0,0 +1,65 @@
+package com.javagames.leveleditor;
+
+import javax.swing.*;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+// Watches a palette image file for changes made by external tools (e.g.: an artist saving from a paint
+// program). Bursts of file system events are debounced and reported once on the event dispatch thread.
+public class PaletteWatcher implements Closeable {
+    private static final int DEBOUNCE_DELAY_MS = 300;
+
+    private final Path fileName;
+    private final WatchService watchService;
+    private final Timer debounceTimer;
+    private final Thread watchThread;
+
+    public PaletteWatcher(File paletteFile, Runnable onChanged) throws IOException {
+        Path path = paletteFile.getAbsoluteFile().toPath();
+        this.fileName = path.getFileName();
+        this.watchService = path.getFileSystem().newWatchService();
+        path.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+
+        debounceTimer = new Timer(DEBOUNCE_DELAY_MS, e -> onChanged.run());
+        debounceTimer.setRepeats(false);
+
+        watchThread = new Thread(this::watchLoop, "palette-watcher-" + fileName);
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean touched = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // an overflow means we lost events - assume our file was among them
+                    touched |= event.kind() == OVERFLOW || fileName.equals(event.context());
+                }
+                if (touched) {
+                    SwingUtilities.invokeLater(debounceTimer::restart);
+                }
+                if (!key.reset()) {
+                    break;                          // directory is gone; nothing left to watch
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // closed - exit quietly
+        }
+    }
+
+    @Override
+    public void close() {
+        debounceTimer.stop();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.out.println("Unable to close palette watcher: " + e.getMessage());
+        }
+    }
+}
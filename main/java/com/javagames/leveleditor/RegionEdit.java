@@ -0,0 +1,57 @@
+package com.javagames.leveleditor;
+
+import com.javagames.leveleditor.model.TileRegion;
+
+import javax.swing.undo.AbstractUndoableEdit;
+
+// Undoable replacement of a rectangular block of cells - a stamp, a cut or a single painted tile.
+// Both regions cover the same (already clipped) area with its top left cell at (x, y).
+class RegionEdit extends AbstractUndoableEdit {
+    private final LevelCanvas canvas;
+    private final TileRegion before;
+    private final TileRegion after;
+    private final int x;
+    private final int y;
+    private final int firstLayer;
+    private final String name;
+
+    RegionEdit(LevelCanvas canvas, String name, TileRegion before, TileRegion after, int x, int y, int firstLayer) {
+        this.canvas = canvas;
+        this.name = name;
+        this.before = before;
+        this.after = after;
+        this.x = x;
+        this.y = y;
+        this.firstLayer = firstLayer;
+    }
+
+    // bytes of cell codes kept for undo and redo
+    long retainedBytes() {
+        return bytes(before) + bytes(after);
+    }
+
+    private static long bytes(TileRegion region) {
+        long bytes = 0;
+        for (int[] layer : region.codes()) {
+            bytes += (long) layer.length * Integer.BYTES;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void undo() {
+        super.undo();
+        canvas.applyRegion(before, x, y, firstLayer);
+    }
+
+    @Override
+    public void redo() {
+        super.redo();
+        canvas.applyRegion(after, x, y, firstLayer);
+    }
+
+    @Override
+    public String getPresentationName() {
+        return name;
+    }
+}
@@ -0,0 +1,46 @@
+package com.javagames.leveleditor;
+
+import com.javagames.leveleditor.model.CellBitmap;
+
+import javax.swing.undo.AbstractUndoableEdit;
+
+// Undoable replace-all of one tile code with another. Keeps only the replaced cells, per layer, which can be
+// scattered across the whole level.
+class ReplaceEdit extends AbstractUndoableEdit {
+    private final LevelCanvas canvas;
+    private final CellBitmap[] cells;
+    private final int fromCode;
+    private final int toCode;
+
+    ReplaceEdit(LevelCanvas canvas, CellBitmap[] cells, int fromCode, int toCode) {
+        this.canvas = canvas;
+        this.cells = cells;
+        this.fromCode = fromCode;
+        this.toCode = toCode;
+    }
+
+    long retainedBytes() {
+        long bytes = 0;
+        for (CellBitmap layerCells : cells) {
+            bytes += layerCells.retainedBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void undo() {
+        super.undo();
+        canvas.applyCells(cells, fromCode);
+    }
+
+    @Override
+    public void redo() {
+        super.redo();
+        canvas.applyCells(cells, toCode);
+    }
+
+    @Override
+    public String getPresentationName() {
+        return "Replace Tile";
+    }
+}
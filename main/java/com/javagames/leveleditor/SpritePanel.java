@@ -2,6 +2,9 @@ package com.javagames.leveleditor;
 
 import com.javagames.leveleditor.model.ImageSize;
 import com.javagames.leveleditor.model.Tile;
+import com.javagames.leveleditor.model.TileProperties;
+import com.javagames.leveleditor.render.TileAtlas;
+import com.javagames.leveleditor.telemetry.EditorTelemetry;
 
 import javax.swing.*;
 import java.awt.*;
@@ -10,26 +13,54 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
 
-public class SpritePanel extends JPanel {
+// Scrollable view of the palette sprite sheet. Tiles are sliced lazily the first time they are needed and
+// only the part of the sheet inside the clip is painted, so sheets with tens of thousands of tiles stay
+// responsive. The view can be filtered down to a set of tile indices (e.g.: "12, 40-80").
+public class SpritePanel extends JPanel implements Scrollable {
+    private static final int GRID_DASH_PERIOD = 3;
     private static final Stroke GRID_STROKE = new BasicStroke(1.0f, BasicStroke.CAP_SQUARE,
-            BasicStroke.JOIN_MITER, 10.0f, new float[] {1.0f, 2.0f}, 0.0f);
+            BasicStroke.JOIN_MITER, 10.0f, new float[] {1.0f, GRID_DASH_PERIOD - 1.0f}, 0.0f);
     private static final Color GRID_COLOR = new Color(0, 0, 0, 0x7f);   // 50% transparent
+    private static final Color HOVER_COLOR = new Color(0xFF, 0, 0, 0x60);
+    private static final Color SELECTED_COLOR = Color.YELLOW;
+    private static final Stroke SELECTED_STROKE = new BasicStroke(2.0f);
+    private static final int MAX_VIEWPORT_WIDTH = 640;
+    private static final int MAX_VIEWPORT_HEIGHT = 640;
+    private static final int BLOCK_SIZE = 512;          // view pixels per side of a cached block
+    private static final int MAX_CACHED_BLOCKS = 32;    // about 1 MB each
 
     private final LevelCanvas canvas;
     private final BufferedImage backgroundTile;
-    private final BufferedImage image;
     private final File file;
 
-    private double scale;
+    private BufferedImage image;
+    private ImageSize tileSize;
     private Dimension windowSize;
-    private int imageWidthPixelsScaled;
-    private int imageHeightPixelsScaled;
     private int tileWidthPixelsScaled;
     private int tileHeightPixelsScaled;
-    private int imageWidthTiles;
-    private Tile[] tiles;
-    private Point curHoverPoint;
+    private int imageWidthTiles;        // columns in the sheet - and in the view
+    private int tileCount;
+    private Tile[] tiles;               // sliced on demand; null until first used
+    private TileAtlas atlas;            // the sheet in the screen's pixel format; null until first drawn
+    private int[] filteredTiles;        // tile index shown in each view slot, or null to show every tile in order
+    private int hoverSlot = -1;
+    private int selectedIndex = -1;
+    private TileProperties tileProperties;          // gameplay flags per tile, or null if they can't be edited
+    private IntConsumer onTilePropertiesChanged;    // called with the tile code after its flags are edited
+
+    // composited view blocks, least recently used first; the whole sheet scaled up can be far too large to
+    // cache as one image
+    private final Map<Long, Image> blocks = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Image> eldest) {
+            return size() > MAX_CACHED_BLOCKS;
+        }
+    };
 
     public SpritePanel(File file, BufferedImage image, ImageSize tileSize, LevelCanvas canvas) {
         this.file = file;
@@ -38,6 +69,22 @@ public class SpritePanel extends JPanel {
         this.backgroundTile = makeScaledBackgroundTile();
         setTileSize(tileSize);
         addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                super.mousePressed(e);
+                if (e.isPopupTrigger()) {
+                    showTilePropertiesMenu(e);
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                super.mouseReleased(e);
+                if (e.isPopupTrigger()) {
+                    showTilePropertiesMenu(e);
+                }
+            }
+
             @Override
             public void mouseClicked(MouseEvent e) {
                 super.mouseClicked(e);
@@ -85,121 +132,451 @@ public class SpritePanel extends JPanel {
         return windowSize;
     }
 
+    // ------------------ Scrollable
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(Math.min(windowSize.width, MAX_VIEWPORT_WIDTH),
+                Math.min(windowSize.height, MAX_VIEWPORT_HEIGHT));
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? tileHeightPixelsScaled : tileWidthPixelsScaled;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL
+                ? Math.max(tileHeightPixelsScaled, visibleRect.height - tileHeightPixelsScaled)
+                : Math.max(tileWidthPixelsScaled, visibleRect.width - tileWidthPixelsScaled);
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return false;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+
+    // ------------------ painting
+
+    // the static content (checkerboard, tiles and grid) comes from the block cache; hover and selection
+    // highlights are painted over it and only their own tiles are repainted when they move
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         if (file != null) {
             Graphics2D g2d = (Graphics2D) g.create();
-            drawPanelBackground(g2d);
-            g2d.setClip(0, 0, imageWidthPixelsScaled, imageHeightPixelsScaled);
-            drawImageBackground(g2d);
-            drawImageAtScale(g2d);
-            drawGridAtScale(g2d);
+            Rectangle clip = g2d.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, getWidth(), getHeight());
+            }
+            drawPanelBackground(g2d, clip);
+            int firstBlockX = Math.max(0, clip.x / BLOCK_SIZE);
+            int lastBlockX = Math.min((windowSize.width - 1) / BLOCK_SIZE, (clip.x + clip.width - 1) / BLOCK_SIZE);
+            int firstBlockY = Math.max(0, clip.y / BLOCK_SIZE);
+            int lastBlockY = Math.min((windowSize.height - 1) / BLOCK_SIZE, (clip.y + clip.height - 1) / BLOCK_SIZE);
+            for (int by = firstBlockY; by <= lastBlockY; by++) {
+                for (int bx = firstBlockX; bx <= lastBlockX; bx++) {
+                    g2d.drawImage(getBlock(bx, by), bx * BLOCK_SIZE, by * BLOCK_SIZE, this);
+                }
+            }
+            drawHighlights(g2d);
             g2d.dispose();
         }
     }
 
-    private void drawPanelBackground(Graphics2D g2d) {
+    private void drawHighlights(Graphics2D g2d) {
+        int selectedSlot = slotOfTileIndex(selectedIndex);
+        if (hoverSlot >= 0 && hoverSlot != selectedSlot) {
+            g2d.setColor(HOVER_COLOR);
+            g2d.fill(slotBounds(hoverSlot));
+        }
+        if (selectedSlot >= 0) {
+            Rectangle r = slotBounds(selectedSlot);
+            g2d.setColor(SELECTED_COLOR);
+            g2d.setStroke(SELECTED_STROKE);
+            g2d.drawRect(r.x + 1, r.y + 1, r.width - 2, r.height - 2);
+        }
+    }
+
+    // a BLOCK_SIZE square of the composited view, rendered on first use
+    private Image getBlock(int bx, int by) {
+        long key = (long) by << 32 | bx;
+        Image block = blocks.get(key);
+        if (block == null) {
+            block = renderBlock(bx, by);
+            blocks.put(key, block);
+        }
+        return block;
+    }
+
+    private Image renderBlock(int bx, int by) {
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        BufferedImage block = gc != null
+                ? gc.createCompatibleImage(BLOCK_SIZE, BLOCK_SIZE)
+                : new BufferedImage(BLOCK_SIZE, BLOCK_SIZE, BufferedImage.TYPE_INT_RGB);
+        Rectangle area = new Rectangle(bx * BLOCK_SIZE, by * BLOCK_SIZE, BLOCK_SIZE, BLOCK_SIZE);
+        Graphics2D g2d = block.createGraphics();
+        g2d.translate(-area.x, -area.y);
+        drawPanelBackground(g2d, area);
+        g2d.clip(area.intersection(new Rectangle(windowSize)));
+        int firstCol = area.x / tileWidthPixelsScaled;
+        int lastCol = Math.min(imageWidthTiles - 1, (area.x + area.width - 1) / tileWidthPixelsScaled);
+        int firstRow = area.y / tileHeightPixelsScaled;
+        int lastRow = Math.min(getViewRows() - 1, (area.y + area.height - 1) / tileHeightPixelsScaled);
+        drawImageBackground(g2d, area);
+        drawTilesAtScale(g2d, firstCol, lastCol, firstRow, lastRow);
+        drawGridAtScale(g2d, firstCol, lastCol, firstRow, lastRow);
+        g2d.dispose();
+        return block;
+    }
+
+    private void invalidateBlocks() {
+        blocks.clear();
+    }
+
+    private void invalidateBlocksOf(int slot) {
+        Rectangle r = slotBounds(slot);
+        for (int by = r.y / BLOCK_SIZE; by <= (r.y + r.height - 1) / BLOCK_SIZE; by++) {
+            for (int bx = r.x / BLOCK_SIZE; bx <= (r.x + r.width - 1) / BLOCK_SIZE; bx++) {
+                blocks.remove((long) by << 32 | bx);
+            }
+        }
+    }
+
+    private void drawPanelBackground(Graphics2D g2d, Rectangle area) {
         g2d.setColor(Color.BLACK);
-        g2d.fillRect(0, 0, getWidth(), getHeight());
+        g2d.fillRect(area.x, area.y, area.width, area.height);
     }
 
-    private void drawImageBackground(Graphics2D g2d) {
+    private void drawImageBackground(Graphics2D g2d, Rectangle clip) {
         int wBkg = backgroundTile.getWidth();
         int hBkg = backgroundTile.getHeight();
-        for (int y = 0; y < imageHeightPixelsScaled; y += hBkg) {
-            for (int x = 0; x < imageWidthPixelsScaled; x += wBkg) {
+        for (int y = clip.y / hBkg * hBkg; y < clip.y + clip.height; y += hBkg) {
+            for (int x = clip.x / wBkg * wBkg; x < clip.x + clip.width; x += wBkg) {
                 g2d.drawImage(backgroundTile, x, y, this);
             }
         }
     }
 
-    private void drawImageAtScale(Graphics2D g2d) {
-        g2d.scale(scale, scale);
-        g2d.drawImage(image, 0, 0, this);
-        g2d.scale(1.0 / scale, 1.0 / scale);
+    private void drawTilesAtScale(Graphics2D g2d, int firstCol, int lastCol, int firstRow, int lastRow) {
+        int w = tileSize.width();
+        int h = tileSize.height();
+        TileAtlas atlas = getAtlas(getGraphicsConfiguration());
+        if (filteredTiles == null) {
+            // view is the sheet itself - blit the visible part of it in one scaled draw
+            g2d.drawImage(atlas.getImage(),
+                    firstCol * tileWidthPixelsScaled, firstRow * tileHeightPixelsScaled,
+                    (lastCol + 1) * tileWidthPixelsScaled, (lastRow + 1) * tileHeightPixelsScaled,
+                    firstCol * w, firstRow * h, (lastCol + 1) * w, (lastRow + 1) * h, this);
+            return;
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                int index = tileIndexAtSlot(col + row * imageWidthTiles);
+                if (index >= 0) {
+                    atlas.drawTile(g2d, index, col * tileWidthPixelsScaled, row * tileHeightPixelsScaled,
+                            tileWidthPixelsScaled, tileHeightPixelsScaled);
+                }
+            }
+        }
     }
 
-    private void drawGridAtScale(Graphics2D g2d) {
+    private void drawGridAtScale(Graphics2D g2d, int firstCol, int lastCol, int firstRow, int lastRow) {
         g2d.setColor(GRID_COLOR);
         g2d.setStroke(GRID_STROKE);
         int xInterval = tileWidthPixelsScaled;
         int yInterval = tileHeightPixelsScaled;
-        for (int y = yInterval; y < imageHeightPixelsScaled; y += yInterval) {
-            g2d.drawLine(0, y, imageWidthPixelsScaled, y);
+        int left = firstCol * xInterval;
+        int right = (lastCol + 1) * xInterval;
+        int top = firstRow * yInterval;
+        int bottom = (lastRow + 1) * yInterval;
+        int dashLeft = left - left % GRID_DASH_PERIOD;      // keep the dash phase continuous across blocks
+        int dashTop = top - top % GRID_DASH_PERIOD;
+        for (int y = Math.max(yInterval, top); y <= bottom && y < windowSize.height; y += yInterval) {
+            g2d.drawLine(dashLeft, y, right, y);
         }
-        for (int x = xInterval; x < imageWidthPixelsScaled; x += xInterval) {
-            g2d.drawLine(x, 0, x, imageHeightPixelsScaled);
+        for (int x = Math.max(xInterval, left); x <= right && x < windowSize.width; x += xInterval) {
+            g2d.drawLine(x, dashTop, x, bottom);
         }
     }
 
+    // ------------------ tiles and layout
+
     public void setTileSize(ImageSize spriteSize) {
         int width = spriteSize.width();
         int height = spriteSize.height();
+        this.tileSize = spriteSize;
         double scale = width < 32 ? 2.0 : 1.0;
         this.tileWidthPixelsScaled = (int) (width * scale);
         this.tileHeightPixelsScaled = (int) (height * scale);
-        this.scale = scale;
         this.imageWidthTiles = image.getWidth() / width;
         int imageHeightTiles = image.getHeight() / height;
-        this.imageWidthPixelsScaled = imageWidthTiles * tileWidthPixelsScaled;
-        this.imageHeightPixelsScaled = imageHeightTiles * tileHeightPixelsScaled;
-        this.windowSize = new Dimension(imageWidthPixelsScaled, imageHeightPixelsScaled);
-        this.tiles = new Tile[imageWidthTiles * imageHeightTiles];
-        for (int y = 0; y < imageHeightTiles; y++) {
-            for (int x = 0; x < imageWidthTiles; x++) {
-                int index = x + y * imageWidthTiles;
-                this.tiles[index] = Tile.of(index, image.getSubimage(x * width, y * height, width, height));
-            }
+        this.tileCount = imageWidthTiles * imageHeightTiles;
+        this.tiles = new Tile[tileCount];
+        this.filteredTiles = null;
+        this.hoverSlot = -1;
+        flushAtlas();
+        updateWindowSize();
+        invalidateBlocks();
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    public Tile getTileAt(int index) {
+        Tile tile = tiles[index];
+        if (tile == null) {
+            int w = tileSize.width();
+            int h = tileSize.height();
+            int x = index % imageWidthTiles;
+            int y = index / imageWidthTiles;
+            tile = Tile.of(index, image.getSubimage(x * w, y * h, w, h));
+            tiles[index] = tile;
         }
+        return tile;
     }
 
     public BufferedImage getImageAt(int index) {
-        return tiles[index].getImage();
+        return getTileAt(index).getImage();
     }
 
-    public void onMouseClicked(MouseEvent e) {
-        if (e.getButton() == MouseEvent.BUTTON1) {
-            Point p = e.getPoint();
-            int index = (p.x / tileWidthPixelsScaled) + (p.y / tileHeightPixelsScaled) * imageWidthTiles;
-            canvas.onPaletteTileSelected(tiles[index]);
+    // the sheet converted for fast blits to gc (null when headless); rebuilt if the panel moves to another screen
+    public TileAtlas getAtlas(GraphicsConfiguration gc) {
+        if (atlas == null || !atlas.isFor(gc)) {
+            flushAtlas();
+            atlas = new TileAtlas(image, tileSize, gc);
         }
+        return atlas;
     }
 
-    public void onMouseMoved(MouseEvent e) {
-        Point newHoverPoint = e.getPoint();
-        if (curHoverPoint == null || !sameTile(newHoverPoint,
-                curHoverPoint, tileWidthPixelsScaled, tileHeightPixelsScaled)) {
-            Graphics2D g2d = (Graphics2D) this.getGraphics();
-            g2d.setXORMode(Color.RED);
-            highlightMouseOverTileAtScale(g2d, curHoverPoint);
-            curHoverPoint = newHoverPoint;
-            highlightMouseOverTileAtScale(g2d, curHoverPoint);
-            g2d.dispose();
+    // bytes held by the sliced tiles and the atlas, and by the cached view blocks - for EditorTelemetry
+    public long getTileCacheBytes() {
+        long bytes = atlas != null ? EditorTelemetry.imageBytes(atlas.getImage()) : 0;
+        if (tiles != null) {
+            for (Tile tile : tiles) {
+                bytes += tile != null ? EditorTelemetry.imageBytes(tile.getImage()) : 0;
+            }
         }
+        return bytes;
     }
 
-    private void onMouseExited() {
-        if (curHoverPoint != null) {
-            Graphics2D g2d = (Graphics2D) this.getGraphics();
-            g2d.setXORMode(Color.RED);
-            highlightMouseOverTileAtScale(g2d, curHoverPoint);
-            g2d.dispose();
-            curHoverPoint = null;
+    public long getImageCacheBytes() {
+        long bytes = 0;
+        for (Image block : blocks.values()) {
+            bytes += EditorTelemetry.imageBytes(block);
+        }
+        return bytes;
+    }
+
+    private void flushAtlas() {
+        if (atlas != null) {
+            atlas.flush();
+            atlas = null;
+        }
+    }
+
+    // swap in an edited palette image of the same dimensions; changed tiles are re-sliced next time they're used
+    public void onPaletteImageChanged(BufferedImage image, int[] changedTiles) {
+        this.image = image;
+        if (atlas != null) {
+            atlas.updateTiles(image, changedTiles);
+        }
+        for (int index : changedTiles) {
+            tiles[index] = null;
+            int slot = slotOfTileIndex(index);
+            if (slot >= 0) {
+                invalidateBlocksOf(slot);
+            }
+        }
+        repaint();
+    }
+
+    // shows only the tiles matching a comma separated list of indices and ranges, e.g.: "3, 10-20";
+    // a blank filter shows every tile
+    public void setFilter(String filter) {
+        filteredTiles = parseFilter(filter, tileCount);
+        hoverSlot = -1;
+        updateWindowSize();
+        invalidateBlocks();
+        revalidate();
+        repaint();
+    }
+
+    // scrolls the view to a tile and selects it as the paint tile; returns false if it isn't in the view
+    public boolean scrollToTile(int index) {
+        int slot = slotOfTileIndex(index);
+        if (slot < 0) {
+            return false;
+        }
+        scrollRectToVisible(slotBounds(slot));
+        canvas.onPaletteTileSelected(getTileAt(index));
+        return true;
+    }
+
+    // outlines the tile that is currently selected as the paint tile; -1 for none
+    public void setSelectedIndex(int index) {
+        if (index != selectedIndex) {
+            repaintSlot(slotOfTileIndex(selectedIndex));
+            selectedIndex = index;
+            repaintSlot(slotOfTileIndex(selectedIndex));
+        }
+    }
+
+    private void updateWindowSize() {
+        this.windowSize = new Dimension(imageWidthTiles * tileWidthPixelsScaled, getViewRows() * tileHeightPixelsScaled);
+    }
+
+    private int getViewRows() {
+        int slots = filteredTiles != null ? filteredTiles.length : tileCount;
+        return (slots + imageWidthTiles - 1) / imageWidthTiles;
+    }
+
+    // returns the tile index shown in a view slot, or -1 for an empty slot
+    private int tileIndexAtSlot(int slot) {
+        if (filteredTiles == null) {
+            return slot < tileCount ? slot : -1;
+        }
+        return slot < filteredTiles.length ? filteredTiles[slot] : -1;
+    }
+
+    private int slotOfTileIndex(int index) {
+        if (index < 0 || index >= tileCount) {
+            return -1;
+        }
+        if (filteredTiles == null) {
+            return index;
+        }
+        int slot = Arrays.binarySearch(filteredTiles, index);
+        return slot >= 0 ? slot : -1;
+    }
+
+    // returns the view slot under a point, or -1 if there's no tile there
+    private int slotAt(Point p) {
+        int col = p.x / tileWidthPixelsScaled;
+        int row = p.y / tileHeightPixelsScaled;
+        if (p.x < 0 || p.y < 0 || col >= imageWidthTiles) {
+            return -1;
+        }
+        int slot = col + row * imageWidthTiles;
+        return tileIndexAtSlot(slot) >= 0 ? slot : -1;
+    }
+
+    private Rectangle slotBounds(int slot) {
+        return new Rectangle((slot % imageWidthTiles) * tileWidthPixelsScaled,
+                (slot / imageWidthTiles) * tileHeightPixelsScaled, tileWidthPixelsScaled, tileHeightPixelsScaled);
+    }
+
+    private void repaintSlot(int slot) {
+        if (slot >= 0) {
+            repaint(slotBounds(slot));
         }
     }
 
-    private boolean sameTile(Point p1, Point p2, int width, int height) {
-        return p1.x / width == p2.x / width && p1.y / height == p2.y / height;
+    private static int[] parseFilter(String filter, int tileCount) {
+        if (filter == null || filter.isBlank()) {
+            return null;
+        }
+        boolean[] selected = new boolean[tileCount];
+        for (String token : filter.split(",")) {
+            String[] bounds = token.trim().split("\\s*-\\s*", 2);
+            try {
+                int from = Integer.parseInt(bounds[0].trim());
+                int to = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : from;
+                for (int i = Math.max(0, from); i <= Math.min(to, tileCount - 1); i++) {
+                    selected[i] = true;
+                }
+            } catch (NumberFormatException ignored) {
+                // partially typed or invalid token - skip it
+            }
+        }
+        int[] indices = new int[tileCount];
+        int count = 0;
+        for (int i = 0; i < tileCount; i++) {
+            if (selected[i]) {
+                indices[count++] = i;
+            }
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
+    // ------------------ tile properties
+
+    // enables the right click menu that edits tile flags; onChanged receives the code of each edited tile
+    public void setTileProperties(TileProperties tileProperties, IntConsumer onChanged) {
+        this.tileProperties = tileProperties;
+        this.onTilePropertiesChanged = onChanged;
+        setToolTipText(tileProperties != null ? "" : null);        // registers for getToolTipText(MouseEvent)
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        int slot = slotAt(e.getPoint());
+        if (slot < 0 || tileProperties == null) {
+            return null;
+        }
+        int code = tileIndexAtSlot(slot);
+        StringBuilder text = new StringBuilder("Tile " + code);
+        String separator = ": ";
+        for (int bit = 0; bit < tileProperties.getNames().size(); bit++) {
+            if (tileProperties.has(code, bit)) {
+                text.append(separator).append(tileProperties.getNames().get(bit));
+                separator = ", ";
+            }
+        }
+        return text.toString();
+    }
+
+    private void showTilePropertiesMenu(MouseEvent e) {
+        int slot = slotAt(e.getPoint());
+        if (slot < 0 || tileProperties == null) {
+            return;
+        }
+        int code = tileIndexAtSlot(slot);
+        JPopupMenu menu = new JPopupMenu("Tile " + code);
+        for (int bit = 0; bit < tileProperties.getNames().size(); bit++) {
+            int propertyBit = bit;
+            JCheckBoxMenuItem item = new JCheckBoxMenuItem(tileProperties.getNames().get(bit),
+                    tileProperties.has(code, bit));
+            item.addActionListener(a -> {
+                tileProperties.set(code, propertyBit, item.isSelected());
+                onTilePropertiesChanged.accept(code);
+            });
+            menu.add(item);
+        }
+        menu.show(this, e.getX(), e.getY());
+    }
+
+    // ------------------ mouse handling
+
+    public void onMouseClicked(MouseEvent e) {
+        if (e.getButton() == MouseEvent.BUTTON1) {
+            int slot = slotAt(e.getPoint());
+            if (slot >= 0) {
+                canvas.onPaletteTileSelected(getTileAt(tileIndexAtSlot(slot)));
+            }
+        }
+    }
+
+    public void onMouseMoved(MouseEvent e) {
+        setHoverSlot(slotAt(e.getPoint()));
+    }
+
+    private void onMouseExited() {
+        setHoverSlot(-1);
     }
 
-    private void highlightMouseOverTileAtScale(Graphics2D g2d, Point p) {
-        if (p != null) {
-            int w = tileWidthPixelsScaled;
-            int h = tileHeightPixelsScaled;
-            int x = p.x / w * w;   // truncate to start of last xgrid position
-            int y = p.y / h * h;   // truncate to start of last ygrid position
-            g2d.fillRect(x, y, w, h);
+    private void setHoverSlot(int slot) {
+        if (slot != hoverSlot) {
+            repaintSlot(hoverSlot);
+            hoverSlot = slot;
+            repaintSlot(hoverSlot);
         }
     }
 }
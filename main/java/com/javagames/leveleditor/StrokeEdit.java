@@ -0,0 +1,19 @@
+package com.javagames.leveleditor;
+
+import javax.swing.undo.CompoundEdit;
+import javax.swing.undo.UndoableEdit;
+
+// The RegionEdits of one paint stroke, undone and redone together
+class StrokeEdit extends CompoundEdit {
+
+    // bytes of cell codes kept by the stroke's edits
+    long retainedBytes() {
+        long bytes = 0;
+        for (UndoableEdit edit : edits) {
+            if (edit instanceof RegionEdit regionEdit) {
+                bytes += regionEdit.retainedBytes();
+            }
+        }
+        return bytes;
+    }
+}
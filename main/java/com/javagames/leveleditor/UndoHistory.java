@@ -0,0 +1,23 @@
+package com.javagames.leveleditor;
+
+import javax.swing.undo.UndoManager;
+import javax.swing.undo.UndoableEdit;
+
+// The editor's undo manager, which can also tell how much cell data its edits keep alive
+class UndoHistory extends UndoManager {
+
+    // approximate bytes of cell data held by the edits that can still be undone or redone
+    synchronized long retainedBytes() {
+        long bytes = 0;
+        for (UndoableEdit edit : edits) {
+            if (edit instanceof RegionEdit regionEdit) {
+                bytes += regionEdit.retainedBytes();
+            } else if (edit instanceof ReplaceEdit replaceEdit) {
+                bytes += replaceEdit.retainedBytes();
+            } else if (edit instanceof StrokeEdit strokeEdit) {
+                bytes += strokeEdit.retainedBytes();
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,161 @@
+package com.javagames.leveleditor.dialogs;
+
+import com.javagames.leveleditor.render.ThumbnailCache;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+// Shows a thumbnail of every level file in a folder; thumbnails fill in as the cache delivers them.
+public class LevelBrowserDialog extends JDialog {
+    private static final String LEVEL_EXTENSION = ".level";
+    private static final Icon PENDING_ICON = new EmptyIcon(ThumbnailCache.THUMBNAIL_WIDTH, ThumbnailCache.THUMBNAIL_HEIGHT);
+
+    private final ThumbnailCache cache;
+    private final DefaultListModel<File> levels = new DefaultListModel<>();
+    private final Map<File, Icon> icons = new HashMap<>();
+    private final Map<File, Future<?>> pending = new HashMap<>();
+    private final JLabel folderLabel = new JLabel();
+    private final JList<File> list = new JList<>(levels);
+    private File selected;
+
+    public LevelBrowserDialog(Frame owner, ThumbnailCache cache, File folder) {
+        super(owner, "Browse Levels", ModalityType.APPLICATION_MODAL);
+        this.cache = cache;
+        setLayout(new BorderLayout(3, 3));
+
+        list.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        list.setVisibleRowCount(-1);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                    boolean isSelected, boolean cellHasFocus) {
+                File file = (File) value;
+                super.getListCellRendererComponent(list, file.getName(), index, isSelected, cellHasFocus);
+                setIcon(icons.getOrDefault(file, PENDING_ICON));
+                setHorizontalTextPosition(SwingConstants.CENTER);
+                setVerticalTextPosition(SwingConstants.BOTTOM);
+                setHorizontalAlignment(SwingConstants.CENTER);
+                return this;
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && list.getSelectedValue() != null) {
+                    openSelected();
+                }
+            }
+        });
+
+        JButton folderButton = new JButton("Folder...");
+        folderButton.addActionListener(e -> chooseFolder());
+        JPanel top = new JPanel(new BorderLayout(3, 3));
+        top.add(folderLabel);
+        top.add(folderButton, BorderLayout.EAST);
+
+        JButton openButton = new JButton("Open");
+        openButton.addActionListener(e -> openSelected());
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> dispose());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(openButton);
+        buttons.add(cancelButton);
+
+        JScrollPane scrollPane = new JScrollPane(list);
+        scrollPane.setPreferredSize(new Dimension(900, 600));
+        scrollPane.getVerticalScrollBar().setUnitIncrement(ThumbnailCache.THUMBNAIL_HEIGHT / 4);
+        add(top, BorderLayout.NORTH);
+        add(scrollPane);
+        add(buttons, BorderLayout.SOUTH);
+
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        showFolder(folder);
+    }
+
+    // the level chosen by the user, or null if the dialog was cancelled
+    public File getSelectedLevel() {
+        return selected;
+    }
+
+    @Override
+    public void dispose() {
+        pending.values().forEach(future -> future.cancel(false));  // don't keep loading for a closed dialog
+        pending.clear();
+        super.dispose();
+    }
+
+    private void openSelected() {
+        selected = list.getSelectedValue();
+        if (selected != null) {
+            dispose();
+        }
+    }
+
+    private void chooseFolder() {
+        JFileChooser fileChooser = new JFileChooser(folderLabel.getText());
+        fileChooser.setDialogTitle("Level folder");
+        fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            showFolder(fileChooser.getSelectedFile());
+        }
+    }
+
+    private void showFolder(File folder) {
+        pending.values().forEach(future -> future.cancel(false));
+        pending.clear();
+        levels.clear();
+        icons.clear();
+        folderLabel.setText(folder.getAbsolutePath());
+        File[] files = folder.listFiles((dir, name) -> name.toLowerCase().endsWith(LEVEL_EXTENSION));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            levels.addElement(file);
+            pending.put(file, cache.load(file, this::onThumbnailLoaded));
+        }
+    }
+
+    // called on a cache pool thread
+    private void onThumbnailLoaded(File levelFile, BufferedImage thumbnail) {
+        SwingUtilities.invokeLater(() -> {
+            if (pending.remove(levelFile) == null) {
+                return;                     // folder changed or dialog closed while loading
+            }
+            icons.put(levelFile, thumbnail != null ? new ImageIcon(thumbnail) : UIManager.getIcon("OptionPane.errorIcon"));
+            int index = levels.indexOf(levelFile);
+            if (index >= 0) {
+                levels.set(index, levelFile);   // fires a change event for just this cell
+            }
+        });
+    }
+
+    // blank placeholder that reserves the thumbnail's space while it loads
+    private record EmptyIcon(int width, int height) implements Icon {
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            g.setColor(Color.LIGHT_GRAY);
+            g.drawRect(x, y, width - 1, height - 1);
+        }
+
+        @Override
+        public int getIconWidth() {
+            return width;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return height;
+        }
+    }
+}
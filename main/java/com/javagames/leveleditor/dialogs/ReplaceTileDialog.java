@@ -0,0 +1,58 @@
+package com.javagames.leveleditor.dialogs;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+
+public class ReplaceTileDialog extends JDialog {
+    private int[] codes;
+
+    public ReplaceTileDialog(Frame owner, String title, int initialFindCode) {
+        super(owner, title, ModalityType.APPLICATION_MODAL);
+        setLayout(new GridLayout(3, 2, 3, 3));
+
+        JLabel findLabel = new JLabel("Find tile:", SwingConstants.RIGHT);
+        JLabel replaceLabel = new JLabel("Replace with:", SwingConstants.RIGHT);
+
+        JTextField findField = new JTextField(10);
+        JTextField replaceField = new JTextField(10);
+        if (initialFindCode >= 0) {
+            findField.setText(Integer.toString(initialFindCode));
+        }
+
+        JButton okButton = new JButton("OK");
+        okButton.addActionListener(e -> {
+            try {
+                int findCode = Integer.parseInt(findField.getText());
+                int replaceCode = Integer.parseInt(replaceField.getText());
+                codes = new int[] { findCode, replaceCode };
+            } catch (NumberFormatException ignored) {
+            }
+            dispose();
+        });
+
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> dispose());
+
+        add(findLabel);
+        add(findField);
+        add(replaceLabel);
+        add(replaceField);
+        add(okButton);
+        add(cancelButton);
+
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        addComponentListener(new ComponentAdapter() {
+            public void componentShown(ComponentEvent ce) {
+                (initialFindCode >= 0 ? replaceField : findField).requestFocusInWindow();
+            }
+        });
+    }
+
+    // returns { findCode, replaceCode } or null if cancelled or invalid
+    public int[] getEnteredCodes() {
+        return codes;
+    }
+}
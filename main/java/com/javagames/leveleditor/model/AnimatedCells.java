@@ -0,0 +1,123 @@
+package com.javagames.leveleditor.model;
+
+import java.awt.*;
+import java.util.BitSet;
+import java.util.function.Consumer;
+
+// Counts the cells holding animated tile codes (on any layer) per block of BLOCK_SIZE x BLOCK_SIZE cells, so an
+// animation tick can find the on-screen cells to repaint by looking at the visible blocks only. Kept current
+// from LevelData change events; only the blocks touched by an edit are recounted.
+public class AnimatedCells implements LevelChangeListener {
+    static final int BLOCK_SIZE = 16;
+
+    private final LevelData level;
+    private final TileAnimations animations;
+    private int width;                      // in cells
+    private int height;
+    private int blocksWide;
+    private int blocksHigh;
+    private int[] counts;                   // animated cells per block, blocks in row major order
+    private int total;
+
+    public AnimatedCells(LevelData level, TileAnimations animations) {
+        this.level = level;
+        this.animations = animations;
+        rebuild();
+    }
+
+    public LevelData getLevel() {
+        return level;
+    }
+
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    public int getCount() {
+        return total;
+    }
+
+    // calls action with the cells (clipped to area, in tiles) of every block inside area with animated cells
+    public void forEachAnimatedBlock(Rectangle area, Consumer<Rectangle> action) {
+        if (total == 0) {
+            return;
+        }
+        Rectangle clipped = area.intersection(new Rectangle(0, 0, width, height));
+        if (clipped.isEmpty()) {
+            return;
+        }
+        for (int by = clipped.y / BLOCK_SIZE; by <= (clipped.y + clipped.height - 1) / BLOCK_SIZE; by++) {
+            for (int bx = clipped.x / BLOCK_SIZE; bx <= (clipped.x + clipped.width - 1) / BLOCK_SIZE; bx++) {
+                if (counts[bx + by * blocksWide] > 0) {
+                    action.accept(clipped.intersection(
+                            new Rectangle(bx * BLOCK_SIZE, by * BLOCK_SIZE, BLOCK_SIZE, BLOCK_SIZE)));
+                }
+            }
+        }
+    }
+
+    // ------------------ updates
+
+    @Override
+    public void onLevelChanged(LevelChangeEvent event) {
+        if (event.structural()) {
+            rebuild();
+            return;
+        }
+        BitSet recount = new BitSet();      // blocks holding a changed cell, each recounted once
+        for (int layer = 0; layer < event.layers(); layer++) {
+            DirtyRegion dirty = event.dirty(layer);
+            for (Rectangle area : dirty.getRectangles()) {
+                for (int by = area.y / BLOCK_SIZE; by <= (area.y + area.height - 1) / BLOCK_SIZE; by++) {
+                    for (int bx = area.x / BLOCK_SIZE; bx <= (area.x + area.width - 1) / BLOCK_SIZE; bx++) {
+                        recount.set(bx + by * blocksWide);
+                    }
+                }
+            }
+            dirty.getCells().forEach(cell ->
+                    recount.set(cell % width / BLOCK_SIZE + cell / width / BLOCK_SIZE * blocksWide));
+        }
+        recount.stream().forEach(block -> recount(block % blocksWide, block / blocksWide));
+    }
+
+    private void recount(int bx, int by) {
+        int block = bx + by * blocksWide;
+        int count = 0;
+        int x1 = Math.min(width, bx * BLOCK_SIZE + BLOCK_SIZE);
+        int y1 = Math.min(height, by * BLOCK_SIZE + BLOCK_SIZE);
+        for (int layer = 0; layer < level.getLayers(); layer++) {
+            for (int y = by * BLOCK_SIZE; y < y1; y++) {
+                for (int x = bx * BLOCK_SIZE; x < x1; x++) {
+                    if (animations.isAnimated(level.getTile(layer, x + y * width))) {
+                        count++;
+                    }
+                }
+            }
+        }
+        total += count - counts[block];
+        counts[block] = count;
+    }
+
+    private void rebuild() {
+        LevelSnapshot snapshot = level.snapshot();
+        width = snapshot.getDataSize().width();
+        height = snapshot.getDataSize().height();
+        blocksWide = (width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blocksHigh = (height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        counts = new int[blocksWide * blocksHigh];
+        total = 0;
+        int[] row = new int[width];
+        for (int layer = 0; layer < snapshot.getLayers(); layer++) {
+            for (int y = 0; y < height; y++) {
+                snapshot.getRow(layer, 0, y, width, row, 0);
+                int rowBlocks = (y / BLOCK_SIZE) * blocksWide;
+                for (int x = 0; x < width; x++) {
+                    if (animations.isAnimated(row[x])) {
+                        counts[rowBlocks + x / BLOCK_SIZE]++;
+                        total++;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.javagames.leveleditor.model;
+
+import com.javagames.leveleditor.exceptions.InvalidLevelFileException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Picks edge and corner tiles for terrains from their neighbourhood. Each terrain is a set of palette codes;
+// a cell holding one of them is re-picked from a lookup table indexed by a bitmask of which neighbours are
+// the same terrain - 4 neighbours (16 entry Wang table) or 8 neighbours (blob table, where a corner only
+// counts when both edges next to it do). An edit only re-picks the edited cell and its neighbours.
+public class AutoTiler {
+    private static final String AUTOTILE_ELEMENT = "AutoTile";
+    private static final String TERRAIN_ELEMENT = "Terrain";
+    private static final String TILE_ELEMENT = "Tile";
+    private static final String MEMBER_ELEMENT = "Member";
+    private static final String NAME_ATTRIBUTE = "name";
+    private static final String NEIGHBOURS_ATTRIBUTE = "neighbours";
+    private static final String BASE_ATTRIBUTE = "base";
+    private static final String MASK_ATTRIBUTE = "mask";
+    private static final String CODE_ATTRIBUTE = "code";
+    private static final String RULES_SUFFIX = ".autotile.xml";
+
+    // neighbour offsets in mask bit order, clockwise from north
+    private static final String[] DIRECTIONS = { "N", "NE", "E", "SE", "S", "SW", "W", "NW" };
+    private static final int[] DX = { 0, 1, 1, 1, 0, -1, -1, -1 };
+    private static final int[] DY = { -1, -1, 0, 1, 1, 1, 0, -1 };
+    private static final int[] EDGE_BITS = { 0, 2, 4, 6 };   // N, E, S, W - the 4-neighbourhood uses these only
+    private static final int[] BLOB_MASKS = blobMasks();
+
+    private final String[] terrainNames;
+    private final int[] baseCodes;              // per terrain - used where no rule matches
+    private final boolean[] eightNeighbours;    // per terrain
+    private final int[][] codeByMask;           // per terrain - 16 or 256 entries
+    private final int[] terrainByCode;          // code -> terrain, or -1
+
+    private AutoTiler(List<Terrain> terrains) {
+        int count = terrains.size();
+        terrainNames = new String[count];
+        baseCodes = new int[count];
+        eightNeighbours = new boolean[count];
+        codeByMask = new int[count][];
+        int maxCode = -1;
+        for (Terrain terrain : terrains) {
+            for (int code : terrain.members) {
+                maxCode = Math.max(maxCode, code);
+            }
+        }
+        terrainByCode = new int[maxCode + 1];
+        Arrays.fill(terrainByCode, -1);
+        for (int t = 0; t < count; t++) {
+            Terrain terrain = terrains.get(t);
+            terrainNames[t] = terrain.name;
+            baseCodes[t] = terrain.baseCode;
+            eightNeighbours[t] = terrain.eightNeighbours;
+            codeByMask[t] = terrain.codeByMask;
+            for (int code : terrain.members) {
+                terrainByCode[code] = t;
+            }
+        }
+    }
+
+    // the rules for "level.xml" live in "level.autotile.xml"
+    public static File rulesFileFor(File levelFile) {
+        return LevelData.siblingFile(levelFile, RULES_SUFFIX);
+    }
+
+    /*  XML Format:
+        <AutoTile>
+          <Terrain name="water" neighbours="4" base="40">
+            <Tile mask="" code="41"/>               isolated cell
+            <Tile mask="N E S W" code="40"/>        surrounded on all sides
+            <Tile mask="E S" code="42"/>            top left corner
+            <Member code="47"/>                     another code that counts as water, never picked
+          </Terrain>
+        </AutoTile>
+        Masks list the same-terrain neighbours: N E S W, plus NE SE SW NW for neighbours="8".
+     */
+    public static AutoTiler load(File rulesFile) throws IOException {
+        try {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            DocumentBuilder db = dbf.newDocumentBuilder();
+            Document doc = db.parse(rulesFile);
+            doc.getDocumentElement().normalize();
+            if (!AUTOTILE_ELEMENT.equals(doc.getDocumentElement().getTagName())) {
+                throw new InvalidLevelFileException(rulesFile);
+            }
+            List<Terrain> terrains = new ArrayList<>();
+            List<Integer> seen = new ArrayList<>();
+            NodeList terrainNodes = doc.getElementsByTagName(TERRAIN_ELEMENT);
+            for (int i = 0; i < terrainNodes.getLength(); i++) {
+                Terrain terrain = parseTerrain((Element) terrainNodes.item(i), rulesFile);
+                for (int code : terrain.members) {
+                    if (seen.contains(code)) {
+                        throw new InvalidLevelFileException(rulesFile,
+                                new IllegalArgumentException("tile " + code + " belongs to more than one terrain"));
+                    }
+                    seen.add(code);
+                }
+                terrains.add(terrain);
+            }
+            return new AutoTiler(terrains);
+        } catch (IllegalArgumentException | ParserConfigurationException | SAXException e) {
+            throw new InvalidLevelFileException(rulesFile, e);
+        }
+    }
+
+    private static Terrain parseTerrain(Element element, File rulesFile) throws IOException {
+        String name = element.getAttribute(NAME_ATTRIBUTE);
+        String neighbours = element.getAttribute(NEIGHBOURS_ATTRIBUTE);
+        if (!neighbours.isEmpty() && !neighbours.equals("4") && !neighbours.equals("8")) {
+            throw new InvalidLevelFileException(rulesFile);
+        }
+        boolean eight = neighbours.equals("8");
+        int baseCode = Integer.parseInt(element.getAttribute(BASE_ATTRIBUTE));
+        List<Integer> members = new ArrayList<>(List.of(baseCode));
+        int[] codeByMask = new int[eight ? 256 : 16];
+        Arrays.fill(codeByMask, baseCode);
+        boolean[] ruled = new boolean[codeByMask.length];
+
+        NodeList tileNodes = element.getElementsByTagName(TILE_ELEMENT);
+        for (int i = 0; i < tileNodes.getLength(); i++) {
+            Element tile = (Element) tileNodes.item(i);
+            int code = Integer.parseInt(tile.getAttribute(CODE_ATTRIBUTE));
+            int mask = parseMask(tile.getAttribute(MASK_ATTRIBUTE), eight);
+            ruled[mask] = true;
+            codeByMask[mask] = code;
+            if (!members.contains(code)) {
+                members.add(code);
+            }
+        }
+        NodeList memberNodes = element.getElementsByTagName(MEMBER_ELEMENT);
+        for (int i = 0; i < memberNodes.getLength(); i++) {
+            int code = Integer.parseInt(((Element) memberNodes.item(i)).getAttribute(CODE_ATTRIBUTE));
+            if (!members.contains(code)) {
+                members.add(code);
+            }
+        }
+        if (eight) {
+            // every raw mask looks up the rule of its blob form (corners without both edges dropped)
+            for (int mask = 0; mask < 256; mask++) {
+                int blob = BLOB_MASKS[mask];
+                codeByMask[mask] = ruled[blob] ? codeByMask[blob] : baseCode;
+            }
+        }
+        return new Terrain(name, baseCode, eight, codeByMask, members.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    // "N E SW" -> mask bits; 4-neighbour masks use bits 0-3 for N, E, S, W
+    private static int parseMask(String names, boolean eight) {
+        int mask = 0;
+        for (String name : names.trim().split("\\s+")) {
+            if (name.isEmpty()) {
+                continue;
+            }
+            int bit = Arrays.asList(DIRECTIONS).indexOf(name.toUpperCase());
+            if (bit < 0 || !eight && bit % 2 != 0) {
+                throw new IllegalArgumentException("unknown neighbour '" + name + "'");
+            }
+            mask |= 1 << (eight ? bit : bit / 2);
+        }
+        return eight ? BLOB_MASKS[mask] : mask;
+    }
+
+    private static int[] blobMasks() {
+        int[] masks = new int[256];
+        for (int mask = 0; mask < 256; mask++) {
+            int blob = mask & 0b01010101;                           // edges always count
+            for (int corner = 1; corner < 8; corner += 2) {
+                int before = 1 << (corner - 1);
+                int after = 1 << ((corner + 1) % 8);
+                if ((mask & (1 << corner)) != 0 && (mask & before) != 0 && (mask & after) != 0) {
+                    blob |= 1 << corner;
+                }
+            }
+            masks[mask] = blob;
+        }
+        return masks;
+    }
+
+    // ------------------ lookups
+
+    public int getTerrainCount() {
+        return terrainNames.length;
+    }
+
+    public String getTerrainName(int terrain) {
+        return terrainNames[terrain];
+    }
+
+    // the terrain a tile code belongs to, or -1 if it isn't part of any terrain
+    public int terrainOf(int code) {
+        return code >= 0 && code < terrainByCode.length ? terrainByCode[code] : -1;
+    }
+
+    // ------------------ editing
+
+    // stores code at (x, y) - a terrain's tiles are stored as that terrain - then re-picks the cell and
+    // its 8 neighbours; published as one transaction
+    public void place(LevelData level, int layer, int x, int y, int code) {
+        int width = level.getDataSize().width();
+        int terrain = terrainOf(code);
+        level.begin();
+        try {
+            level.setTile(layer, x + y * width, terrain >= 0 ? baseCodes[terrain] : code);
+            retile(level, layer, x - 1, y - 1, x + 1, y + 1);
+        } finally {
+            level.commit();
+        }
+    }
+
+    // re-picks every terrain cell in area and the ring of cells around it, e.g.: after a fill or a paste
+    public void retile(LevelData level, int layer, Rectangle area) {
+        level.begin();
+        try {
+            retile(level, layer, area.x - 1, area.y - 1, area.x + area.width, area.y + area.height);
+        } finally {
+            level.commit();
+        }
+    }
+
+    private void retile(LevelData level, int layer, int x0, int y0, int x1, int y1) {
+        int width = level.getDataSize().width();
+        int height = level.getDataSize().height();
+        for (int y = Math.max(0, y0); y <= Math.min(y1, height - 1); y++) {
+            for (int x = Math.max(0, x0); x <= Math.min(x1, width - 1); x++) {
+                int index = x + y * width;
+                int terrain = terrainOf(level.getTile(layer, index));
+                if (terrain >= 0) {
+                    int code = codeByMask[terrain][neighbourMask(level, layer, x, y, terrain)];
+                    level.setTile(layer, index, code);          // no-op (and no event) if unchanged
+                }
+            }
+        }
+    }
+
+    // cells off the edge of the level count as the same terrain, so terrain runs cleanly off the map
+    private int neighbourMask(LevelData level, int layer, int x, int y, int terrain) {
+        int width = level.getDataSize().width();
+        int height = level.getDataSize().height();
+        int mask = 0;
+        if (eightNeighbours[terrain]) {
+            for (int bit = 0; bit < 8; bit++) {
+                if (isTerrainAt(level, layer, x + DX[bit], y + DY[bit], width, height, terrain)) {
+                    mask |= 1 << bit;
+                }
+            }
+        } else {
+            for (int i = 0; i < EDGE_BITS.length; i++) {
+                int bit = EDGE_BITS[i];
+                if (isTerrainAt(level, layer, x + DX[bit], y + DY[bit], width, height, terrain)) {
+                    mask |= 1 << i;
+                }
+            }
+        }
+        return mask;
+    }
+
+    private boolean isTerrainAt(LevelData level, int layer, int x, int y, int width, int height, int terrain) {
+        return x < 0 || y < 0 || x >= width || y >= height || terrainOf(level.getTile(layer, x + y * width)) == terrain;
+    }
+
+    private record Terrain(String name, int baseCode, boolean eightNeighbours, int[] codeByMask, int[] members) {}
+}
@@ -0,0 +1,189 @@
+package com.javagames.leveleditor.model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// A compressed set of cell indices within one layer. Cells are grouped into blocks of 4096; only blocks
+// that hold at least one cell are allocated, each as a 64-word bitmap. Keys are kept sorted so iteration
+// runs in ascending cell order and costs O(blocks + cells) rather than O(layer size).
+public class CellBitmap {
+    // shared empty set, e.g.: for lookups of codes that aren't used; can't be added to
+    public static final CellBitmap EMPTY = new CellBitmap() {
+        @Override
+        public boolean add(int cell) {
+            throw new UnsupportedOperationException("CellBitmap.EMPTY can't be modified");
+        }
+
+        @Override
+        public void or(CellBitmap other) {
+            throw new UnsupportedOperationException("CellBitmap.EMPTY can't be modified");
+        }
+    };
+
+    private static final int BLOCK_SHIFT = 12;                          // 4096 cells per block
+    private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+    private static final int WORDS_PER_BLOCK = 1 << (BLOCK_SHIFT - 6);  // 64 longs per block
+
+    private int[] keys = new int[4];            // sorted block numbers (cell >>> BLOCK_SHIFT)
+    private long[][] blocks = new long[4][];    // bitmap words for each key
+    private int[] blockCounts = new int[4];     // number of cells set in each block
+    private int blockCount;
+    private int cardinality;
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    public boolean contains(int cell) {
+        int pos = Arrays.binarySearch(keys, 0, blockCount, cell >>> BLOCK_SHIFT);
+        return pos >= 0 && (blocks[pos][(cell & BLOCK_MASK) >>> 6] & (1L << cell)) != 0;
+    }
+
+    public boolean add(int cell) {
+        int key = cell >>> BLOCK_SHIFT;
+        int pos = Arrays.binarySearch(keys, 0, blockCount, key);
+        if (pos < 0) {
+            pos = insertBlock(-pos - 1, key);
+        }
+        long[] words = blocks[pos];
+        int word = (cell & BLOCK_MASK) >>> 6;
+        long bit = 1L << cell;                  // shift distance is implicitly masked to the low 6 bits
+        if ((words[word] & bit) != 0) {
+            return false;
+        }
+        words[word] |= bit;
+        blockCounts[pos]++;
+        cardinality++;
+        return true;
+    }
+
+    public boolean remove(int cell) {
+        int pos = Arrays.binarySearch(keys, 0, blockCount, cell >>> BLOCK_SHIFT);
+        if (pos < 0) {
+            return false;
+        }
+        long[] words = blocks[pos];
+        int word = (cell & BLOCK_MASK) >>> 6;
+        long bit = 1L << cell;
+        if ((words[word] & bit) == 0) {
+            return false;
+        }
+        words[word] &= ~bit;
+        cardinality--;
+        if (--blockCounts[pos] == 0) {
+            removeBlock(pos);
+        }
+        return true;
+    }
+
+    // adds every cell of other to this set
+    public void or(CellBitmap other) {
+        for (int i = 0; i < other.blockCount; i++) {
+            int key = other.keys[i];
+            int pos = Arrays.binarySearch(keys, 0, blockCount, key);
+            if (pos < 0) {
+                pos = insertBlock(-pos - 1, key);
+            }
+            long[] words = blocks[pos];
+            long[] otherWords = other.blocks[i];
+            int count = 0;
+            for (int w = 0; w < WORDS_PER_BLOCK; w++) {
+                words[w] |= otherWords[w];
+                count += Long.bitCount(words[w]);
+            }
+            cardinality += count - blockCounts[pos];
+            blockCounts[pos] = count;
+        }
+    }
+
+    public void forEach(IntConsumer action) {
+        forEachInRange(0, Integer.MAX_VALUE, action);
+    }
+
+    // visits the cells in [from, to) in ascending order, skipping absent blocks without touching them
+    public void forEachInRange(int from, int to, IntConsumer action) {
+        if (from >= to) {
+            return;
+        }
+        int pos = Arrays.binarySearch(keys, 0, blockCount, from >>> BLOCK_SHIFT);
+        if (pos < 0) {
+            pos = -pos - 1;
+        }
+        for (; pos < blockCount; pos++) {
+            int base = keys[pos] << BLOCK_SHIFT;
+            if (base >= to) {
+                return;
+            }
+            long[] words = blocks[pos];
+            for (int w = 0; w < WORDS_PER_BLOCK; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    int cell = base + (w << 6) + Long.numberOfTrailingZeros(word);
+                    if (cell >= to) {
+                        return;
+                    }
+                    if (cell >= from) {
+                        action.accept(cell);
+                    }
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    // an independent copy - changes to either don't show in the other
+    public CellBitmap copy() {
+        CellBitmap copy = new CellBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(blockCount, 4));
+        copy.blocks = new long[copy.keys.length][];
+        for (int i = 0; i < blockCount; i++) {
+            copy.blocks[i] = blocks[i].clone();
+        }
+        copy.blockCounts = Arrays.copyOf(blockCounts, copy.keys.length);
+        copy.blockCount = blockCount;
+        copy.cardinality = cardinality;
+        return copy;
+    }
+
+    // approximate bytes held: the block bitmaps plus the key and count tables
+    public long retainedBytes() {
+        return (long) blockCount * WORDS_PER_BLOCK * Long.BYTES
+                + (long) keys.length * (Integer.BYTES * 2 + Long.BYTES);
+    }
+
+    public int[] toArray() {
+        int[] cells = new int[cardinality];
+        int[] next = new int[1];
+        forEach(cell -> cells[next[0]++] = cell);
+        return cells;
+    }
+
+    private int insertBlock(int pos, int key) {
+        if (blockCount == keys.length) {
+            int capacity = blockCount * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            blocks = Arrays.copyOf(blocks, capacity);
+            blockCounts = Arrays.copyOf(blockCounts, capacity);
+        }
+        System.arraycopy(keys, pos, keys, pos + 1, blockCount - pos);
+        System.arraycopy(blocks, pos, blocks, pos + 1, blockCount - pos);
+        System.arraycopy(blockCounts, pos, blockCounts, pos + 1, blockCount - pos);
+        keys[pos] = key;
+        blocks[pos] = new long[WORDS_PER_BLOCK];
+        blockCounts[pos] = 0;
+        blockCount++;
+        return pos;
+    }
+
+    private void removeBlock(int pos) {
+        int tail = blockCount - pos - 1;
+        System.arraycopy(keys, pos + 1, keys, pos, tail);
+        System.arraycopy(blocks, pos + 1, blocks, pos, tail);
+        System.arraycopy(blockCounts, pos + 1, blockCounts, pos, tail);
+        blocks[--blockCount] = null;
+    }
+}
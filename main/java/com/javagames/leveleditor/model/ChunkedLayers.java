@@ -0,0 +1,173 @@
+package com.javagames.leveleditor.model;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+// Live, writable cell storage for LevelData. Each layer is split into bands of BAND_ROWS rows; bands are
+// shared with the snapshots taken from it and copied on the first write after a snapshot, so taking a
+// snapshot is O(1) and a write copies at most one band (plus the band tables, once per snapshot). Snapshots
+// taken with no write in between share everything, so asking again costs nothing later.
+// Blank layers share a single empty band until they're written to. Not thread safe - owned by LevelData.
+final class ChunkedLayers {
+    static final int BAND_ROWS = 16;
+
+    private final int width;
+    private final int height;
+    private final int bandCells;        // cells per band (the last band may be shorter)
+    private final int bandCount;
+    private int[][][] bands;            // bands[layer][band] -> codes, row major
+    private int[][] bandVersions;       // version in which this store made its own copy of a band; -1 if shared
+    private boolean tablesShared;       // true if bands (and its per layer tables) are referenced by a snapshot
+    private int version;                // bumped on every snapshot - older bands must be copied before writing
+    private boolean written = true;     // true if anything was written since the last snapshot
+    private final List<WeakReference<int[][][]>> snapshotBands = new ArrayList<>();   // for retainedBytes()
+
+    ChunkedLayers(int width, int height, int layers) {
+        this.width = width;
+        this.height = height;
+        this.bandCells = width * BAND_ROWS;
+        this.bandCount = (height + BAND_ROWS - 1) / BAND_ROWS;
+        this.bands = new int[layers][][];
+        this.bandVersions = new int[layers][];
+        for (int layer = 0; layer < layers; layer++) {
+            bands[layer] = blankLayer();
+            bandVersions[layer] = unowned();
+        }
+    }
+
+    // copies raw layer data (one int[width * height] per layer) into bands
+    static ChunkedLayers of(int[][] data, int width, int height) {
+        ChunkedLayers layers = new ChunkedLayers(width, height, data.length);
+        for (int layer = 0; layer < data.length; layer++) {
+            for (int band = 0; band < layers.bandCount; band++) {
+                int from = band * layers.bandCells;
+                layers.bands[layer][band] = Arrays.copyOfRange(data[layer], from,
+                        Math.min(from + layers.bandCells, data[layer].length));
+                layers.bandVersions[layer][band] = 0;
+            }
+        }
+        return layers;
+    }
+
+    int getLayers() {
+        return bands.length;
+    }
+
+    int get(int layer, int index) {
+        return bands[layer][index / bandCells][index % bandCells];
+    }
+
+    // returns the code that was there before
+    int set(int layer, int index, int code) {
+        int[] band = writableBand(layer, index / bandCells);
+        int offset = index % bandCells;
+        int oldCode = band[offset];
+        band[offset] = code;
+        return oldCode;
+    }
+
+    // copies length cells of row y, starting at column x, into dst
+    void getRow(int layer, int x, int y, int length, int[] dst, int offset) {
+        System.arraycopy(bands[layer][y / BAND_ROWS], (y % BAND_ROWS) * width + x, dst, offset, length);
+    }
+
+    void setRow(int layer, int x, int y, int length, int[] src, int offset) {
+        System.arraycopy(src, offset, writableBand(layer, y / BAND_ROWS), (y % BAND_ROWS) * width + x, length);
+    }
+
+    boolean isWrittenSinceSnapshot() {
+        return written;
+    }
+
+    void addLayer() {
+        written = true;
+        ownTables();
+        int layers = bands.length + 1;
+        bands = Arrays.copyOf(bands, layers);
+        bandVersions = Arrays.copyOf(bandVersions, layers);
+        bands[layers - 1] = blankLayer();
+        bandVersions[layers - 1] = unowned();
+    }
+
+    // freezes the current bands for a snapshot; later writes copy whatever they touch
+    LevelSnapshot snapshot(LevelData level, long levelVersion) {
+        if (written) {                  // otherwise the bands are frozen already, by the last snapshot
+            tablesShared = true;
+            version++;
+            written = false;
+            snapshotBands.removeIf(ref -> ref.get() == null);
+            snapshotBands.add(new WeakReference<>(bands));
+        }
+        return new LevelSnapshot(level, levelVersion, bands, width, bandCells);
+    }
+
+    // bytes of cell data held by this store and by the snapshots still reachable from it: each band is counted
+    // once however many of them share it, so bands copied on write and kept alive by a snapshot count too
+    long retainedBytes() {
+        Set<int[]> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+        long bytes = bandBytes(bands, counted);
+        for (WeakReference<int[][][]> ref : snapshotBands) {
+            int[][][] snapshot = ref.get();
+            if (snapshot != null && snapshot != bands) {
+                bytes += bandBytes(snapshot, counted);
+            }
+        }
+        return bytes;
+    }
+
+    private static long bandBytes(int[][][] bands, Set<int[]> counted) {
+        long bytes = 0;
+        for (int[][] layer : bands) {
+            for (int[] band : layer) {
+                if (counted.add(band)) {
+                    bytes += (long) band.length * Integer.BYTES;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private int[] writableBand(int layer, int band) {
+        written = true;
+        if (tablesShared) {
+            ownTables();
+        }
+        if (bandVersions[layer][band] != version) {
+            bands[layer][band] = bands[layer][band].clone();
+            bandVersions[layer][band] = version;
+        }
+        return bands[layer][band];
+    }
+
+    private void ownTables() {
+        if (tablesShared) {
+            bands = bands.clone();
+            for (int layer = 0; layer < bands.length; layer++) {
+                bands[layer] = bands[layer].clone();
+            }
+            tablesShared = false;
+        }
+    }
+
+    private int[][] blankLayer() {
+        int[] emptyBand = new int[bandCells];
+        Arrays.fill(emptyBand, Tile.EMPTY_CODE);
+        int[][] layer = new int[bandCount][];
+        for (int band = 0; band < bandCount; band++) {
+            int rows = Math.min(BAND_ROWS, height - band * BAND_ROWS);
+            layer[band] = rows == BAND_ROWS ? emptyBand : Arrays.copyOf(emptyBand, rows * width);
+        }
+        return layer;
+    }
+
+    private int[] unowned() {
+        int[] versions = new int[bandCount];
+        Arrays.fill(versions, -1);
+        return versions;
+    }
+}
@@ -0,0 +1,139 @@
+package com.javagames.leveleditor.model;
+
+import java.io.*;
+
+// One bit per cell and layer, set where the cell's tile has any of the properties in mask (e.g.: "solid").
+// Built once from the layer codes and then kept current from LevelData change events, touching only the
+// dirty cells. Exported next to the level for the game runtime.
+public class CollisionMap implements LevelChangeListener {
+    private static final int MAGIC = 0x4C434F4C;            // "LCOL"
+    private static final int FORMAT_VERSION = 1;
+    private static final String COLLISION_SUFFIX = ".collision";
+
+    private final LevelData level;
+    private final TileProperties properties;
+    private final int mask;
+    private int width;
+    private int height;
+    private long[][] bits;                                  // bits[layer][cell / 64], row major cells
+
+    public CollisionMap(LevelData level, TileProperties properties, int mask) {
+        this.level = level;
+        this.properties = properties;
+        this.mask = mask;
+        rebuild();
+    }
+
+    // "level.xml" exports to "level.collision"
+    public static File fileFor(File levelFile) {
+        return LevelData.siblingFile(levelFile, COLLISION_SUFFIX);
+    }
+
+    // ------------------ queries
+
+    public LevelData getLevel() {
+        return level;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getLayers() {
+        return bits.length;
+    }
+
+    public boolean isSet(int layer, int x, int y) {
+        int cell = x + y * width;
+        return (bits[layer][cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    public boolean isSetOnAnyLayer(int x, int y) {
+        return isSetOnAnyLayer(x + y * width);
+    }
+
+    // cell is x + y * width - lets searches test a cell index without splitting it up
+    public boolean isSetOnAnyLayer(int cell) {
+        for (long[] layerBits : bits) {
+            if ((layerBits[cell >>> 6] & (1L << cell)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ------------------ updates
+
+    @Override
+    public void onLevelChanged(LevelChangeEvent event) {
+        if (event.structural()) {
+            rebuild();
+            return;
+        }
+        for (int layer = 0; layer < event.layers(); layer++) {
+            int l = layer;
+            event.dirty(layer).forEachCell(width, cell -> update(l, cell));
+        }
+    }
+
+    // a tile's properties were edited: refresh just the cells using it
+    public void onTilePropertiesChanged(int code) {
+        TileIndex index = level.getTileIndex();
+        for (int layer = 0; layer < bits.length; layer++) {
+            int l = layer;
+            index.occurrences(code, layer).forEach(cell -> update(l, cell));
+        }
+    }
+
+    private void update(int layer, int cell) {
+        if ((properties.getFlags(level.getTile(layer, cell)) & mask) != 0) {
+            bits[layer][cell >>> 6] |= 1L << cell;
+        } else {
+            bits[layer][cell >>> 6] &= ~(1L << cell);
+        }
+    }
+
+    private void rebuild() {
+        LevelSnapshot snapshot = level.snapshot();
+        width = snapshot.getDataSize().width();
+        height = snapshot.getDataSize().height();
+        bits = new long[snapshot.getLayers()][(width * height + 63) >>> 6];
+        int[] row = new int[width];
+        for (int layer = 0; layer < bits.length; layer++) {
+            long[] layerBits = bits[layer];
+            for (int y = 0; y < height; y++) {
+                snapshot.getRow(layer, 0, y, width, row, 0);
+                for (int x = 0, cell = y * width; x < width; x++, cell++) {
+                    if ((properties.getFlags(row[x]) & mask) != 0) {
+                        layerBits[cell >>> 6] |= 1L << cell;
+                    }
+                }
+            }
+        }
+    }
+
+    // ------------------ export
+
+    /*  Binary format (big endian):
+        int magic "LCOL", int version, int width, int height, int layers,
+        then per layer: (width * height + 63) / 64 longs; cell x + y * width is bit (cell % 64) of long cell / 64
+     */
+    public void export(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(bits.length);
+            for (long[] layerBits : bits) {
+                for (long word : layerBits) {
+                    out.writeLong(word);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.javagames.leveleditor.model;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+// The cells of one layer touched by an edit transaction, as a short list of disjoint rectangles (in tiles).
+// Rectangles that overlap or touch are merged as they're added, so a paint stroke or a row of stamps ends
+// up as a few blocks rather than one rectangle per cell; past MAX_RECTANGLES everything collapses into the
+// bounding box. Scattered cells, like those of a replace-all, are kept as they are instead, so listeners
+// can visit just them rather than the box around them.
+public class DirtyRegion {
+    private static final int MAX_RECTANGLES = 32;
+
+    private final List<Rectangle> rectangles = new ArrayList<>();
+    private final CellBitmap cells = new CellBitmap();
+    private Rectangle cellBounds;           // bounding box of cells, or null if there are none
+
+    public void add(Rectangle area) {
+        if (area.isEmpty()) {
+            return;
+        }
+        Rectangle merged = new Rectangle(area);
+        boolean grown = true;
+        while (grown) {                     // absorbing one rectangle can make the result touch another
+            grown = false;
+            for (Iterator<Rectangle> it = rectangles.iterator(); it.hasNext(); ) {
+                Rectangle r = it.next();
+                if (touches(r, merged)) {
+                    merged.add(r);
+                    it.remove();
+                    grown = true;
+                }
+            }
+        }
+        rectangles.add(merged);
+        if (rectangles.size() > MAX_RECTANGLES) {
+            Rectangle bounds = getBounds();
+            rectangles.clear();
+            rectangles.add(bounds);
+        }
+    }
+
+    // adds a set of cells of a layer levelWidth tiles wide, as they are - in time proportional to the cells
+    public void addCells(CellBitmap cells, int levelWidth) {
+        if (cells.isEmpty()) {
+            return;
+        }
+        this.cells.or(cells);
+        int[] bounds = { Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE };
+        cells.forEach(i -> {
+            int x = i % levelWidth;
+            int y = i / levelWidth;
+            bounds[0] = Math.min(bounds[0], x);
+            bounds[1] = Math.min(bounds[1], y);
+            bounds[2] = Math.max(bounds[2], x);
+            bounds[3] = Math.max(bounds[3], y);
+        });
+        Rectangle added = new Rectangle(bounds[0], bounds[1], bounds[2] - bounds[0] + 1, bounds[3] - bounds[1] + 1);
+        cellBounds = cellBounds == null ? added : cellBounds.union(added);
+    }
+
+    public boolean isEmpty() {
+        return rectangles.isEmpty() && cells.isEmpty();
+    }
+
+    // the dirty rectangles, without the cells added by addCells
+    public List<Rectangle> getRectangles() {
+        return List.copyOf(rectangles);
+    }
+
+    // the cells added by addCells (some may also lie in a rectangle)
+    public CellBitmap getCells() {
+        return cells;
+    }
+
+    // visits every dirty cell of a layer levelWidth tiles wide once: the rectangles row by row, then the added
+    // cells that none of them holds
+    public void forEachCell(int levelWidth, IntConsumer action) {
+        for (Rectangle area : rectangles) {
+            for (int y = area.y; y < area.y + area.height; y++) {
+                for (int i = area.x + y * levelWidth, end = i + area.width; i < end; i++) {
+                    action.accept(i);
+                }
+            }
+        }
+        if (rectangles.isEmpty()) {
+            cells.forEach(action);
+            return;
+        }
+        cells.forEach(i -> {
+            int x = i % levelWidth;
+            int y = i / levelWidth;
+            for (Rectangle area : rectangles) {
+                if (area.contains(x, y)) {
+                    return;
+                }
+            }
+            action.accept(i);
+        });
+    }
+
+    // smallest rectangle containing every dirty cell; empty if nothing is dirty
+    public Rectangle getBounds() {
+        Rectangle bounds = cellBounds != null ? new Rectangle(cellBounds) : null;
+        for (Rectangle r : rectangles) {
+            bounds = bounds == null ? new Rectangle(r) : bounds.union(r);
+        }
+        return bounds != null ? bounds : new Rectangle();
+    }
+
+    // true if the rectangles overlap or share an edge or a corner
+    private static boolean touches(Rectangle a, Rectangle b) {
+        return a.x <= b.x + b.width && b.x <= a.x + a.width && a.y <= b.y + b.height && b.y <= a.y + a.height;
+    }
+}
@@ -0,0 +1,28 @@
+package com.javagames.leveleditor.model;
+
+import java.awt.*;
+
+// One committed edit transaction: the cells changed on each layer (dirty[layer], in tiles) and the area of
+// the objects added, removed or moved (in pixels, null if none were). A structural change (layers cleared,
+// added or resized) invalidates the whole level and carries no dirty regions.
+public record LevelChangeEvent(LevelData level, DirtyRegion[] dirty, Rectangle objects, boolean structural) {
+
+    public int layers() {
+        return dirty.length;
+    }
+
+    public DirtyRegion dirty(int layer) {
+        return dirty[layer];
+    }
+
+    // smallest rectangle containing every changed cell on any layer
+    public Rectangle getBounds() {
+        Rectangle bounds = new Rectangle();
+        for (DirtyRegion region : dirty) {
+            if (!region.isEmpty()) {
+                bounds = bounds.isEmpty() ? region.getBounds() : bounds.union(region.getBounds());
+            }
+        }
+        return bounds;
+    }
+}
@@ -0,0 +1,7 @@
+package com.javagames.leveleditor.model;
+
+// Notified once per committed LevelData edit transaction
+@FunctionalInterface
+public interface LevelChangeListener {
+    void onLevelChanged(LevelChangeEvent event);
+}
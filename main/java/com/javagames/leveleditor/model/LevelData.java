@@ -1,9 +1,11 @@
 package com.javagames.leveleditor.model;
 
 import com.javagames.leveleditor.exceptions.InvalidLevelFileException;
+import com.javagames.leveleditor.telemetry.EditorTelemetry;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import javax.imageio.ImageIO;
@@ -16,10 +18,20 @@ import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
 
 public class LevelData {
     private static final String LEVEL_ELEMENT = "Level";
@@ -28,6 +40,10 @@ public class LevelData {
     private static final String PALETTE_ELEMENT = "Palette";
     private static final String TILE_WIDTH_ATTRIBUTE = "tileWidth";
     private static final String TILE_HEIGHT_ATTRIBUTE = "tileHeight";
+    private static final String OBJECTS_ELEMENT = "Objects";
+    private static final String OBJECT_ELEMENT = "Object";
+    private static final String PROPERTY_ELEMENT = "Property";
+    private static final int DECODE_CHUNK_ROWS = 64;    // data image rows per layer extraction task
 
     private File levelFile;
     private File dataFile;
@@ -35,14 +51,28 @@ public class LevelData {
     private ImageSize dataSize;             // size of one layer of multi-layer canvas
     private ImageSize tileSize;             // size in pixels of one tile
     private int layers;                     // number of layers
-    private int[][] data;                   // pixel data for data image layers - e.g.: data[layer][pixel]
+    private ChunkedLayers data;             // pixel data for data image layers, in copy-on-write bands
+    private TileIndex tileIndex;            // code -> cells occurrence index over data, updated on every edit
+    private ObjectLayer objects;            // entities placed on the level, in pixels
     private BufferedImage paletteImage;     // png file - sprite sheet
+    private final List<LevelChangeListener> listeners = new ArrayList<>();
+    private long version;                   // bumped by every committed transaction that changed something
+    private LevelSnapshot lastSnapshot;     // handed out again by snapshot() until something changes
+    private int transactionDepth;           // nesting depth of begin() calls
+    private DirtyRegion[] pendingDirty;     // cells changed by the open transaction, per layer
+    private boolean pendingStructural;      // true if the open transaction cleared, added or resized layers
+    private Rectangle pendingObjects;       // pixel area of the objects changed by the open transaction, or null
 
-    private record LevelFileFields(File dataFile, File paletteFile, ImageSize tileSize, int layers) {}
+    // what a level file's xml says about it, without reading any image - e.g.: for thumbnails
+    public record LevelHeader(File dataFile, File paletteFile, ImageSize tileSize, int layers) {}
+
+    private record LevelFileFields(File dataFile, File paletteFile, ImageSize tileSize, int layers,
+                                   List<LevelObject> objects) {}
 
     // ----------------- Constructors
 
-    // base constructor used for parsing an xml level file
+    // base constructor used for parsing an xml level file. The palette png is decoded on the common fork-join
+    // pool while this thread decodes the data png; layer extraction and indexing are then split across the pool.
     private LevelData(File levelFile) throws IOException {
         LevelFileFields fields = parseXmlLevelFile(levelFile);
         this.levelFile = levelFile;
@@ -50,21 +80,27 @@ public class LevelData {
         paletteFile = fields.paletteFile;
         tileSize = fields.tileSize;
         layers = fields.layers;
+        File paletteFile = this.paletteFile;
+        ForkJoinTask<BufferedImage> paletteTask = ForkJoinPool.commonPool().submit(() -> readPng(paletteFile));
         BufferedImage dataImage = ImageIO.read(dataFile);
         if (dataImage == null) {
             throw new IOException("data image file is corrupted: " + dataFile);
         }
         int dataSizeHeight = dataImage.getHeight() / layers;
-        data = new int[layers][];
-        for (int i = 0; i < layers; i++) {
-            data[i] = dataImage.getRGB(0, i * dataSizeHeight, dataImage.getWidth(), dataSizeHeight,
-                    null, 0, dataImage.getWidth());
-        }
+        int[][] pixels = extractLayers(dataImage, layers, dataSizeHeight);
         dataSize = ImageSize.of(dataImage.getWidth(), dataSizeHeight);
+        data = ChunkedLayers.of(pixels, dataSize.width(), dataSize.height());
+        tileIndex = TileIndex.of(pixels);
+        objects = new ObjectLayer(this, dataSize.width() * tileSize.width(), dataSize.height() * tileSize.height());
+        fields.objects.forEach(objects::add);
+        version = 0;                        // loading the objects is not an edit
         try {
-            paletteImage = ImageIO.read(paletteFile);
-        } catch (IOException e) {
-            throw new IOException("Can't read palette file!", e);
+            paletteImage = paletteTask.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Can't read palette file!", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while reading palette file: " + paletteFile);
         }
         if (paletteImage == null) {
             throw new IOException("palette image file is corrupted: " + paletteFile);
@@ -79,10 +115,9 @@ public class LevelData {
         this.levelFile = null;
         this.dataFile = null;
         this.layers = layers;
-        this.data = new int[layers][];
-        for (int i = 0; i < layers; i++) {
-            this.data[i] = new int[dataSize.width() * dataSize.height()];
-        }
+        this.data = new ChunkedLayers(dataSize.width(), dataSize.height(), layers);
+        this.tileIndex = new TileIndex(layers);
+        this.objects = new ObjectLayer(this, dataSize.width() * tileSize.width(), dataSize.height() * tileSize.height());
         this.paletteImage = paletteFile != null ? imageFromPngFileIfNotNull(paletteFile) : null;
     }
 
@@ -90,7 +125,12 @@ public class LevelData {
 
     // used to load a saved level file (and palette) - called from LevelEditor when a level file is opened
     public static LevelData forLoadingALevel(File levelFile) throws IOException {
-        return new LevelData(levelFile);
+        long start = System.nanoTime();
+        try {
+            return new LevelData(levelFile);
+        } finally {
+            EditorTelemetry.LEVEL_LOADS.recordSince(start);
+        }
     }
 
     // used to specify a blank new image file - called from LevelEditor on startup
@@ -103,18 +143,64 @@ public class LevelData {
 
     // ----------------- Static Helpers
 
+    // the file next to file that has the same name with its extension swapped for suffix (which includes any
+    // dot), e.g.: "level.xml" and ".png" -> "level.png"; every file derived from a level or palette is named so
+    public static File siblingFile(File file, String suffix) {
+        String path = file.getAbsolutePath();
+        int dotIndex = path.lastIndexOf('.');
+        return new File((dotIndex >= 0 ? path.substring(0, dotIndex) : path) + suffix);
+    }
+
+    public static LevelHeader readLevelHeader(File levelFile) throws IOException {
+        LevelFileFields fields = parseXmlLevelFile(levelFile);
+        return new LevelHeader(fields.dataFile, fields.paletteFile, fields.tileSize, fields.layers);
+    }
+
     private static BufferedImage imageFromPngFileIfNotNull(File imageFile) throws IOException {
-        BufferedImage image = imageFile != null ? ImageIO.read(imageFile) : null;
+        BufferedImage image = imageFile != null ? readPng(imageFile) : null;
         if (image == null) {
             throw new IOException("image file is corrupted: " + imageFile);
         }
         return image;
     }
 
+    // only palettes are read through here; their decode times are kept for EditorTelemetry
+    private static BufferedImage readPng(File paletteFile) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return ImageIO.read(paletteFile);
+        } finally {
+            EditorTelemetry.PALETTE_LOADS.recordSince(start);
+        }
+    }
+
+    // splits the layers stacked in the data image into one int[] per layer, in chunks of rows on the pool
+    private static int[][] extractLayers(BufferedImage dataImage, int layers, int layerHeight) {
+        int width = dataImage.getWidth();
+        int[][] pixels = new int[layers][width * layerHeight];
+        int chunksPerLayer = (layerHeight + DECODE_CHUNK_ROWS - 1) / DECODE_CHUNK_ROWS;
+        IntStream.range(0, layers * chunksPerLayer).parallel().forEach(chunk -> {
+            int layer = chunk / chunksPerLayer;
+            int y = (chunk % chunksPerLayer) * DECODE_CHUNK_ROWS;
+            int rows = Math.min(DECODE_CHUNK_ROWS, layerHeight - y);
+            int[] layerPixels = pixels[layer];
+            dataImage.getRGB(0, layer * layerHeight + y, width, rows, layerPixels, y * width, width);
+            for (int i = y * width; i < (y + rows) * width; i++) {
+                layerPixels[i] &= Tile.EMPTY_CODE;      // & 0x00FFFFFF - mask off the alpha byte
+            }
+        });
+        return pixels;
+    }
+
     /*  XML Format:
         <?xml version="1.0" encoding="UTF-8" standalone="no"?>
         <Level modified="Thu Mar 17 16:00:27 MDT 2022" layers="2">
           <Palette tileHeight="16" tileWidth="16">C:\...\LevelEditor\test\resources\palette_16x16.png</Palette>
+          <Objects>
+            <Object id="1" type="spawn" x="32" y="48" width="16" height="16">
+              <Property name="team" value="red"/>
+            </Object>
+          </Objects>
         </Level>
      */
     private static LevelFileFields parseXmlLevelFile(File xmlLevelFile) throws IOException {
@@ -149,12 +235,7 @@ public class LevelData {
             }
 
             // build data file name from xml file name
-            String absXmlLevelFileStr = absXmlLevelFile.toString();
-            int dotIndex = absXmlLevelFileStr.lastIndexOf('.');
-            if (dotIndex >= 0) {
-                absXmlLevelFileStr = absXmlLevelFileStr.substring(0, dotIndex);
-            }
-            File dataFile = new File(absXmlLevelFileStr + ".png");
+            File dataFile = siblingFile(absXmlLevelFile, ".png");
 
             String tileWidthStr = palette.getAttribute(TILE_WIDTH_ATTRIBUTE);
             int tileWidth = Integer.parseInt(tileWidthStr);
@@ -162,29 +243,51 @@ public class LevelData {
             String tileHeightStr = palette.getAttribute(TILE_HEIGHT_ATTRIBUTE);
             int tileHeight = Integer.parseInt(tileHeightStr);
 
-            return new LevelFileFields(dataFile, paletteFile, ImageSize.of(tileWidth, tileHeight), layers);
+            return new LevelFileFields(dataFile, paletteFile, ImageSize.of(tileWidth, tileHeight), layers,
+                    parseObjects(level));
         } catch (NumberFormatException | ParserConfigurationException | SAXException e) {
             throw new InvalidLevelFileException(xmlLevelFile, e);
         }
     }
 
+    // objects are optional - levels saved before there were objects have no Objects element
+    private static List<LevelObject> parseObjects(Element level) {
+        List<LevelObject> objects = new ArrayList<>();
+        Node objectsNode = level.getElementsByTagName(OBJECTS_ELEMENT).item(0);
+        if (objectsNode == null) {
+            return objects;
+        }
+        NodeList objectNodes = ((Element) objectsNode).getElementsByTagName(OBJECT_ELEMENT);
+        for (int i = 0; i < objectNodes.getLength(); i++) {
+            Element object = (Element) objectNodes.item(i);
+            Map<String, String> properties = new LinkedHashMap<>();
+            NodeList propertyNodes = object.getElementsByTagName(PROPERTY_ELEMENT);
+            for (int j = 0; j < propertyNodes.getLength(); j++) {
+                Element property = (Element) propertyNodes.item(j);
+                properties.put(property.getAttribute("name"), property.getAttribute("value"));
+            }
+            objects.add(new LevelObject(Integer.parseInt(object.getAttribute("id")), object.getAttribute("type"),
+                    Integer.parseInt(object.getAttribute("x")), Integer.parseInt(object.getAttribute("y")),
+                    Integer.parseInt(object.getAttribute("width")), Integer.parseInt(object.getAttribute("height")),
+                    properties));
+        }
+        return objects;
+    }
+
     // ----------------- Public interface
 
     public void saveXmlLevelFile(File xmlLevelFile) throws IOException {
+        long start = System.nanoTime();
         try {
             // save the level data png (image) file
             Path parentXmlLevelFile = xmlLevelFile.toPath();
-            String parentXmlLevelFileStr = parentXmlLevelFile.toString();
-            int dotIndex = parentXmlLevelFileStr.lastIndexOf('.');
-            if (dotIndex >= 0) {
-                parentXmlLevelFileStr = parentXmlLevelFileStr.substring(0, dotIndex);
-            }
-            File levelDataFile = new File(parentXmlLevelFileStr + ".png");
+            File levelDataFile = siblingFile(xmlLevelFile, ".png");
             BufferedImage dataImage = new BufferedImage(dataSize.width(),
                     dataSize.height() * layers, BufferedImage.TYPE_INT_RGB);
+            LevelSnapshot snapshot = snapshot();
             for (int i = 0; i < layers; i++) {
                 dataImage.setRGB(0, i * dataSize.height(), dataSize.width(),
-                        dataSize.height(), data[i], 0, dataSize.width());
+                        dataSize.height(), snapshot.copyLayer(i), 0, dataSize.width());
             }
             ImageIO.write(dataImage, "png", levelDataFile);
 
@@ -205,6 +308,9 @@ public class LevelData {
             }
             paletteElement.appendChild(doc.createTextNode(palettePath.toString()));
             levelElement.appendChild(paletteElement);
+            if (objects.size() > 0) {
+                levelElement.appendChild(createObjectsElement(doc));
+            }
 
             // write the xml file from DOM
             try (OutputStream os = new FileOutputStream(xmlLevelFile);
@@ -219,7 +325,30 @@ public class LevelData {
             }
         } catch (TransformerException | ParserConfigurationException e) {
             throw new IOException(e);
+        } finally {
+            EditorTelemetry.LEVEL_SAVES.recordSince(start);
+        }
+    }
+
+    private Element createObjectsElement(Document doc) {
+        Element objectsElement = doc.createElement(OBJECTS_ELEMENT);
+        for (LevelObject object : objects.getObjects()) {
+            Element objectElement = doc.createElement(OBJECT_ELEMENT);
+            objectElement.setAttribute("id", Integer.toString(object.id()));
+            objectElement.setAttribute("type", object.type());
+            objectElement.setAttribute("x", Integer.toString(object.x()));
+            objectElement.setAttribute("y", Integer.toString(object.y()));
+            objectElement.setAttribute("width", Integer.toString(object.width()));
+            objectElement.setAttribute("height", Integer.toString(object.height()));
+            object.properties().forEach((name, value) -> {
+                Element propertyElement = doc.createElement(PROPERTY_ELEMENT);
+                propertyElement.setAttribute("name", name);
+                propertyElement.setAttribute("value", value);
+                objectElement.appendChild(propertyElement);
+            });
+            objectsElement.appendChild(objectElement);
         }
+        return objectsElement;
     }
 
     // ------------------ level info
@@ -231,10 +360,15 @@ public class LevelData {
     public void clearLevelFile() {
         levelFile = null;
         dataFile = null;
-        data = new int[layers][];
-        for (int i = 0; i < layers; i++) {
-            data[i] = new int[dataSize.width() * dataSize.height()];
-        }
+        objects.clear();
+        clearLayers();
+    }
+
+    // resets every layer to empty tiles
+    public void clearLayers() {
+        data = new ChunkedLayers(dataSize.width(), dataSize.height(), layers);
+        tileIndex = new TileIndex(layers);
+        markStructural();
     }
 
     public int getLayers() {
@@ -242,12 +376,10 @@ public class LevelData {
     }
 
     public void addLayer() {
-        int layers = this.layers + 1;
-        int[][] data = new int[layers][];
-        System.arraycopy(this.data, 0, data, 0, this.layers);
-        data[this.layers] = new int[dataSize.width() * dataSize.height()];
-        this.layers = layers;
-        this.data = data;
+        layers++;
+        data.addLayer();
+        tileIndex.addLayer();
+        markStructural();
     }
 
     // ------------------ data info
@@ -262,15 +394,260 @@ public class LevelData {
 
     public void setDataSize(ImageSize dataSize) {
         this.dataSize = dataSize;
-        data = new int[layers][];
-        for (int i = 0; i < layers; i++) {
-            data[i] = new int[dataSize.width() * dataSize.height()];
-        }
+        objects.resize(dataSize.width() * tileSize.width(), dataSize.height() * tileSize.height());
+        clearLayers();
         dataFile = null;
     }
 
+    // a copy of every layer, one int[width * height] each - background readers should use snapshot()
     public int[][] getData() {
-        return data;
+        LevelSnapshot snapshot = snapshot();
+        int[][] copy = new int[layers][];
+        for (int layer = 0; layer < layers; layer++) {
+            copy[layer] = snapshot.copyLayer(layer);
+        }
+        return copy;
+    }
+
+    public int getTile(int layer, int index) {
+        return data.get(layer, index);
+    }
+
+    // copies length cells of row y, starting at column x, into dst - for readers on the editing thread
+    public void getRow(int layer, int x, int y, int length, int[] dst, int offset) {
+        data.getRow(layer, x, y, length, dst, offset);
+    }
+
+    // the cells as they are now, in O(1); the snapshot can be read on any thread while editing continues.
+    // Must be called on the thread doing the edits (the EDT in the editor).
+    public LevelSnapshot snapshot() {
+        if (lastSnapshot == null || lastSnapshot.getVersion() != version || data.isWrittenSinceSnapshot()) {
+            lastSnapshot = data.snapshot(this, version);
+        }
+        return lastSnapshot;
+    }
+
+    // bytes of cell data actually held, including bands kept alive only by snapshots
+    public long getLayerDataBytes() {
+        return data.retainedBytes();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // ------------------ edit transactions
+
+    // Every edit method runs in a transaction: edits made between begin() and the matching commit() are
+    // published to the listeners as one event when the outermost commit() is reached. Edits made outside
+    // begin()/commit() are published one at a time. Transactions nest. The commit() must be in a finally
+    // block, or an edit that throws leaves the transaction open and no change is ever published again.
+    public void begin() {
+        if (transactionDepth++ == 0) {
+            pendingDirty = new DirtyRegion[layers];
+            pendingStructural = false;
+            pendingObjects = null;
+        }
+    }
+
+    public void commit() {
+        if (transactionDepth == 0) {
+            throw new IllegalStateException("commit() without begin()");
+        }
+        if (--transactionDepth == 0) {
+            publish();
+        }
+    }
+
+    public void addLevelChangeListener(LevelChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeLevelChangeListener(LevelChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void publish() {
+        DirtyRegion[] dirty = new DirtyRegion[layers];
+        boolean changed = pendingStructural || pendingObjects != null;
+        for (int l = 0; l < layers; l++) {
+            dirty[l] = pendingStructural || l >= pendingDirty.length || pendingDirty[l] == null
+                    ? new DirtyRegion()
+                    : pendingDirty[l];
+            changed |= !dirty[l].isEmpty();
+        }
+        LevelChangeEvent event = new LevelChangeEvent(this, dirty, pendingObjects, pendingStructural);
+        pendingDirty = null;
+        pendingStructural = false;
+        pendingObjects = null;
+        if (changed) {
+            version++;
+            for (LevelChangeListener listener : List.copyOf(listeners)) {
+                listener.onLevelChanged(event);
+            }
+        }
+    }
+
+    private DirtyRegion dirtyRegion(int layer) {
+        if (layer >= pendingDirty.length) {
+            pendingDirty = Arrays.copyOf(pendingDirty, layers);     // a layer was added in this transaction
+        }
+        if (pendingDirty[layer] == null) {
+            pendingDirty[layer] = new DirtyRegion();
+        }
+        return pendingDirty[layer];
+    }
+
+    // called by the object layer for every object added or removed
+    void objectsChanged(Rectangle area) {
+        begin();
+        try {
+            pendingObjects = pendingObjects == null ? new Rectangle(area) : pendingObjects.union(area);
+        } finally {
+            commit();
+        }
+    }
+
+    private void markStructural() {
+        begin();
+        try {
+            pendingStructural = true;
+        } finally {
+            commit();
+        }
+    }
+
+    // ------------------ edits
+
+    // stores code at a cell and returns the code that was there before
+    public int setTile(int layer, int index, int code) {
+        int oldCode = data.get(layer, index);
+        if (oldCode != code) {
+            begin();
+            try {
+                data.set(layer, index, code);
+                tileIndex.onTileChanged(layer, index, oldCode, code);
+                dirtyRegion(layer).add(new Rectangle(index % dataSize.width(), index / dataSize.width(), 1, 1));
+            } finally {
+                commit();
+            }
+        }
+        return oldCode;
+    }
+
+    // sets every cell of a block (clipped to the level) to one code
+    public void fillRect(Rectangle area, int layer, int code) {
+        Rectangle clipped = clipToLevel(area);
+        if (clipped.isEmpty()) {
+            return;
+        }
+        begin();
+        try {
+            int levelWidth = dataSize.width();
+            for (int y = clipped.y; y < clipped.y + clipped.height; y++) {
+                for (int i = clipped.x + y * levelWidth, end = i + clipped.width; i < end; i++) {
+                    int oldCode = data.set(layer, i, code);
+                    tileIndex.onTileChanged(layer, i, oldCode, code);
+                }
+            }
+            dirtyRegion(layer).add(clipped);
+        } finally {
+            commit();
+        }
+    }
+
+    // replaces every occurrence of fromCode with toCode on one layer, or all layers if layer is negative;
+    // returns the cells that were changed, per layer (owned by the caller) - runs in time proportional to the
+    // occurrences
+    public CellBitmap[] replaceAll(int fromCode, int toCode, int layer) {
+        CellBitmap[] replaced = new CellBitmap[layers];
+        begin();
+        try {
+            for (int l = 0; l < layers; l++) {
+                if (layer >= 0 && l != layer || fromCode == toCode) {
+                    replaced[l] = new CellBitmap();
+                    continue;
+                }
+                CellBitmap cells = tileIndex.removeAll(fromCode, l);
+                int replacedLayer = l;
+                cells.forEach(i -> data.set(replacedLayer, i, toCode));
+                tileIndex.addAll(toCode, l, cells);
+                dirtyRegion(l).addCells(cells, dataSize.width());
+                replaced[l] = cells.isEmpty() ? new CellBitmap() : cells;
+            }
+        } finally {
+            commit();
+        }
+        return replaced;
+    }
+
+    // ------------------ region info (all rectangles are in tiles, not pixels)
+
+    // intersects area with the bounds of one layer
+    public Rectangle clipToLevel(Rectangle area) {
+        return area.intersection(new Rectangle(0, 0, dataSize.width(), dataSize.height()));
+    }
+
+    // copies a block of cells out of layers [firstLayer, firstLayer + layerCount), one row at a time
+    public TileRegion copyRegion(Rectangle area, int firstLayer, int layerCount) {
+        Rectangle clipped = clipToLevel(area);
+        TileRegion region = TileRegion.of(Math.max(clipped.width, 0), Math.max(clipped.height, 0), layerCount);
+        for (int l = 0; l < layerCount; l++) {
+            for (int row = 0; row < region.height(); row++) {
+                data.getRow(firstLayer + l, clipped.x, clipped.y + row, region.width(),
+                        region.codes()[l], row * region.width());
+            }
+        }
+        return region;
+    }
+
+    // writes region with its top left cell at (x, y), clipped to the level; returns the cells it overwrote
+    // (covering clipToLevel(new Rectangle(x, y, region.width(), region.height())))
+    public TileRegion pasteRegion(TileRegion region, int x, int y, int firstLayer) {
+        Rectangle clipped = clipToLevel(new Rectangle(x, y, region.width(), region.height()));
+        int layerCount = Math.min(region.layers(), layers - firstLayer);
+        TileRegion before = TileRegion.of(Math.max(clipped.width, 0), Math.max(clipped.height, 0), layerCount);
+        int levelWidth = dataSize.width();
+        int width = before.width();
+        begin();
+        try {
+            for (int l = 0; l < layerCount; l++) {
+                int layer = firstLayer + l;
+                int[] src = region.codes()[l];
+                int[] old = before.codes()[l];
+                for (int row = 0; row < before.height(); row++) {
+                    int dstPos = clipped.x + (clipped.y + row) * levelWidth;
+                    int srcPos = (clipped.x - x) + (clipped.y - y + row) * region.width();
+                    data.getRow(layer, clipped.x, clipped.y + row, width, old, row * width);
+                    data.setRow(layer, clipped.x, clipped.y + row, width, src, srcPos);
+                    for (int i = 0; i < width; i++) {
+                        tileIndex.onTileChanged(layer, dstPos + i, old[row * width + i], src[srcPos + i]);
+                    }
+                }
+                dirtyRegion(layer).add(clipped);
+            }
+        } finally {
+            commit();
+        }
+        return before;
+    }
+
+    // sets a block of cells to empty; returns the cells it overwrote
+    public TileRegion clearRegion(Rectangle area, int firstLayer, int layerCount) {
+        Rectangle clipped = clipToLevel(area);
+        TileRegion empty = TileRegion.of(Math.max(clipped.width, 0), Math.max(clipped.height, 0), layerCount);
+        for (int[] codes : empty.codes()) {
+            Arrays.fill(codes, Tile.EMPTY_CODE);
+        }
+        return pasteRegion(empty, clipped.x, clipped.y, firstLayer);
+    }
+
+    public ObjectLayer getObjects() {
+        return objects;
+    }
+
+    public TileIndex getTileIndex() {
+        return tileIndex;
     }
 
     // ------------------ palette info
@@ -282,12 +659,24 @@ public class LevelData {
     public void setPaletteFile(File paletteFile) throws IOException {
         paletteImage = imageFromPngFileIfNotNull(paletteFile);
         this.paletteFile = paletteFile;
+        lastSnapshot = null;
     }
 
     public BufferedImage getPaletteImage() {
         return paletteImage;
     }
 
+    // used when the palette file was changed on disk and re-read in place
+    public void setPaletteImage(BufferedImage paletteImage) {
+        this.paletteImage = paletteImage;
+        lastSnapshot = null;
+    }
+
+    // safe to call from a background thread - touches no level state
+    public static BufferedImage readPaletteImage(File paletteFile) throws IOException {
+        return imageFromPngFileIfNotNull(paletteFile);
+    }
+
     // ------------------ tile info
 
     public ImageSize getTileSize() {
@@ -296,5 +685,7 @@ public class LevelData {
 
     public void setTileSize(ImageSize tileSize) {
         this.tileSize = tileSize;
+        objects.resize(dataSize.width() * tileSize.width(), dataSize.height() * tileSize.height());
+        lastSnapshot = null;
     }
 }
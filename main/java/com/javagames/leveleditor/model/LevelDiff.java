@@ -0,0 +1,325 @@
+package com.javagames.leveleditor.model;
+
+import java.util.Arrays;
+
+// Cell by cell differences between two levels, for reviewing and merging level files that version control
+// can only treat as binary blobs. Each layer is split into CHUNK_SIZE square chunks and only chunks whose
+// hashes differ are compared cell by cell, so diffing mostly equal levels costs one pass of hashing - and
+// ChunkHashes can be kept and reused when one level is diffed against many. Levels of different sizes are
+// compared over the larger of the two, with the cells outside a level (or in a layer it doesn't have)
+// counting as Tile.EMPTY_CODE. Works on snapshots, so it runs on any thread and needs no editor.
+public final class LevelDiff {
+    public static final int CHUNK_SIZE = 32;                // cells per side
+    private static final int CHUNK_SHIFT = 5;
+
+    private final int width;
+    private final int height;
+    private final int layers;
+    private final Cells changes = new Cells();
+    private int changedChunks;
+
+    private LevelDiff(int width, int height, int layers) {
+        this.width = width;
+        this.height = height;
+        this.layers = layers;
+    }
+
+    public static LevelDiff between(LevelSnapshot before, LevelSnapshot after) {
+        return between(before, ChunkHashes.of(before), after, ChunkHashes.of(after));
+    }
+
+    public static LevelDiff between(LevelSnapshot before, ChunkHashes beforeHashes,
+            LevelSnapshot after, ChunkHashes afterHashes) {
+        LevelDiff diff = new LevelDiff(Math.max(before.getDataSize().width(), after.getDataSize().width()),
+                Math.max(before.getDataSize().height(), after.getDataSize().height()),
+                Math.max(before.getLayers(), after.getLayers()));
+        int chunksWide = (diff.width + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        int chunksHigh = (diff.height + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        int[] beforeRow = new int[CHUNK_SIZE];
+        int[] afterRow = new int[CHUNK_SIZE];
+        for (int layer = 0; layer < diff.layers; layer++) {
+            for (int cy = 0; cy < chunksHigh; cy++) {
+                for (int cx = 0; cx < chunksWide; cx++) {
+                    if (beforeHashes.get(layer, cx, cy) == afterHashes.get(layer, cx, cy)) {
+                        continue;
+                    }
+                    diff.changedChunks++;
+                    int x0 = cx << CHUNK_SHIFT;
+                    int w = Math.min(CHUNK_SIZE, diff.width - x0);
+                    for (int y = cy << CHUNK_SHIFT, y1 = Math.min(y + CHUNK_SIZE, diff.height); y < y1; y++) {
+                        readRow(before, layer, x0, y, w, beforeRow);
+                        readRow(after, layer, x0, y, w, afterRow);
+                        for (int i = 0; i < w; i++) {
+                            if (beforeRow[i] != afterRow[i]) {
+                                diff.changes.add(layer, x0 + i, y, beforeRow[i], afterRow[i], 0);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return diff;
+    }
+
+    // the size compared: the larger of the two levels
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getLayers() {
+        return layers;
+    }
+
+    public boolean isEmpty() {
+        return changes.size() == 0;
+    }
+
+    // number of changed cells, ordered by layer, then chunk, then row and column within the chunk
+    public int size() {
+        return changes.size();
+    }
+
+    public int layer(int i) {
+        return changes.get(i, 0);
+    }
+
+    public int x(int i) {
+        return changes.get(i, 1);
+    }
+
+    public int y(int i) {
+        return changes.get(i, 2);
+    }
+
+    public int before(int i) {
+        return changes.get(i, 3);
+    }
+
+    public int after(int i) {
+        return changes.get(i, 4);
+    }
+
+    // chunks whose hashes differed - those are the only ones compared cell by cell
+    public int getChangedChunks() {
+        return changedChunks;
+    }
+
+    // ------------------ three-way merge
+
+    // Merges the edits made between base and theirs into ours. A cell theirs changed is taken from theirs
+    // where ours still has the base code; where ours changed it too, to a different code, it's a conflict and
+    // the merged cell keeps ours. The merged size is ours if ours was resized, theirs otherwise; layers are
+    // only ever added, so the merged level has the layers of both.
+    public static Merge merge(LevelSnapshot base, LevelSnapshot ours, LevelSnapshot theirs) {
+        ImageSize dataSize = !ours.getDataSize().equals(base.getDataSize()) ? ours.getDataSize() : theirs.getDataSize();
+        int width = dataSize.width();
+        int height = dataSize.height();
+        int[][] merged = new int[Math.max(ours.getLayers(), theirs.getLayers())][width * height];
+        for (int layer = 0; layer < merged.length; layer++) {
+            for (int y = 0; y < height; y++) {
+                readRow(ours, layer, 0, y, width, merged[layer], y * width);
+            }
+        }
+        LevelDiff theirChanges = between(base, theirs);
+        Merge merge = new Merge(LevelSnapshot.of(merged, dataSize, ours.getTileSize(), ours.getPaletteImage()),
+                theirChanges.size());
+        for (int i = 0; i < theirChanges.size(); i++) {
+            int layer = theirChanges.layer(i);
+            int x = theirChanges.x(i);
+            int y = theirChanges.y(i);
+            if (x >= width || y >= height) {
+                continue;                                   // cropped away by ours
+            }
+            int ourCode = merged[layer][x + y * width];
+            if (ourCode == theirChanges.before(i)) {
+                merged[layer][x + y * width] = theirChanges.after(i);
+                merge.taken++;
+            } else if (ourCode != theirChanges.after(i)) {
+                merge.conflicts.add(layer, x, y, theirChanges.before(i), ourCode, theirChanges.after(i));
+            }
+        }
+        return merge;
+    }
+
+    // the outcome of merge(): the merged cells, and the cells both sides changed differently
+    public static final class Merge {
+        private final LevelSnapshot level;
+        private final Cells conflicts = new Cells();
+        private final int theirChanges;
+        private int taken;
+
+        private Merge(LevelSnapshot level, int theirChanges) {
+            this.level = level;
+            this.theirChanges = theirChanges;
+        }
+
+        public LevelSnapshot getLevel() {
+            return level;
+        }
+
+        public boolean hasConflicts() {
+            return conflicts.size() > 0;
+        }
+
+        public int getConflictCount() {
+            return conflicts.size();
+        }
+
+        public int conflictLayer(int i) {
+            return conflicts.get(i, 0);
+        }
+
+        public int conflictX(int i) {
+            return conflicts.get(i, 1);
+        }
+
+        public int conflictY(int i) {
+            return conflicts.get(i, 2);
+        }
+
+        public int baseCode(int i) {
+            return conflicts.get(i, 3);
+        }
+
+        public int ourCode(int i) {
+            return conflicts.get(i, 4);
+        }
+
+        public int theirCode(int i) {
+            return conflicts.get(i, 5);
+        }
+
+        // cells changed by theirs, and how many of those were taken into the merged level
+        public int getTheirChanges() {
+            return theirChanges;
+        }
+
+        public int getTakenChanges() {
+            return taken;
+        }
+
+        // makes level (normally the one ours was taken from) match the merged cells, as one transaction
+        public void applyTo(LevelData level) {
+            level.begin();
+            try {
+                if (!level.getDataSize().equals(this.level.getDataSize())) {
+                    level.setDataSize(this.level.getDataSize());
+                }
+                while (level.getLayers() < this.level.getLayers()) {
+                    level.addLayer();
+                }
+                int cells = this.level.getDataSize().width() * this.level.getDataSize().height();
+                for (int layer = 0; layer < this.level.getLayers(); layer++) {
+                    for (int i = 0; i < cells; i++) {
+                        int code = this.level.getTile(layer, i);
+                        if (level.getTile(layer, i) != code) {
+                            level.setTile(layer, i, code);
+                        }
+                    }
+                }
+            } finally {
+                level.commit();
+            }
+        }
+    }
+
+    // ------------------ chunk hashes
+
+    // One 64 bit hash per chunk of every layer. A chunk's hash is the sum of a mix of each cell's code and
+    // position in the chunk, with empty cells adding nothing - so hashes of levels of different sizes are
+    // comparable, and an empty chunk (or one outside the level) hashes to 0. Two different chunks sharing
+    // a hash would hide their differences; at 64 bits that's not a practical concern.
+    public static final class ChunkHashes {
+        private final int chunksWide;
+        private final int chunksHigh;
+        private final long[][] hashes;
+
+        private ChunkHashes(int chunksWide, int chunksHigh, long[][] hashes) {
+            this.chunksWide = chunksWide;
+            this.chunksHigh = chunksHigh;
+            this.hashes = hashes;
+        }
+
+        public static ChunkHashes of(LevelSnapshot level) {
+            int width = level.getDataSize().width();
+            int height = level.getDataSize().height();
+            int chunksWide = (width + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+            int chunksHigh = (height + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+            long[][] hashes = new long[level.getLayers()][chunksWide * chunksHigh];
+            int[] row = new int[width];
+            for (int layer = 0; layer < level.getLayers(); layer++) {
+                for (int y = 0; y < height; y++) {
+                    level.getRow(layer, 0, y, width, row, 0);
+                    int chunkRow = (y >> CHUNK_SHIFT) * chunksWide;
+                    int rowPosition = (y & (CHUNK_SIZE - 1)) << CHUNK_SHIFT;
+                    for (int x = 0; x < width; x++) {
+                        if (row[x] != Tile.EMPTY_CODE) {
+                            hashes[layer][chunkRow + (x >> CHUNK_SHIFT)] +=
+                                    cellHash(row[x], rowPosition | (x & (CHUNK_SIZE - 1)));
+                        }
+                    }
+                }
+            }
+            return new ChunkHashes(chunksWide, chunksHigh, hashes);
+        }
+
+        public long get(int layer, int cx, int cy) {
+            return layer < hashes.length && cx < chunksWide && cy < chunksHigh ? hashes[layer][cx + cy * chunksWide] : 0;
+        }
+
+        private static long cellHash(int code, int position) {
+            long h = ((long) (code & Tile.EMPTY_CODE) << 10 | position) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 32;
+            h *= 0xD6E8FEB86659FD93L;
+            return h ^ h >>> 32;
+        }
+    }
+
+    // ------------------ helpers
+
+    private static void readRow(LevelSnapshot level, int layer, int x, int y, int length, int[] dst) {
+        readRow(level, layer, x, y, length, dst, 0);
+    }
+
+    // like LevelSnapshot.getRow, with the cells outside the level read as empty
+    private static void readRow(LevelSnapshot level, int layer, int x, int y, int length, int[] dst, int offset) {
+        int inside = layer < level.getLayers() && y < level.getDataSize().height()
+                ? Math.max(0, Math.min(length, level.getDataSize().width() - x)) : 0;
+        if (inside > 0) {
+            level.getRow(layer, x, y, inside, dst, offset);
+        }
+        Arrays.fill(dst, offset + inside, offset + length, Tile.EMPTY_CODE);
+    }
+
+    // growable table of cells, six ints each (layer, x, y and up to three codes)
+    private static final class Cells {
+        private static final int STRIDE = 6;
+        private int[] values = new int[16 * STRIDE];
+        private int size;
+
+        void add(int layer, int x, int y, int a, int b, int c) {
+            if ((size + 1) * STRIDE > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            int at = size++ * STRIDE;
+            values[at] = layer;
+            values[at + 1] = x;
+            values[at + 2] = y;
+            values[at + 3] = a;
+            values[at + 4] = b;
+            values[at + 5] = c;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int i, int field) {
+            return values[i * STRIDE + field];
+        }
+    }
+}
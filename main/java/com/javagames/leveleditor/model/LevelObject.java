@@ -0,0 +1,28 @@
+package com.javagames.leveleditor.model;
+
+import java.awt.*;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// A typed entity placed on the level (spawn point, trigger, pickup...) with its box in level pixels and
+// free-form string properties. Immutable - moving or editing an object replaces it with a copy of the same id.
+public record LevelObject(int id, String type, int x, int y, int width, int height, Map<String, String> properties) {
+
+    public LevelObject {
+        properties = Collections.unmodifiableMap(new LinkedHashMap<>(properties));   // keeps the file's order
+    }
+
+    public static LevelObject of(int id, String type, int x, int y, int width, int height) {
+        return new LevelObject(id, type, x, y, width, height, Map.of());
+    }
+
+    public LevelObject movedTo(int x, int y) {
+        return new LevelObject(id, type, x, y, width, height, properties);
+    }
+
+    // never empty, so even a point-like object can be hit and indexed
+    public Rectangle getBounds() {
+        return new Rectangle(x, y, Math.max(1, width), Math.max(1, height));
+    }
+}
@@ -0,0 +1,81 @@
+package com.javagames.leveleditor.model;
+
+import java.awt.image.BufferedImage;
+
+// Immutable view of a level's cells at one version, taken with LevelData.snapshot(). Shares its bands with
+// the live level (which copies a band before changing it), so it's O(1) to take and safe to read from any
+// thread while the editor keeps writing.
+public final class LevelSnapshot {
+    private final long version;
+    private final ImageSize dataSize;
+    private final ImageSize tileSize;
+    private final BufferedImage paletteImage;
+    private final int[][][] bands;
+    private final int width;
+    private final int bandCells;
+    private final int bandRows;
+
+    LevelSnapshot(LevelData level, long version, int[][][] bands, int width, int bandCells) {
+        this(version, level.getDataSize(), level.getTileSize(), level.getPaletteImage(), bands, width, bandCells);
+    }
+
+    private LevelSnapshot(long version, ImageSize dataSize, ImageSize tileSize, BufferedImage paletteImage,
+            int[][][] bands, int width, int bandCells) {
+        this.version = version;
+        this.dataSize = dataSize;
+        this.tileSize = tileSize;
+        this.paletteImage = paletteImage;
+        this.bands = bands;
+        this.width = width;
+        this.bandCells = bandCells;
+        this.bandRows = bandCells / Math.max(width, 1);
+    }
+
+    // wraps raw layer data (one int[width * height] per layer, not copied) - e.g.: for tools and tests
+    public static LevelSnapshot of(int[][] data, ImageSize dataSize, ImageSize tileSize, BufferedImage paletteImage) {
+        int[][][] bands = new int[data.length][][];
+        for (int layer = 0; layer < data.length; layer++) {
+            bands[layer] = new int[][] { data[layer] };
+        }
+        return new LevelSnapshot(0, dataSize, tileSize, paletteImage, bands, dataSize.width(),
+                dataSize.width() * dataSize.height());
+    }
+
+    // the LevelData version this snapshot was taken at; bumped by every committed edit
+    public long getVersion() {
+        return version;
+    }
+
+    public ImageSize getDataSize() {
+        return dataSize;
+    }
+
+    public ImageSize getTileSize() {
+        return tileSize;
+    }
+
+    public BufferedImage getPaletteImage() {
+        return paletteImage;
+    }
+
+    public int getLayers() {
+        return bands.length;
+    }
+
+    public int getTile(int layer, int index) {
+        return bands[layer][index / bandCells][index % bandCells];
+    }
+
+    // copies length cells of row y, starting at column x, into dst
+    public void getRow(int layer, int x, int y, int length, int[] dst, int offset) {
+        System.arraycopy(bands[layer][y / bandRows], (y % bandRows) * width + x, dst, offset, length);
+    }
+
+    public int[] copyLayer(int layer) {
+        int[] cells = new int[dataSize.width() * dataSize.height()];
+        for (int y = 0; y < dataSize.height(); y++) {
+            getRow(layer, 0, y, width, cells, y * width);
+        }
+        return cells;
+    }
+}
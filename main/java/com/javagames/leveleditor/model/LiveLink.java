@@ -0,0 +1,180 @@
+package com.javagames.leveleditor.model;
+
+import java.awt.*;
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Publishes the level's layers into a memory mapped file that a game running on the same machine can map too
+// and hot-patch its tilemap from, with no serialization. Kept current from LevelData change events: each
+// committed edit copies just its dirty rectangles into the file and appends a record per rectangle to a ring,
+// so a reader only copies what changed since its last poll. LiveLinkReader is the reference reader.
+public class LiveLink implements LevelChangeListener, Closeable {
+    static final int MAGIC = 0x4C4C4E4B;                    // "LLNK"
+    static final int FORMAT_VERSION = 1;
+    private static final String LIVE_SUFFIX = ".live";
+
+    /*  File layout (big endian):
+        header, HEADER_SIZE bytes:
+            int magic "LLNK", int version,
+            long sequence       odd while the editor is writing; readers retry if it's odd or changes under them
+            int width, int height, int layers (in tiles), int record capacity,
+            long record count   records appended since the layout was last changed
+            long generation     bumped when the layers are cleared, added or resized - reread everything
+        records, RECORD_SIZE bytes each, record n at n % capacity:
+            long sequence the edit was published at, int layer, int x, int y, int width, int height, int unused
+        cells: layers * height * width ints, row major per layer - the tile codes (Tile.EMPTY_CODE if empty)
+     */
+    static final int SEQUENCE = 8;
+    static final int WIDTH = 16;
+    static final int HEIGHT = 20;
+    static final int LAYERS = 24;
+    static final int RECORD_CAPACITY = 28;
+    static final int RECORD_COUNT = 32;
+    static final int GENERATION = 40;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 32;
+    static final int RECORDS = 1024;                        // ring capacity; a reader further behind rereads all
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final LevelData level;
+    private final File file;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private IntBuffer cells;
+    private long sequence;
+    private long recordCount;
+    private long generation;
+    private int width;
+    private int height;
+    private int[] row = new int[0];
+
+    public LiveLink(LevelData level, File file) throws IOException {
+        this.level = level;
+        this.file = file;
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+        publishAll();
+    }
+
+    // "level.level" publishes to "level.live"
+    public static File fileFor(File levelFile) {
+        return LevelData.siblingFile(levelFile, LIVE_SUFFIX);
+    }
+
+    public LevelData getLevel() {
+        return level;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    // the file is left behind - a game may still have it mapped
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ------------------ updates
+
+    @Override
+    public void onLevelChanged(LevelChangeEvent event) {
+        try {
+            if (event.structural()) {
+                publishAll();
+            } else {
+                publishDirty(event);
+            }
+        } catch (IOException e) {
+            System.out.println("Unable to update live link " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void publishDirty(LevelChangeEvent event) {
+        beginWrite();
+        for (int layer = 0; layer < event.layers(); layer++) {
+            DirtyRegion dirty = event.dirty(layer);
+            for (Rectangle area : dirty.getRectangles()) {
+                copyCells(layer, area);
+                addRecord(layer, area);
+            }
+            if (!dirty.getCells().isEmpty()) {
+                // scattered cells (a replace-all) are copied one by one, and recorded as the box around them
+                int layerStart = layer * width * height;
+                int l = layer;
+                dirty.getCells().forEach(cell -> cells.put(layerStart + cell, level.getTile(l, cell)));
+                addRecord(layer, dirty.getBounds());
+            }
+        }
+        buffer.putLong(RECORD_COUNT, recordCount);
+        endWrite();
+    }
+
+    private void addRecord(int layer, Rectangle area) {
+        int record = HEADER_SIZE + (int) (recordCount++ % RECORDS) * RECORD_SIZE;
+        buffer.putLong(record, sequence + 1);   // the sequence this write ends at
+        buffer.putInt(record + 8, layer);
+        buffer.putInt(record + 12, area.x);
+        buffer.putInt(record + 16, area.y);
+        buffer.putInt(record + 20, area.width);
+        buffer.putInt(record + 24, area.height);
+    }
+
+    // (re)lays out the file for the level's current size and copies every cell; the file only ever grows, as
+    // it can't be truncated while a reader has it mapped (on some platforms)
+    private void publishAll() throws IOException {
+        width = level.getDataSize().width();
+        height = level.getDataSize().height();
+        int layers = level.getLayers();
+        long size = HEADER_SIZE + (long) RECORDS * RECORD_SIZE + (long) layers * width * height * Integer.BYTES;
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            sequence = (long) LONGS.getAcquire(buffer, SEQUENCE) & ~1L;    // continue a previous editor's count
+            generation = buffer.getLong(GENERATION);
+        }
+        cells = buffer.slice(HEADER_SIZE + RECORDS * RECORD_SIZE, buffer.capacity() - HEADER_SIZE - RECORDS * RECORD_SIZE)
+                .asIntBuffer();
+        row = new int[width];
+        beginWrite();
+        buffer.putInt(WIDTH, width);
+        buffer.putInt(HEIGHT, height);
+        buffer.putInt(LAYERS, layers);
+        buffer.putInt(RECORD_CAPACITY, RECORDS);
+        buffer.putLong(RECORD_COUNT, recordCount = 0);
+        buffer.putLong(GENERATION, ++generation);
+        for (int layer = 0; layer < layers; layer++) {
+            copyCells(layer, new Rectangle(0, 0, width, height));
+        }
+        endWrite();
+    }
+
+    // reads the level directly: this runs on the editing thread, and a snapshot would make its next write
+    // copy the band tables
+    private void copyCells(int layer, Rectangle area) {
+        int layerStart = layer * width * height;
+        for (int y = area.y; y < area.y + area.height; y++) {
+            level.getRow(layer, area.x, y, area.width, row, 0);
+            cells.put(layerStart + y * width + area.x, row, 0, area.width);
+        }
+    }
+
+    // seqlock: an odd sequence tells readers a write is in progress; the fence keeps the cell writes after it
+    private void beginWrite() {
+        LONGS.setRelease(buffer, SEQUENCE, ++sequence);
+        VarHandle.storeStoreFence();
+    }
+
+    private void endWrite() {
+        LONGS.setRelease(buffer, SEQUENCE, ++sequence);
+    }
+}
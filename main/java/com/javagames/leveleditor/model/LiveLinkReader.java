@@ -0,0 +1,149 @@
+package com.javagames.leveleditor.model;
+
+import java.awt.*;
+import java.io.*;
+import java.lang.invoke.VarHandle;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reference reader for a LiveLink file, the way a game would follow it: poll() once a frame and, when the
+// editor has published something, copy just the changed rectangles into the local tilemap (or all of it after
+// the level was resized, or when the reader fell too far behind).
+public class LiveLinkReader implements Closeable {
+    private static final int MAX_ATTEMPTS = 100;        // polls give up while the editor keeps writing
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private IntBuffer cells;
+    private long sequence = -1;                         // last sequence copied
+    private long recordCount;
+    private long generation = -1;
+    private int width;
+    private int height;
+    private int[][] layers = new int[0][];
+
+    @FunctionalInterface
+    public interface PatchListener {
+        void onPatched(int layer, Rectangle area);      // area in tiles
+    }
+
+    public LiveLinkReader(File file) throws IOException {
+        this.channel = new RandomAccessFile(file, "r").getChannel();
+        map();
+        if (buffer.getInt(0) != LiveLink.MAGIC || buffer.getInt(4) != LiveLink.FORMAT_VERSION) {
+            channel.close();
+            throw new IOException("not a live link file: " + file);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getLayers() {
+        return layers.length;
+    }
+
+    public int getTile(int layer, int x, int y) {
+        return layers[layer][x + y * width];
+    }
+
+    // the local copy of a layer, row major
+    public int[] getLayer(int layer) {
+        return layers[layer];
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ------------------ polling
+
+    // brings the local tilemap up to date; returns false if nothing was published since the last poll (or the
+    // editor was writing the whole time). listener, which may be null, is told which cells were patched.
+    public boolean poll(PatchListener listener) throws IOException {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long published = (long) LiveLink.LONGS.getAcquire(buffer, LiveLink.SEQUENCE);
+            if (published == sequence) {
+                return false;
+            } else if ((published & 1) != 0) {
+                Thread.onSpinWait();                    // mid write
+                continue;
+            }
+            List<int[]> patched = copy();
+            VarHandle.loadLoadFence();
+            if ((long) LiveLink.LONGS.getAcquire(buffer, LiveLink.SEQUENCE) != published) {
+                continue;                               // torn - anything copied will be copied again
+            }
+            sequence = published;
+            generation = buffer.getLong(LiveLink.GENERATION);
+            recordCount = buffer.getLong(LiveLink.RECORD_COUNT);
+            if (listener != null) {
+                for (int[] p : patched) {
+                    listener.onPatched(p[0], new Rectangle(p[1], p[2], p[3], p[4]));
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // copies the records appended since the last poll, or every cell if they can't tell what changed; returns
+    // the patched areas as {layer, x, y, width, height}
+    private List<int[]> copy() throws IOException {
+        List<int[]> patched = new ArrayList<>();
+        long count = buffer.getLong(LiveLink.RECORD_COUNT);
+        int capacity = buffer.getInt(LiveLink.RECORD_CAPACITY);
+        if (buffer.getLong(LiveLink.GENERATION) != generation || count - recordCount > capacity || count < recordCount) {
+            int w = buffer.getInt(LiveLink.WIDTH);
+            int h = buffer.getInt(LiveLink.HEIGHT);
+            int layerCount = buffer.getInt(LiveLink.LAYERS);
+            if (cellsOffset(capacity) + (long) layerCount * w * h * Integer.BYTES > buffer.capacity()) {
+                map();                                  // the editor grew the file
+            }
+            if (w != width || h != height || layerCount != layers.length) {
+                width = w;
+                height = h;
+                layers = new int[layerCount][w * h];
+            }
+            for (int layer = 0; layer < layers.length; layer++) {
+                cells.get(layer * width * height, layers[layer]);
+                patched.add(new int[] { layer, 0, 0, width, height });
+            }
+            return patched;
+        }
+        for (long n = recordCount; n < count; n++) {
+            int record = LiveLink.HEADER_SIZE + (int) (n % capacity) * LiveLink.RECORD_SIZE;
+            int[] p = { buffer.getInt(record + 8), buffer.getInt(record + 12), buffer.getInt(record + 16),
+                    buffer.getInt(record + 20), buffer.getInt(record + 24) };
+            if (p[0] < 0 || p[0] >= layers.length || p[1] < 0 || p[2] < 0
+                    || p[1] + p[3] > width || p[2] + p[4] > height) {
+                continue;                               // torn record - the sequence check will fail too
+            }
+            int layerStart = p[0] * width * height;
+            for (int y = p[2]; y < p[2] + p[4]; y++) {
+                cells.get(layerStart + y * width + p[1], layers[p[0]], y * width + p[1], p[3]);
+            }
+            patched.add(p);
+        }
+        return patched;
+    }
+
+    private void map() throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        int offset = (int) Math.min(cellsOffset(buffer.getInt(LiveLink.RECORD_CAPACITY)), buffer.capacity());
+        cells = buffer.slice(offset, buffer.capacity() - offset).asIntBuffer();
+    }
+
+    private static long cellsOffset(int capacity) {
+        return LiveLink.HEADER_SIZE + (long) capacity * LiveLink.RECORD_SIZE;
+    }
+}
@@ -0,0 +1,230 @@
+package com.javagames.leveleditor.model;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+// The objects of a level, indexed by a uniform grid of CELL_SIZE pixel cells: each cell lists the slots of the
+// objects overlapping it, so painting, hit-testing and box selection only look at the cells they cover instead
+// of every object. Objects outside the level are kept in the border cells. Every change is published through
+// the owning LevelData as part of a level change event.
+public class ObjectLayer {
+    static final int CELL_SIZE = 128;                   // pixels; a few tiles, a few objects per cell
+    private static final int[] NO_SLOTS = new int[0];
+
+    private final LevelData level;
+    private LevelObject[] slots = new LevelObject[64];  // objects by slot; null slots are free
+    private int[] seen = new int[64];                   // slot -> stamp of the last query that reported it
+    private int slotCount;                              // slots in use or freed, slots[slotCount..] never used
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int size;
+    private int maxId;
+    private int queryStamp;
+    private int columns;
+    private int rows;
+    private int[][] cells;                              // cells[column + row * columns] -> slots, cellSizes[] used
+    private int[] cellSizes;
+
+    ObjectLayer(LevelData level, int width, int height) {
+        this.level = level;
+        resize(width, height);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // an id not used by any object added so far
+    public int nextId() {
+        return maxId + 1;
+    }
+
+    public List<LevelObject> getObjects() {
+        List<LevelObject> objects = new ArrayList<>(size);
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slots[slot] != null) {
+                objects.add(slots[slot]);
+            }
+        }
+        return objects;
+    }
+
+    // ------------------ edits
+
+    public void add(LevelObject object) {
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : newSlot();
+        slots[slot] = object;
+        size++;
+        maxId = Math.max(maxId, object.id());
+        forEachCell(object.getBounds(), cell -> addToCell(cell, slot));
+        level.objectsChanged(object.getBounds());
+    }
+
+    // removes the object with object's id; returns false if there's none
+    public boolean remove(LevelObject object) {
+        int slot = slotOf(object);
+        if (slot < 0) {
+            return false;
+        }
+        LevelObject removed = slots[slot];
+        forEachCell(removed.getBounds(), cell -> removeFromCell(cell, slot));
+        slots[slot] = null;
+        size--;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        level.objectsChanged(removed.getBounds());
+        return true;
+    }
+
+    // swaps current for replacement (a move or an edit) as one change
+    public void replace(LevelObject current, LevelObject replacement) {
+        level.begin();
+        try {
+            remove(current);
+            add(replacement);
+        } finally {
+            level.commit();
+        }
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Rectangle bounds = null;
+            for (LevelObject object : getObjects()) {
+                bounds = bounds == null ? object.getBounds() : bounds.union(object.getBounds());
+            }
+            reset();
+            level.objectsChanged(bounds);
+        }
+    }
+
+    // ------------------ queries
+
+    // calls action once for every object whose box intersects area (in pixels)
+    public void forEachIn(Rectangle area, Consumer<LevelObject> action) {
+        int stamp = nextQueryStamp();
+        forEachCell(area, cell -> {
+            int[] cellSlots = cells[cell];
+            for (int i = 0; i < cellSizes[cell]; i++) {
+                int slot = cellSlots[i];
+                if (seen[slot] != stamp) {
+                    seen[slot] = stamp;
+                    if (slots[slot].getBounds().intersects(area)) {
+                        action.accept(slots[slot]);
+                    }
+                }
+            }
+        });
+    }
+
+    public List<LevelObject> objectsIn(Rectangle area) {
+        List<LevelObject> objects = new ArrayList<>();
+        forEachIn(area, objects::add);
+        return objects;
+    }
+
+    // the object under a pixel - the one with the highest id (drawn on top) where objects overlap - or null
+    public LevelObject objectAt(int x, int y) {
+        int cell = cellIndex(x, y);
+        LevelObject top = null;
+        for (int i = 0; i < cellSizes[cell]; i++) {
+            LevelObject object = slots[cells[cell][i]];
+            if ((top == null || object.id() > top.id()) && object.getBounds().contains(x, y)) {
+                top = object;
+            }
+        }
+        return top;
+    }
+
+    // ------------------ grid
+
+    // rebuilds the grid for a level of width x height pixels; objects stay where they are
+    void resize(int width, int height) {
+        List<LevelObject> objects = getObjects();
+        columns = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+        rows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+        reset();
+        for (LevelObject object : objects) {           // no change event - resizing the level is structural
+            int slot = newSlot();
+            slots[slot] = object;
+            size++;
+            forEachCell(object.getBounds(), cell -> addToCell(cell, slot));
+        }
+    }
+
+    private void reset() {
+        cells = new int[columns * rows][];
+        Arrays.fill(cells, NO_SLOTS);
+        cellSizes = new int[columns * rows];
+        Arrays.fill(slots, null);
+        slotCount = 0;
+        freeCount = 0;
+        size = 0;
+    }
+
+    private int newSlot() {
+        if (slotCount == slots.length) {
+            slots = Arrays.copyOf(slots, slotCount * 2);
+            seen = Arrays.copyOf(seen, slotCount * 2);
+        }
+        return slotCount++;
+    }
+
+    private int slotOf(LevelObject object) {
+        int cell = cellIndex(object.x(), object.y());   // the object's top left corner is always in its cells
+        for (int i = 0; i < cellSizes[cell]; i++) {
+            int slot = cells[cell][i];
+            if (slots[slot].id() == object.id()) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int nextQueryStamp() {
+        if (++queryStamp == 0) {
+            Arrays.fill(seen, 0);
+            queryStamp = 1;
+        }
+        return queryStamp;
+    }
+
+    private int cellIndex(int x, int y) {
+        int column = Math.max(0, Math.min(columns - 1, Math.floorDiv(x, CELL_SIZE)));
+        int row = Math.max(0, Math.min(rows - 1, Math.floorDiv(y, CELL_SIZE)));
+        return column + row * columns;
+    }
+
+    private void forEachCell(Rectangle area, IntConsumer action) {
+        int first = cellIndex(area.x, area.y);
+        int last = cellIndex(area.x + area.width - 1, area.y + area.height - 1);
+        for (int row = first / columns; row <= last / columns; row++) {
+            for (int column = first % columns; column <= last % columns; column++) {
+                action.accept(column + row * columns);
+            }
+        }
+    }
+
+    private void addToCell(int cell, int slot) {
+        if (cellSizes[cell] == cells[cell].length) {
+            cells[cell] = Arrays.copyOf(cells[cell], Math.max(4, cellSizes[cell] * 2));
+        }
+        cells[cell][cellSizes[cell]++] = slot;
+    }
+
+    private void removeFromCell(int cell, int slot) {
+        int[] cellSlots = cells[cell];
+        for (int i = 0; i < cellSizes[cell]; i++) {
+            if (cellSlots[i] == slot) {
+                cellSlots[i] = cellSlots[--cellSizes[cell]];
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.javagames.leveleditor.model;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+public final class PaletteDiff {
+    private PaletteDiff() {}
+
+    // true if the new palette image can be patched tile by tile (same sheet dimensions as the old one)
+    public static boolean isCompatible(BufferedImage oldImage, BufferedImage newImage) {
+        return oldImage != null && newImage != null
+                && oldImage.getWidth() == newImage.getWidth()
+                && oldImage.getHeight() == newImage.getHeight();
+    }
+
+    // returns the palette indices of all tiles whose pixels differ between the two (compatible) images
+    public static int[] changedTiles(BufferedImage oldImage, BufferedImage newImage, ImageSize tileSize) {
+        int tileWidth = tileSize.width();
+        int tileHeight = tileSize.height();
+        int tilesWide = oldImage.getWidth() / tileWidth;
+        int tilesHigh = oldImage.getHeight() / tileHeight;
+        int bandWidth = tilesWide * tileWidth;
+        int[] oldBand = new int[bandWidth * tileHeight];
+        int[] newBand = new int[bandWidth * tileHeight];
+        boolean[] changed = new boolean[tilesWide];
+        int[] result = new int[tilesWide * tilesHigh];
+        int count = 0;
+
+        // compare one row of tiles at a time so that only two bands of pixels are ever held in memory
+        for (int ty = 0; ty < tilesHigh; ty++) {
+            oldImage.getRGB(0, ty * tileHeight, bandWidth, tileHeight, oldBand, 0, bandWidth);
+            newImage.getRGB(0, ty * tileHeight, bandWidth, tileHeight, newBand, 0, bandWidth);
+            Arrays.fill(changed, false);
+            for (int row = 0; row < tileHeight; row++) {
+                int rowStart = row * bandWidth;
+                for (int tx = 0; tx < tilesWide; tx++) {
+                    if (!changed[tx]) {
+                        int from = rowStart + tx * tileWidth;
+                        int to = from + tileWidth;
+                        changed[tx] = !Arrays.equals(oldBand, from, to, newBand, from, to);
+                    }
+                }
+            }
+            for (int tx = 0; tx < tilesWide; tx++) {
+                if (changed[tx]) {
+                    result[count++] = tx + ty * tilesWide;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
@@ -0,0 +1,240 @@
+package com.javagames.leveleditor.model;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+// A* over a grid of cells (index x + y * width), 8-way with no corner cutting and octile distances.
+// Every array is allocated once for the grid size and reused: the open set is a binary heap of cell indices
+// with a position table for decrease-key, and per-search stamps stand in for clearing the closed set, so
+// a search allocates nothing. A search can also be resumed towards a new goal from the same start (dragging
+// the goal around) - cells already closed keep their exact costs, so only the new ground is explored.
+// Not thread safe - one finder per thread.
+public class PathFinder {
+    private static final int STRAIGHT_COST = 10;
+    private static final int DIAGONAL_COST = 14;
+    private static final int[] DX = { 0, 1, 0, -1, 1, 1, -1, -1 };       // 4 straight, then 4 diagonal moves
+    private static final int[] DY = { -1, 0, 1, 0, -1, 1, 1, -1 };
+
+    private final int width;
+    private final int height;
+    private final int[] gScore;
+    private final int[] fScore;
+    private final int[] parent;
+    private final int[] stamp;          // == searchStamp once a cell has been reached in the current search
+    private final boolean[] closed;     // only meaningful where stamp == searchStamp
+    private final int[] heap;           // open set: cell indices ordered by fScore
+    private final int[] heapPos;        // cell -> position in heap (valid while open)
+    private final int[] path;
+    private IntPredicate blocked;
+    private boolean searching;          // true if the current search can be resumed
+    private int start;
+    private int goal = -1;              // goal the open set is ordered for
+    private int heapSize;
+    private int searchStamp;
+    private int pathLength;
+    private int visited;
+
+    public PathFinder(int width, int height) {
+        int cells = width * height;
+        this.width = width;
+        this.height = height;
+        this.gScore = new int[cells];
+        this.fScore = new int[cells];
+        this.parent = new int[cells];
+        this.stamp = new int[cells];
+        this.closed = new boolean[cells];
+        this.heap = new int[cells];
+        this.heapPos = new int[cells];
+        this.path = new int[cells];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // starts a new search from start to goal (cell indices) avoiding cells for which blocked tests true;
+    // returns true if a path was found - read it with getPath() / getPathLength(), start first
+    public boolean findPath(int start, int goal, IntPredicate blocked) {
+        if (++searchStamp == 0) {                       // stamps wrapped around - forget every old search
+            Arrays.fill(stamp, 0);
+            searchStamp = 1;
+        }
+        this.blocked = blocked;
+        this.start = start;
+        this.goal = -1;
+        heapSize = 0;
+        searching = !blocked.test(start);
+        if (searching) {
+            open(start, 0, 0, start);
+        }
+        return continuePath(goal);
+    }
+
+    // searches on from the last findPath() start towards another goal. Only valid while the blocked cells
+    // are unchanged - start over with findPath() after an edit.
+    public boolean continuePath(int goal) {
+        pathLength = 0;
+        visited = 0;
+        if (!searching || blocked.test(goal)) {
+            return false;
+        }
+        if (goal != this.goal) {
+            reorderFor(goal);
+        }
+        if (stamp[goal] == searchStamp && closed[goal]) {
+            tracePath(goal);                            // already settled by an earlier step
+            return true;
+        }
+        int goalX = goal % width;
+        int goalY = goal / width;
+        while (heapSize > 0) {
+            int cell = pop();
+            closed[cell] = true;
+            visited++;
+            int x = cell % width;
+            int y = cell / width;
+            for (int dir = 0; dir < 8; dir++) {
+                int nx = x + DX[dir];
+                int ny = y + DY[dir];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+                    continue;
+                }
+                int next = nx + ny * width;
+                if (stamp[next] == searchStamp && closed[next] || blocked.test(next)) {
+                    continue;
+                }
+                if (dir >= 4 && (blocked.test(x + ny * width) || blocked.test(nx + y * width))) {
+                    continue;                           // no squeezing diagonally between two blocked cells
+                }
+                int g = gScore[cell] + (dir < 4 ? STRAIGHT_COST : DIAGONAL_COST);
+                if (stamp[next] != searchStamp) {
+                    open(next, g, g + heuristic(nx, ny, goalX, goalY), cell);
+                } else if (g < gScore[next]) {
+                    fScore[next] -= gScore[next] - g;
+                    gScore[next] = g;
+                    parent[next] = cell;
+                    siftUp(heapPos[next]);
+                }
+            }
+            if (cell == goal) {                         // expanded before returning, so the search can resume
+                tracePath(goal);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // cells of the last path found, start first; only the first getPathLength() entries are valid
+    public int[] getPath() {
+        return path;
+    }
+
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    // cells expanded by the last findPath() / continuePath() call
+    public int getVisitedCount() {
+        return visited;
+    }
+
+    private static int heuristic(int x, int y, int goalX, int goalY) {
+        int dx = Math.abs(x - goalX);
+        int dy = Math.abs(y - goalY);
+        return STRAIGHT_COST * (dx + dy) + (DIAGONAL_COST - 2 * STRAIGHT_COST) * Math.min(dx, dy);
+    }
+
+    private void tracePath(int goal) {
+        int length = 0;
+        for (int cell = goal; cell != start; cell = parent[cell]) {
+            path[length++] = cell;
+        }
+        path[length++] = start;
+        for (int i = 0, j = length - 1; i < j; i++, j--) {
+            int t = path[i];
+            path[i] = path[j];
+            path[j] = t;
+        }
+        pathLength = length;
+    }
+
+    // ------------------ open set (binary min-heap on fScore, ties go to the cell nearer the goal)
+
+    // the heuristic is consistent, so closed costs stay exact for any goal; only the open cells need new keys
+    private void reorderFor(int goal) {
+        int goalX = goal % width;
+        int goalY = goal / width;
+        for (int i = 0; i < heapSize; i++) {
+            int cell = heap[i];
+            fScore[cell] = gScore[cell] + heuristic(cell % width, cell / width, goalX, goalY);
+        }
+        for (int i = (heapSize >>> 1) - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+        this.goal = goal;
+    }
+
+    private void open(int cell, int g, int f, int from) {
+        stamp[cell] = searchStamp;
+        closed[cell] = false;
+        gScore[cell] = g;
+        fScore[cell] = f;
+        parent[cell] = from;
+        heap[heapSize] = cell;
+        heapPos[cell] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int pop() {
+        int top = heap[0];
+        heap[0] = heap[--heapSize];
+        heapPos[heap[0]] = 0;
+        siftDown(0);
+        return top;
+    }
+
+    private boolean before(int a, int b) {
+        return fScore[a] < fScore[b] || fScore[a] == fScore[b] && gScore[a] > gScore[b];
+    }
+
+    private void siftUp(int pos) {
+        int cell = heap[pos];
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            int parentCell = heap[parentPos];
+            if (!before(cell, parentCell)) {
+                break;
+            }
+            heap[pos] = parentCell;
+            heapPos[parentCell] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = cell;
+        heapPos[cell] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int cell = heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], cell)) {
+                break;
+            }
+            heap[pos] = heap[child];
+            heapPos[heap[pos]] = pos;
+            pos = child;
+        }
+        heap[pos] = cell;
+        heapPos[cell] = pos;
+    }
+}
@@ -0,0 +1,139 @@
+package com.javagames.leveleditor.model;
+
+import java.io.*;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+
+// Runtime export that splits every layer into square regions and compresses each on its own, behind an index
+// of offsets and lengths, so a game can page in just the regions around the camera with positional reads
+// instead of loading a whole level png up front. RegionReader is the reference reader.
+public final class RegionFile {
+    static final int MAGIC = 0x4C524547;                    // "LREG"
+    static final int FORMAT_VERSION = 1;
+    public static final int DEFAULT_REGION_SIZE = 64;       // cells per side
+    static final int HEADER_SIZE = 32;
+    static final int ENTRY_SIZE = 16;
+    static final int FLAG_EMPTY = 1;                        // every cell is Tile.EMPTY_CODE; no data
+    static final int FLAG_UNIFORM = 2;                      // every cell has the code in the offset field; no data
+    private static final String REGIONS_SUFFIX = ".regions";
+
+    private RegionFile() {}
+
+    // "level.level" exports to "level.regions"
+    public static File fileFor(File levelFile) {
+        return LevelData.siblingFile(levelFile, REGIONS_SUFFIX);
+    }
+
+    /*  Binary format (big endian):
+        header: int magic "LREG", int version, int width, int height, int layers (width and height in cells),
+                int region size, int regions wide, int regions high
+        index:  layers * regions high * regions wide entries, row major per layer:
+                long offset (or the code of a uniform region), int length, int flags (FLAG_EMPTY, FLAG_UNIFORM)
+        data:   each stored region deflated on its own. Regions on the right and bottom edges are clipped to the
+                level. A region's codes are split into byte planes before compressing - all the high bytes,
+                then the middle, then the low bytes (codes are 24 bit) - which deflate far better than ints.
+     */
+    public static void export(LevelSnapshot level, File file, int regionSize) throws IOException {
+        int width = level.getDataSize().width();
+        int height = level.getDataSize().height();
+        int regionsWide = (width + regionSize - 1) / regionSize;
+        int regionsHigh = (height + regionSize - 1) / regionSize;
+        int regionsPerLayer = regionsWide * regionsHigh;
+        int regionCount = level.getLayers() * regionsPerLayer;
+
+        // regions compress independently, so they're compressed in parallel; only the results are held
+        long[] uniformCodes = new long[regionCount];
+        byte[][] compressed = IntStream.range(0, regionCount).parallel().mapToObj(region -> {
+            int layer = region / regionsPerLayer;
+            int rx = (region % regionsPerLayer) % regionsWide;
+            int ry = (region % regionsPerLayer) / regionsWide;
+            int x0 = rx * regionSize;
+            int y0 = ry * regionSize;
+            int w = Math.min(regionSize, width - x0);
+            int h = Math.min(regionSize, height - y0);
+            int[] codes = new int[w * h];
+            for (int y = 0; y < h; y++) {
+                level.getRow(layer, x0, y0 + y, w, codes, y * w);
+            }
+            if (isUniform(codes)) {
+                uniformCodes[region] = codes[0];
+                return null;
+            }
+            return deflate(toPlanes(codes));
+        }).toArray(byte[][]::new);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(level.getLayers());
+            out.writeInt(regionSize);
+            out.writeInt(regionsWide);
+            out.writeInt(regionsHigh);
+            long offset = HEADER_SIZE + (long) regionCount * ENTRY_SIZE;
+            for (int region = 0; region < regionCount; region++) {
+                if (compressed[region] != null) {
+                    out.writeLong(offset);
+                    out.writeInt(compressed[region].length);
+                    out.writeInt(0);
+                    offset += compressed[region].length;
+                } else {
+                    boolean empty = uniformCodes[region] == Tile.EMPTY_CODE;
+                    out.writeLong(empty ? 0 : uniformCodes[region]);
+                    out.writeInt(0);
+                    out.writeInt(empty ? FLAG_EMPTY : FLAG_UNIFORM);
+                }
+            }
+            for (byte[] data : compressed) {
+                if (data != null) {
+                    out.write(data);
+                }
+            }
+        }
+    }
+
+    public static void export(LevelData level, File file) throws IOException {
+        export(level.snapshot(), file, DEFAULT_REGION_SIZE);
+    }
+
+    // ------------------ helpers
+
+    private static boolean isUniform(int[] codes) {
+        for (int code : codes) {
+            if (code != codes[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] toPlanes(int[] codes) {
+        byte[] planes = new byte[codes.length * 3];
+        for (int i = 0; i < codes.length; i++) {
+            planes[i] = (byte) (codes[i] >>> 16);
+            planes[codes.length + i] = (byte) (codes[i] >>> 8);
+            planes[2 * codes.length + i] = (byte) codes[i];
+        }
+        return planes;
+    }
+
+    static void fromPlanes(byte[] planes, int[] codes, int count) {
+        for (int i = 0; i < count; i++) {
+            codes[i] = (planes[i] & 0xFF) << 16 | (planes[count + i] & 0xFF) << 8 | (planes[2 * count + i] & 0xFF);
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+}
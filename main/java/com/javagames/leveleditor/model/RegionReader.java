@@ -0,0 +1,155 @@
+package com.javagames.leveleditor.model;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Reference reader for RegionFile exports. Only the header and index are read at open; every region is read
+// on demand with one positional read of its compressed bytes, which doesn't move a shared file position, so
+// regions can be paged in from several threads at once.
+public class RegionReader implements Closeable {
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int layers;
+    private final int regionSize;
+    private final int regionsWide;
+    private final int regionsHigh;
+    private final long[] offsets;           // per region: file offset, or the code of a uniform region
+    private final int[] lengths;
+    private final int[] flags;
+
+    public RegionReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readAt(ByteBuffer.allocate(RegionFile.HEADER_SIZE), 0);
+            if (header.getInt() != RegionFile.MAGIC) {
+                throw new IOException("Not a region file: " + file);
+            }
+            int version = header.getInt();
+            if (version != RegionFile.FORMAT_VERSION) {
+                throw new IOException("Unsupported region file version " + version);
+            }
+            this.width = header.getInt();
+            this.height = header.getInt();
+            this.layers = header.getInt();
+            this.regionSize = header.getInt();
+            this.regionsWide = header.getInt();
+            this.regionsHigh = header.getInt();
+            int regionCount = layers * regionsWide * regionsHigh;
+            ByteBuffer index = readAt(ByteBuffer.allocate(regionCount * RegionFile.ENTRY_SIZE), RegionFile.HEADER_SIZE);
+            this.offsets = new long[regionCount];
+            this.lengths = new int[regionCount];
+            this.flags = new int[regionCount];
+            for (int region = 0; region < regionCount; region++) {
+                offsets[region] = index.getLong();
+                lengths[region] = index.getInt();
+                flags[region] = index.getInt();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getLayers() {
+        return layers;
+    }
+
+    public int getRegionSize() {
+        return regionSize;
+    }
+
+    public int getRegionsWide() {
+        return regionsWide;
+    }
+
+    public int getRegionsHigh() {
+        return regionsHigh;
+    }
+
+    // regions on the right and bottom edges are clipped to the level
+    public int regionWidth(int rx) {
+        return Math.min(regionSize, width - rx * regionSize);
+    }
+
+    public int regionHeight(int ry) {
+        return Math.min(regionSize, height - ry * regionSize);
+    }
+
+    // true if every cell of the region is Tile.EMPTY_CODE, known without reading it
+    public boolean isEmpty(int layer, int rx, int ry) {
+        return (flags[regionOf(layer, rx, ry)] & RegionFile.FLAG_EMPTY) != 0;
+    }
+
+    // the region's codes, row major, regionWidth(rx) cells per row
+    public int[] readRegion(int layer, int rx, int ry) throws IOException {
+        return readRegion(layer, rx, ry, new int[regionWidth(rx) * regionHeight(ry)]);
+    }
+
+    // same, into dst (at least regionWidth(rx) * regionHeight(ry) long) - so a pager can reuse its buffers
+    public int[] readRegion(int layer, int rx, int ry, int[] dst) throws IOException {
+        int region = regionOf(layer, rx, ry);
+        int count = regionWidth(rx) * regionHeight(ry);
+        if ((flags[region] & RegionFile.FLAG_EMPTY) != 0) {
+            Arrays.fill(dst, 0, count, Tile.EMPTY_CODE);
+        } else if ((flags[region] & RegionFile.FLAG_UNIFORM) != 0) {
+            Arrays.fill(dst, 0, count, (int) offsets[region]);
+        } else {
+            byte[] compressed = readAt(ByteBuffer.allocate(lengths[region]), offsets[region]).array();
+            byte[] planes = new byte[count * 3];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                if (inflater.inflate(planes) != planes.length || !inflater.finished()) {
+                    throw new IOException("Corrupt region " + rx + "," + ry + " of layer " + layer);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt region " + rx + "," + ry + " of layer " + layer, e);
+            } finally {
+                inflater.end();
+            }
+            RegionFile.fromPlanes(planes, dst, count);
+        }
+        return dst;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ------------------ helpers
+
+    private int regionOf(int layer, int rx, int ry) {
+        if (layer < 0 || layer >= layers || rx < 0 || rx >= regionsWide || ry < 0 || ry >= regionsHigh) {
+            throw new IndexOutOfBoundsException("No region " + rx + "," + ry + " in layer " + layer);
+        }
+        return (layer * regionsHigh + ry) * regionsWide + rx;
+    }
+
+    private ByteBuffer readAt(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Region file is truncated");
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,111 @@
+package com.javagames.leveleditor.model;
+
+import com.javagames.leveleditor.exceptions.InvalidLevelFileException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Animated palette tiles (water, lava, torches): a tile code placed on the level shows a cycle of frame codes,
+// each for the same number of milliseconds. Stored with the palette, in "palette.anim.xml" next to
+// "palette.png". All animations run off one shared clock, so the same code always shows the same frame.
+public class TileAnimations {
+    private static final String ANIMATIONS_ELEMENT = "TileAnimations";
+    private static final String ANIMATION_ELEMENT = "Animation";
+    private static final String CODE_ATTRIBUTE = "code";
+    private static final String FRAME_MS_ATTRIBUTE = "frameMs";
+    private static final String FRAMES_ATTRIBUTE = "frames";
+    private static final String ANIMATIONS_SUFFIX = ".anim.xml";
+
+    private final List<Animation> animations;
+    private final int[] animationOf;        // tile code -> index into animations, or -1; codes past the end: -1
+
+    private record Animation(int code, int frameMs, int[] frames) {}
+
+    private TileAnimations(List<Animation> animations) {
+        this.animations = animations;
+        int maxCode = animations.stream().mapToInt(Animation::code).max().orElse(-1);
+        this.animationOf = new int[maxCode + 1];
+        Arrays.fill(animationOf, -1);
+        for (int i = 0; i < animations.size(); i++) {
+            animationOf[animations.get(i).code()] = i;
+        }
+    }
+
+    public static File fileFor(File paletteFile) {
+        return LevelData.siblingFile(paletteFile, ANIMATIONS_SUFFIX);
+    }
+
+    // reads the palette's animations, or returns null if it has none
+    public static TileAnimations forPalette(File paletteFile) throws IOException {
+        File file = fileFor(paletteFile);
+        return file.isFile() ? load(file) : null;
+    }
+
+    /*  XML Format:
+        <TileAnimations>
+          <Animation code="40" frameMs="150" frames="40 41 42 43"/>     code 40 cycles through 4 frames
+        </TileAnimations>
+     */
+    public static TileAnimations load(File file) throws IOException {
+        try {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            DocumentBuilder db = dbf.newDocumentBuilder();
+            Document doc = db.parse(file);
+            doc.getDocumentElement().normalize();
+            if (!ANIMATIONS_ELEMENT.equals(doc.getDocumentElement().getTagName())) {
+                throw new InvalidLevelFileException(file);
+            }
+            List<Animation> animations = new ArrayList<>();
+            NodeList animationNodes = doc.getElementsByTagName(ANIMATION_ELEMENT);
+            for (int i = 0; i < animationNodes.getLength(); i++) {
+                Element animation = (Element) animationNodes.item(i);
+                int code = Integer.parseInt(animation.getAttribute(CODE_ATTRIBUTE));
+                int frameMs = Integer.parseInt(animation.getAttribute(FRAME_MS_ATTRIBUTE));
+                int[] frames = Arrays.stream(animation.getAttribute(FRAMES_ATTRIBUTE).trim().split("\\s+"))
+                        .mapToInt(Integer::parseInt).toArray();
+                if (code < 0 || code >= Tile.EMPTY_CODE || frameMs <= 0) {
+                    throw new IllegalArgumentException("bad animation for tile " + code);
+                }
+                animations.add(new Animation(code, frameMs, frames));
+            }
+            return new TileAnimations(animations);
+        } catch (IllegalArgumentException | ParserConfigurationException | SAXException e) {
+            throw new InvalidLevelFileException(file, e);
+        }
+    }
+
+    // ------------------ queries
+
+    public boolean isAnimated(int code) {
+        return code >= 0 && code < animationOf.length && animationOf[code] >= 0;
+    }
+
+    // the code shown for code at timeMs (on the shared clock); codes that aren't animated show themselves
+    public int frameCode(int code, long timeMs) {
+        if (!isAnimated(code)) {
+            return code;
+        }
+        Animation animation = animations.get(animationOf[code]);
+        return animation.frames()[(int) ((timeMs / animation.frameMs()) % animation.frames().length)];
+    }
+
+    // true if any animation shows a different frame at toMs than it did at fromMs
+    public boolean framesChanged(long fromMs, long toMs) {
+        for (Animation animation : animations) {
+            if (fromMs / animation.frameMs() != toMs / animation.frameMs() && animation.frames().length > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
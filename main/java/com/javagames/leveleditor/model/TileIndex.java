@@ -0,0 +1,174 @@
+package com.javagames.leveleditor.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+// Maps every tile code used in a level to the cells it occupies, one bitmap per layer. Kept up to date by
+// LevelData on every edit so that "where is tile N used?" and replace-all cost O(occurrences), not O(map).
+// Empty cells (Tile.EMPTY_CODE) are not indexed.
+public class TileIndex {
+    private static final CellBitmap NO_CELLS = CellBitmap.EMPTY;
+
+    private final Map<Integer, CellBitmap[]> cellsByCode = new HashMap<>();
+    private int layers;
+
+    public TileIndex(int layers) {
+        this.layers = layers;
+    }
+
+    // builds an index over raw layer data (codes must already have their alpha byte masked off); the layers are
+    // indexed in parallel, each into its own index, and then merged
+    public static TileIndex of(int[][] data) {
+        TileIndex index = new TileIndex(data.length);
+        List<TileIndex> layerIndexes = IntStream.range(0, data.length).parallel().mapToObj(layer -> {
+            TileIndex layerIndex = new TileIndex(data.length);
+            layerIndex.addLayerCells(layer, data[layer]);
+            return layerIndex;
+        }).toList();
+        for (int layer = 0; layer < data.length; layer++) {
+            int l = layer;
+            layerIndexes.get(layer).cellsByCode.forEach((code, byLayer) -> index.addAll(code, l, byLayer[l], true));
+        }
+        return index;
+    }
+
+    void addLayerCells(int layer, int[] cells) {
+        int lastCode = Tile.EMPTY_CODE;
+        CellBitmap lastBitmap = null;
+        for (int i = 0; i < cells.length; i++) {
+            int code = cells[i];
+            if (code != Tile.EMPTY_CODE) {
+                if (code != lastCode || lastBitmap == null) {   // runs of the same code skip the map lookup
+                    lastCode = code;
+                    lastBitmap = bitmapFor(code, layer);
+                }
+                lastBitmap.add(i);
+            }
+        }
+    }
+
+    // ------------------ updates (called by LevelData)
+
+    void onTileChanged(int layer, int cell, int oldCode, int newCode) {
+        if (oldCode == newCode) {
+            return;
+        }
+        if (oldCode != Tile.EMPTY_CODE) {
+            CellBitmap[] byLayer = cellsByCode.get(oldCode);
+            if (byLayer != null && byLayer[layer] != null) {
+                byLayer[layer].remove(cell);
+                if (byLayer[layer].isEmpty()) {
+                    byLayer[layer] = null;
+                    removeCodeIfUnused(oldCode, byLayer);
+                }
+            }
+        }
+        if (newCode != Tile.EMPTY_CODE) {
+            bitmapFor(newCode, layer).add(cell);
+        }
+    }
+
+    // detaches and returns all cells of code on a layer (used by replace-all to move them in one step); the
+    // result is no longer referenced by the index
+    CellBitmap removeAll(int code, int layer) {
+        CellBitmap[] byLayer = cellsByCode.get(code);
+        if (byLayer == null || byLayer[layer] == null) {
+            return NO_CELLS;
+        }
+        CellBitmap cells = byLayer[layer];
+        byLayer[layer] = null;
+        removeCodeIfUnused(code, byLayer);
+        return cells;
+    }
+
+    // adds a copy of cells, so the caller's bitmap never becomes part of the index
+    void addAll(int code, int layer, CellBitmap cells) {
+        addAll(code, layer, cells, false);
+    }
+
+    // adopt: cells may become the index's own bitmap (when nothing else holds it, as in of())
+    private void addAll(int code, int layer, CellBitmap cells, boolean adopt) {
+        if (code != Tile.EMPTY_CODE && !cells.isEmpty()) {
+            CellBitmap[] byLayer = cellsByCode.computeIfAbsent(code, c -> new CellBitmap[layers]);
+            if (byLayer[layer] == null) {
+                byLayer[layer] = adopt ? cells : cells.copy();
+            } else {
+                byLayer[layer].or(cells);
+            }
+        }
+    }
+
+    void addLayer() {
+        layers++;
+        cellsByCode.replaceAll((code, byLayer) -> Arrays.copyOf(byLayer, layers));
+    }
+
+    // ------------------ queries
+
+    public int getLayers() {
+        return layers;
+    }
+
+    public boolean contains(int code) {
+        return cellsByCode.containsKey(code);
+    }
+
+    public int count(int code) {
+        CellBitmap[] byLayer = cellsByCode.get(code);
+        int count = 0;
+        if (byLayer != null) {
+            for (CellBitmap cells : byLayer) {
+                count += cells != null ? cells.cardinality() : 0;
+            }
+        }
+        return count;
+    }
+
+    public int count(int code, int layer) {
+        return occurrences(code, layer).cardinality();
+    }
+
+    // the returned bitmap is live and must not be modified by the caller
+    public CellBitmap occurrences(int code, int layer) {
+        CellBitmap[] byLayer = cellsByCode.get(code);
+        return byLayer != null && byLayer[layer] != null ? byLayer[layer] : NO_CELLS;
+    }
+
+    // all codes in use, in ascending order
+    public int[] codes() {
+        return cellsByCode.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    // approximate bytes held by the bitmaps of every code and layer
+    public long retainedBytes() {
+        long bytes = 0;
+        for (CellBitmap[] byLayer : cellsByCode.values()) {
+            for (CellBitmap cells : byLayer) {
+                if (cells != null) {
+                    bytes += cells.retainedBytes();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private CellBitmap bitmapFor(int code, int layer) {
+        CellBitmap[] byLayer = cellsByCode.computeIfAbsent(code, c -> new CellBitmap[layers]);
+        if (byLayer[layer] == null) {
+            byLayer[layer] = new CellBitmap();
+        }
+        return byLayer[layer];
+    }
+
+    private void removeCodeIfUnused(int code, CellBitmap[] byLayer) {
+        for (CellBitmap cells : byLayer) {
+            if (cells != null) {
+                return;
+            }
+        }
+        cellsByCode.remove(code);
+    }
+}
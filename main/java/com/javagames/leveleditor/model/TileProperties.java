@@ -0,0 +1,184 @@
+package com.javagames.leveleditor.model;
+
+import com.javagames.leveleditor.exceptions.InvalidLevelFileException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Gameplay flags of every palette tile (solid, hazard, ...), one packed int of property bits per tile code.
+// Stored with the palette, in "palette.tiles.xml" next to "palette.png", so every level using the palette
+// shares them.
+public class TileProperties {
+    public static final int MAX_PROPERTIES = 32;
+    private static final List<String> DEFAULT_NAMES = List.of("solid", "hazard", "ladder", "one-way");
+    private static final String PROPERTIES_ELEMENT = "TileProperties";
+    private static final String PROPERTY_ELEMENT = "Property";
+    private static final String TILE_ELEMENT = "Tile";
+    private static final String NAME_ATTRIBUTE = "name";
+    private static final String CODE_ATTRIBUTE = "code";
+    private static final String FLAGS_ATTRIBUTE = "properties";
+    private static final String PROPERTIES_SUFFIX = ".tiles.xml";
+
+    private final List<String> names;       // property bit -> name
+    private int[] flags = new int[0];       // tile code -> property bits; codes past the end have none
+
+    public TileProperties() {
+        this(DEFAULT_NAMES);
+    }
+
+    public TileProperties(List<String> names) {
+        if (names.size() > MAX_PROPERTIES) {
+            throw new IllegalArgumentException("at most " + MAX_PROPERTIES + " tile properties are supported");
+        }
+        this.names = List.copyOf(names);
+    }
+
+    public static File fileFor(File paletteFile) {
+        return LevelData.siblingFile(paletteFile, PROPERTIES_SUFFIX);
+    }
+
+    // reads the palette's properties; a palette without a properties file gets the default properties, unset
+    public static TileProperties forPalette(File paletteFile) throws IOException {
+        File file = fileFor(paletteFile);
+        return file.isFile() ? load(file) : new TileProperties();
+    }
+
+    /*  XML Format:
+        <TileProperties>
+          <Property name="solid"/>                  bit 0
+          <Property name="hazard"/>                 bit 1
+          <Tile code="12" properties="solid hazard"/>
+        </TileProperties>
+     */
+    public static TileProperties load(File file) throws IOException {
+        try {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            DocumentBuilder db = dbf.newDocumentBuilder();
+            Document doc = db.parse(file);
+            doc.getDocumentElement().normalize();
+            if (!PROPERTIES_ELEMENT.equals(doc.getDocumentElement().getTagName())) {
+                throw new InvalidLevelFileException(file);
+            }
+            List<String> names = new ArrayList<>();
+            NodeList propertyNodes = doc.getElementsByTagName(PROPERTY_ELEMENT);
+            for (int i = 0; i < propertyNodes.getLength(); i++) {
+                names.add(((Element) propertyNodes.item(i)).getAttribute(NAME_ATTRIBUTE));
+            }
+            TileProperties properties = new TileProperties(names);
+            NodeList tileNodes = doc.getElementsByTagName(TILE_ELEMENT);
+            for (int i = 0; i < tileNodes.getLength(); i++) {
+                Element tile = (Element) tileNodes.item(i);
+                int code = Integer.parseInt(tile.getAttribute(CODE_ATTRIBUTE));
+                for (String name : tile.getAttribute(FLAGS_ATTRIBUTE).trim().split("\\s+")) {
+                    if (!name.isEmpty()) {
+                        int bit = properties.bitOf(name);
+                        if (bit < 0) {
+                            throw new IllegalArgumentException("unknown tile property '" + name + "'");
+                        }
+                        properties.set(code, bit, true);
+                    }
+                }
+            }
+            return properties;
+        } catch (IllegalArgumentException | ParserConfigurationException | SAXException e) {
+            throw new InvalidLevelFileException(file, e);
+        }
+    }
+
+    public void save(File file) throws IOException {
+        try {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            DocumentBuilder db = dbf.newDocumentBuilder();
+            Document doc = db.newDocument();
+            Element root = doc.createElement(PROPERTIES_ELEMENT);
+            doc.appendChild(root);
+            for (String name : names) {
+                Element property = doc.createElement(PROPERTY_ELEMENT);
+                property.setAttribute(NAME_ATTRIBUTE, name);
+                root.appendChild(property);
+            }
+            for (int code = 0; code < flags.length; code++) {
+                if (flags[code] != 0) {
+                    Element tile = doc.createElement(TILE_ELEMENT);
+                    tile.setAttribute(CODE_ATTRIBUTE, Integer.toString(code));
+                    tile.setAttribute(FLAGS_ATTRIBUTE, String.join(" ", namesOf(flags[code])));
+                    root.appendChild(tile);
+                }
+            }
+            try (OutputStream os = new FileOutputStream(file);
+                 BufferedOutputStream bos = new BufferedOutputStream(os)) {
+                TransformerFactory tf = TransformerFactory.newInstance();
+                Transformer transformer = tf.newTransformer();
+                transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+                transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+                transformer.transform(new DOMSource(doc), new StreamResult(bos));
+            }
+        } catch (TransformerException | ParserConfigurationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // ------------------ queries
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    // property bit of a name, or -1
+    public int bitOf(String name) {
+        return names.indexOf(name);
+    }
+
+    // bits of the named properties that exist; unknown names are ignored
+    public int maskOf(String... propertyNames) {
+        int mask = 0;
+        for (String name : propertyNames) {
+            int bit = bitOf(name);
+            mask |= bit >= 0 ? 1 << bit : 0;
+        }
+        return mask;
+    }
+
+    public int getFlags(int code) {
+        return code >= 0 && code < flags.length ? flags[code] : 0;
+    }
+
+    public boolean has(int code, int bit) {
+        return (getFlags(code) & (1 << bit)) != 0;
+    }
+
+    public void set(int code, int bit, boolean on) {
+        if (code >= flags.length) {
+            if (!on) {
+                return;
+            }
+            flags = Arrays.copyOf(flags, Math.max(code + 1, flags.length * 2));
+        }
+        flags[code] = on ? flags[code] | (1 << bit) : flags[code] & ~(1 << bit);
+    }
+
+    private List<String> namesOf(int bits) {
+        List<String> result = new ArrayList<>();
+        for (int bit = 0; bit < names.size(); bit++) {
+            if ((bits & (1 << bit)) != 0) {
+                result.add(names.get(bit));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,13 @@
+package com.javagames.leveleditor.model;
+
+// A rectangular block of tile codes (in tiles, not pixels) copied out of one or more consecutive layers.
+// codes[layer] holds width * height codes in row-major order.
+public record TileRegion(int width, int height, int[][] codes) {
+    public static TileRegion of(int width, int height, int layers) {
+        return new TileRegion(width, height, new int[layers][width * height]);
+    }
+
+    public int layers() {
+        return codes.length;
+    }
+}
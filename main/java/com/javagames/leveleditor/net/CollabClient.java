@@ -0,0 +1,271 @@
+package com.javagames.leveleditor.net;
+
+import com.javagames.leveleditor.model.ImageSize;
+import com.javagames.leveleditor.model.LevelChangeEvent;
+import com.javagames.leveleditor.model.LevelChangeListener;
+import com.javagames.leveleditor.model.LevelData;
+import com.javagames.leveleditor.net.DeltaProtocol.Deltas;
+import com.javagames.leveleditor.net.DeltaProtocol.FrameBuilder;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// One editor's connection to a CollabServer. Committed local tile edits are sent as a DELTAS batch each; the
+// server's merged updates are applied to the local level on the owner's executor (the EDT in the editor),
+// which must also be the thread the level is edited on. Cells with local edits the server hasn't merged yet
+// are left alone, since those edits will reach the server after the update and win there too - so every
+// client ends up with the server's cells without flickering back to older codes. Resizing the level or adding
+// a layer can't be shared, so the client disconnects if either happens while it's connected. Frames are
+// written by a thread of their own, so a slow server never blocks the owner's thread.
+public class CollabClient implements LevelChangeListener, Closeable {
+    private final LevelData level;
+    private final SocketChannel channel;
+    private final Executor owner;
+    private final Thread reader;
+    private final Thread writer;
+    private final BlockingQueue<ByteBuffer> outgoing = new LinkedBlockingQueue<>();
+    private final AtomicBoolean disconnected = new AtomicBoolean();
+    private final int clientId;
+    private int[][] shared;                 // the cells as last sent or received - local edits are diffed to it
+    private final Map<Long, Long> pending = new HashMap<>();    // cell -> last batch that changed it
+    private long batchesSent;
+    private volatile long sequence;         // last update applied
+    private boolean applying;               // true while applying remote codes - they aren't sent back
+    private Runnable onDisconnected;
+
+    // connects and replaces the level's cells with the session's (resizing it if needed), on the calling
+    // thread, which must own the level
+    public CollabClient(LevelData level, InetSocketAddress server, Executor owner) throws IOException {
+        this.level = level;
+        this.owner = owner;
+        this.channel = SocketChannel.open(server);
+        channel.socket().setTcpNoDelay(true);
+        try {
+            ByteBuffer hello = readFrame(DeltaProtocol.HELLO);
+            this.clientId = hello.getInt();
+            this.sequence = hello.getLong();
+            applyHello(hello);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        level.addLevelChangeListener(this);
+        this.reader = new Thread(this::readUpdates, "collab-client-" + clientId);
+        reader.setDaemon(true);
+        this.writer = new Thread(this::writeDeltas, "collab-client-writer-" + clientId);
+        writer.setDaemon(true);
+        reader.start();
+        writer.start();
+    }
+
+    public int getClientId() {
+        return clientId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public LevelData getLevel() {
+        return level;
+    }
+
+    // run on the owner's executor if the server goes away (not after close())
+    public void setOnDisconnected(Runnable onDisconnected) {
+        this.onDisconnected = onDisconnected;
+    }
+
+    @Override
+    public void close() throws IOException {
+        level.removeLevelChangeListener(this);
+        onDisconnected = null;
+        channel.close();
+        writer.interrupt();
+    }
+
+    // ------------------ local edits
+
+    @Override
+    public void onLevelChanged(LevelChangeEvent event) {
+        if (applying || !channel.isOpen()) {
+            return;
+        }
+        int width = level.getDataSize().width();
+        if (level.getLayers() != shared.length || shared[0].length != width * level.getDataSize().height()) {
+            disconnected();                 // resized or a layer added: cell indices no longer match the session
+            return;
+        } else if (event.structural()) {
+            return;
+        }
+        Deltas deltas = new Deltas();
+        for (int layer = 0; layer < event.layers(); layer++) {
+            int l = layer;
+            event.dirty(layer).forEachCell(width, index -> {
+                int code = level.getTile(l, index);
+                if (shared[l][index] != code) {         // dirty rectangles can be bounding boxes
+                    shared[l][index] = code;
+                    deltas.add(l, index, code);
+                }
+            });
+        }
+        if (deltas.size() == 0) {
+            return;
+        }
+        long batch = ++batchesSent;
+        for (int i = 0; i < deltas.size(); i++) {
+            pending.put((long) deltas.layer(i) << 32 | deltas.index(i), batch);
+        }
+        FrameBuilder frame = new FrameBuilder(DeltaProtocol.DELTAS, 16 + deltas.size() * 4);
+        deltas.writeTo(frame);
+        outgoing.add(frame.finish());
+    }
+
+    // sends the queued frames in order; blocking writes are fine here, off the owner's thread
+    private void writeDeltas() {
+        try {
+            while (channel.isOpen()) {
+                ByteBuffer out = outgoing.take();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+        } catch (InterruptedException ignored) {
+            // closed
+        } catch (IOException e) {
+            if (channel.isOpen()) {
+                disconnected();
+            }
+        }
+    }
+
+    // ------------------ remote updates
+
+    private void readUpdates() {
+        try {
+            while (channel.isOpen()) {
+                ByteBuffer update = readFrame(DeltaProtocol.UPDATE);
+                long updateSequence = update.getLong();
+                long acked = DeltaProtocol.getVarint(update);
+                Deltas deltas = Deltas.readFrom(update);
+                owner.execute(() -> applyUpdate(updateSequence, acked, deltas));
+            }
+        } catch (IOException e) {
+            if (channel.isOpen()) {
+                disconnected();
+            }
+        }
+    }
+
+    private void applyUpdate(long updateSequence, long acked, Deltas deltas) {
+        for (Iterator<Long> it = pending.values().iterator(); it.hasNext(); ) {
+            if (it.next() <= acked) {
+                it.remove();                // merged by the server - this update has the final code
+            }
+        }
+        int width = level.getDataSize().width();
+        int cells = width * level.getDataSize().height();
+        applying = true;
+        level.begin();
+        try {
+            for (int i = 0; i < deltas.size(); i++) {
+                int layer = deltas.layer(i);
+                int index = deltas.index(i);
+                if (layer < shared.length && index < cells && !pending.containsKey((long) layer << 32 | index)) {
+                    shared[layer][index] = deltas.code(i);
+                    level.setTile(layer, index, deltas.code(i));
+                }
+            }
+        } finally {
+            level.commit();
+            applying = false;
+        }
+        sequence = updateSequence;
+    }
+
+    private void applyHello(ByteBuffer hello) throws IOException {
+        ImageSize dataSize = ImageSize.of(hello.getInt(), hello.getInt());
+        int layers = hello.getInt();
+        if (level.getLayers() > layers) {
+            throw new IOException("the session's level has fewer layers (" + layers + ") than this one");
+        }
+        applying = true;
+        level.begin();
+        try {
+            if (!level.getDataSize().equals(dataSize)) {
+                level.setDataSize(dataSize);
+            }
+            while (level.getLayers() < layers) {
+                level.addLayer();
+            }
+            // the cells follow in CELLS frames, layer by layer and in row order
+            int width = dataSize.width();
+            int cells = width * dataSize.height();
+            shared = new int[layers][cells];
+            for (int layer = 0; layer < layers; layer++) {
+                for (int y = 0; y < dataSize.height(); ) {
+                    ByteBuffer frame = readFrame(DeltaProtocol.CELLS);
+                    int rows = frame.remaining() >= 12 ? frame.getInt(8) : 0;
+                    if (rows < 1 || frame.getInt(0) != layer || frame.getInt(4) != y
+                            || frame.remaining() != 12 + (long) rows * width * Integer.BYTES) {
+                        throw new IOException("unexpected cells from the server");
+                    }
+                    frame.position(12);
+                    frame.asIntBuffer().get(shared[layer], y * width, rows * width);
+                    y += rows;
+                }
+                for (int i = 0; i < cells; i++) {
+                    level.setTile(layer, i, shared[layer][i]);
+                }
+            }
+        } finally {
+            level.commit();
+            applying = false;
+        }
+    }
+
+    // reports the lost connection once, whichever thread notices it first
+    private void disconnected() {
+        if (!disconnected.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+        writer.interrupt();
+        Runnable callback = onDisconnected;
+        if (callback != null) {
+            owner.execute(callback);
+        }
+    }
+
+    // ------------------ framing (blocking)
+
+    private ByteBuffer readFrame(byte type) throws IOException {
+        ByteBuffer header = readFully(ByteBuffer.allocate(5));
+        int length = header.getInt();
+        if (length < 1 || length > DeltaProtocol.MAX_FRAME || header.get() != type) {
+            throw new IOException("unexpected frame from the server");
+        }
+        return readFully(ByteBuffer.allocate(length - 1));
+    }
+
+    private ByteBuffer readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("server closed the connection");
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,352 @@
+package com.javagames.leveleditor.net;
+
+import com.javagames.leveleditor.model.ImageSize;
+import com.javagames.leveleditor.model.LevelData;
+import com.javagames.leveleditor.model.LevelSnapshot;
+import com.javagames.leveleditor.model.Tile;
+import com.javagames.leveleditor.net.DeltaProtocol.Deltas;
+import com.javagames.leveleditor.net.DeltaProtocol.FrameBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Collaboration server owning the authoritative copy of a level, so that several editors can work on it at
+// once. One thread runs a non-blocking selector loop: every batch of deltas read in a round of the loop is
+// applied to the level in arrival order, and the final codes of all cells they touched go out to every
+// client as one merged UPDATE. Only tile edits are shared - resizing, adding layers and objects are not.
+public class CollabServer implements Closeable {
+    public static final int DEFAULT_PORT = 47_300;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long MAX_PENDING_BYTES = 64L << 20;    // a client this far behind is dropped
+
+    private final LevelData level;          // guarded by itself; only written by the selector thread
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private final List<Connection> connections = new ArrayList<>();
+    private int nextClientId = 1;
+    private long sequence;                  // number of updates broadcast
+
+    // level is copied, so the host can keep editing its own copy (through a client, like everyone else)
+    public CollabServer(LevelData level, InetSocketAddress address) throws IOException {
+        this.level = copyOf(level.snapshot());
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.thread = new Thread(this::run, "collab-server");
+        thread.setDaemon(true);
+    }
+
+    public static CollabServer onLocalhost(LevelData level, int port) throws IOException {
+        return new CollabServer(level, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // the authoritative cells as they are now
+    public LevelSnapshot snapshot() {
+        synchronized (level) {
+            return level.snapshot();
+        }
+    }
+
+    public int getClientCount() {
+        synchronized (connections) {
+            return connections.size();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        selector.close();           // ends the loop
+        server.close();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (connections) {
+            for (Connection connection : connections) {
+                connection.channel.close();
+            }
+            connections.clear();
+        }
+    }
+
+    // ------------------ selector loop
+
+    private void run() {
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                Deltas round = new Deltas();
+                for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        } else if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                read(connection, round);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        }
+                    } catch (IOException e) {
+                        if (key.attachment() instanceof Connection connection) {
+                            drop(connection);
+                        }
+                    }
+                }
+                if (round.size() > 0) {
+                    broadcast(round);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (selector.isOpen()) {
+                System.out.println("Collaboration server stopped: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(nextClientId++, channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        synchronized (connections) {
+            connections.add(connection);
+        }
+        LevelSnapshot snapshot = snapshot();
+        connection.initial = snapshot;
+        connection.initialFrame = hello(connection.clientId, snapshot);
+        connection.flush();
+    }
+
+    private ByteBuffer hello(int clientId, LevelSnapshot snapshot) {
+        FrameBuilder frame = new FrameBuilder(DeltaProtocol.HELLO, 32);
+        frame.putInt(clientId);
+        frame.putLong(sequence);
+        frame.putInt(snapshot.getDataSize().width());
+        frame.putInt(snapshot.getDataSize().height());
+        frame.putInt(snapshot.getLayers());
+        return frame.finish();
+    }
+
+    // the CELLS frame of the rows of layer starting at firstRow
+    private static ByteBuffer cells(LevelSnapshot snapshot, int layer, int firstRow, int rows) {
+        int width = snapshot.getDataSize().width();
+        FrameBuilder frame = new FrameBuilder(DeltaProtocol.CELLS, 16 + rows * width * Integer.BYTES);
+        frame.putInt(layer);
+        frame.putInt(firstRow);
+        frame.putInt(rows);
+        int[] row = new int[width];
+        for (int y = firstRow; y < firstRow + rows; y++) {
+            snapshot.getRow(layer, 0, y, width, row, 0);
+            for (int code : row) {
+                frame.putInt(code);
+            }
+        }
+        return frame.finish();
+    }
+
+    // reads whatever arrived and applies every complete DELTAS frame; the touched cells are added to round
+    private void read(Connection connection, Deltas round) throws IOException {
+        if (connection.channel.read(connection.in) < 0) {
+            throw new IOException("closed by client");
+        }
+        ByteBuffer in = connection.in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length < 1 || length > DeltaProtocol.MAX_FRAME) {
+                throw new IOException("bad frame length " + length);
+            } else if (in.remaining() < 4 + length) {
+                if (4 + length > in.capacity()) {       // grow to fit the frame
+                    connection.in = ByteBuffer.allocate(4 + length).put(in);
+                    return;
+                }
+                break;
+            }
+            ByteBuffer frame = in.slice(in.position() + 5, length - 1);
+            byte type = in.get(in.position() + 4);
+            in.position(in.position() + 4 + length);
+            if (type != DeltaProtocol.DELTAS) {
+                throw new IOException("unexpected frame type " + type);
+            }
+            apply(Deltas.readFrom(frame), round);
+            connection.batches++;
+        }
+        in.compact();
+    }
+
+    private void apply(Deltas deltas, Deltas round) throws IOException {
+        synchronized (level) {
+            int cells = level.getDataSize().width() * level.getDataSize().height();
+            for (int i = 0; i < deltas.size(); i++) {
+                int code = deltas.code(i);
+                if (deltas.layer(i) >= level.getLayers() || deltas.index(i) < 0 || deltas.index(i) >= cells
+                        || (code < 0 || code > Tile.EMPTY_CODE)) {
+                    throw new IOException("delta outside the level");
+                }
+            }
+            level.begin();
+            try {
+                for (int i = 0; i < deltas.size(); i++) {
+                    level.setTile(deltas.layer(i), deltas.index(i), deltas.code(i));
+                    round.add(deltas.layer(i), deltas.index(i), deltas.code(i));
+                }
+            } finally {
+                level.commit();
+            }
+        }
+    }
+
+    // the round's cells with their final codes, encoded once and framed per client with its own ack count
+    private void broadcast(Deltas round) {
+        round.sort();
+        sequence++;
+        FrameBuilder deltas = new FrameBuilder(DeltaProtocol.UPDATE, 16 + round.size() * 4);
+        round.writeTo(deltas);
+        byte[] payload = deltas.payload();
+        for (Connection connection : List.copyOf(connections)) {
+            FrameBuilder frame = new FrameBuilder(DeltaProtocol.UPDATE, 24 + payload.length);
+            frame.putLong(sequence);
+            frame.putVarint(connection.batches);
+            frame.putBytes(payload, 0, payload.length);
+            try {
+                connection.send(frame.finish());
+            } catch (IOException e) {
+                drop(connection);
+            }
+        }
+    }
+
+    private void drop(Connection connection) {
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {}
+        synchronized (connections) {
+            connections.remove(connection);
+        }
+    }
+
+    private static LevelData copyOf(LevelSnapshot snapshot) {
+        ImageSize dataSize = snapshot.getDataSize();
+        LevelData copy = LevelData.forNewBlankCanvas(dataSize, snapshot.getTileSize(), snapshot.getLayers());
+        int cells = dataSize.width() * dataSize.height();
+        copy.begin();
+        try {
+            for (int layer = 0; layer < snapshot.getLayers(); layer++) {
+                for (int i = 0; i < cells; i++) {
+                    copy.setTile(layer, i, snapshot.getTile(layer, i));
+                }
+            }
+        } finally {
+            copy.commit();
+        }
+        return copy;
+    }
+
+    // one client: its unparsed input and the frames still waiting to be written. The level as of the connect
+    // goes out first, a CELLS frame at a time as the socket takes them, ahead of anything queued in out.
+    private class Connection {
+        final int clientId;
+        final SocketChannel channel;
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        LevelSnapshot initial;      // the level to send ahead of out, or null once it's all sent
+        ByteBuffer initialFrame;    // the HELLO or CELLS frame being written, or null
+        int initialLayer;           // where the next CELLS frame starts
+        int initialRow;
+        SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        long batches;               // DELTAS frames applied so far - acknowledged in every UPDATE
+        long pendingBytes;
+
+        Connection(int clientId, SocketChannel channel) {
+            this.clientId = clientId;
+            this.channel = channel;
+        }
+
+        void send(ByteBuffer frame) throws IOException {
+            out.add(frame);
+            pendingBytes += frame.remaining();
+            if (pendingBytes > MAX_PENDING_BYTES) {
+                throw new IOException("client " + clientId + " is not keeping up");
+            }
+            flush();
+        }
+
+        // writes as much as the socket takes and waits for OP_WRITE for the rest
+        void flush() throws IOException {
+            while (true) {
+                if (initialFrame == null && initial != null) {
+                    initialFrame = nextCellsFrame();
+                }
+                ByteBuffer frame = initialFrame != null ? initialFrame : out.peek();
+                if (frame == null) {
+                    break;
+                }
+                int written = channel.write(frame);
+                if (frame != initialFrame) {
+                    pendingBytes -= written;
+                }
+                if (frame.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (frame == initialFrame) {
+                    initialFrame = null;
+                } else {
+                    out.poll();
+                }
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        // the next frame of the initial cells, or null (and initial cleared) once every layer was sent
+        private ByteBuffer nextCellsFrame() {
+            int height = initial.getDataSize().height();
+            if (initialRow >= height) {
+                initialLayer++;
+                initialRow = 0;
+            }
+            if (initialLayer >= initial.getLayers() || height == 0) {
+                initial = null;
+                return null;
+            }
+            int rows = Math.min(DeltaProtocol.cellsFrameRows(initial.getDataSize().width()), height - initialRow);
+            ByteBuffer frame = cells(initial, initialLayer, initialRow, rows);
+            initialRow += rows;
+            return frame;
+        }
+    }
+}
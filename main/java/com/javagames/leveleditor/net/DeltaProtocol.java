@@ -0,0 +1,195 @@
+package com.javagames.leveleditor.net;
+
+import com.javagames.leveleditor.model.Tile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Wire format shared by CollabServer and CollabClient (big endian). Every frame is an int length (of the rest
+// of the frame), a type byte and a payload:
+//     HELLO   server -> client on connect: int client id, long sequence, int width, int height, int layers
+//     CELLS   server -> client right after HELLO, until every row of every layer was sent: int layer, int
+//             first row, int rows, then rows * width int codes - the level as of the HELLO's sequence
+//     DELTAS  client -> server: a batch of tile deltas, applied by the server as one transaction
+//     UPDATE  server -> every client: long sequence, varint count of the recipient's own batches merged so
+//             far, then the merged deltas (the final code of every cell changed since the previous update)
+// Deltas are (layer, index, code) triples sorted by layer then index and packed as varints: the layer, the
+// index as the zigzag difference from the previous delta's, and the code plus one so that empty cells
+// (Tile.EMPTY_CODE wraps to 0) take a single byte. A stroke of neighbouring cells costs about 3 bytes a cell.
+final class DeltaProtocol {
+    static final byte HELLO = 1;
+    static final byte DELTAS = 2;
+    static final byte UPDATE = 3;
+    static final byte CELLS = 4;
+    static final int MAX_FRAME = 256 << 20;     // largest frame either side accepts
+    static final int CELLS_FRAME_BYTES = 1 << 20;   // the initial cells go out in frames of about this size
+
+    // rows of a level width cells wide that go in one CELLS frame - at least one
+    static int cellsFrameRows(int width) {
+        return Math.max(1, CELLS_FRAME_BYTES / Math.max(1, width * Integer.BYTES));
+    }
+
+    private DeltaProtocol() {}
+
+    // a batch of deltas; cells may repeat until sort() keeps the last code set on each
+    static final class Deltas {
+        private long[] cells = new long[64];   // layer << 32 | index
+        private int[] codes = new int[64];
+        private int size;
+
+        void add(int layer, int index, int code) {
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, size * 2);
+                codes = Arrays.copyOf(codes, size * 2);
+            }
+            cells[size] = (long) layer << 32 | index;
+            codes[size++] = code;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int layer(int i) {
+            return (int) (cells[i] >>> 32);
+        }
+
+        int index(int i) {
+            return (int) cells[i];
+        }
+
+        int code(int i) {
+            return codes[i];
+        }
+
+        // orders by cell and drops all but the last delta of each cell
+        void sort() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> cells[a] != cells[b] ? Long.compare(cells[a], cells[b]) : Integer.compare(a, b));
+            long[] sortedCells = new long[Math.max(size, 1)];
+            int[] sortedCodes = new int[sortedCells.length];
+            int n = 0;
+            for (Integer i : order) {
+                if (n > 0 && sortedCells[n - 1] == cells[i]) {
+                    n--;                                // a later delta of the same cell wins
+                }
+                sortedCells[n] = cells[i];
+                sortedCodes[n++] = codes[i];
+            }
+            cells = sortedCells;
+            codes = sortedCodes;
+            size = n;
+        }
+
+        void writeTo(FrameBuilder frame) {
+            frame.putVarint(size);
+            int lastIndex = 0;
+            for (int i = 0; i < size; i++) {
+                frame.putVarint(layer(i));
+                frame.putVarint(zigzag(index(i) - lastIndex));
+                frame.putVarint((code(i) + 1) & Tile.EMPTY_CODE);
+                lastIndex = index(i);
+            }
+        }
+
+        static Deltas readFrom(ByteBuffer in) throws IOException {
+            Deltas deltas = new Deltas();
+            long count = getVarint(in);
+            int lastIndex = 0;
+            for (long i = 0; i < count; i++) {
+                int layer = (int) getVarint(in);
+                lastIndex += unzigzag(getVarint(in));
+                int code = ((int) getVarint(in) - 1) & Tile.EMPTY_CODE;
+                deltas.add(layer, lastIndex, code);
+            }
+            return deltas;
+        }
+    }
+
+    // a frame being written: the length is filled in by finish()
+    static final class FrameBuilder {
+        private byte[] bytes;
+        private int size = 5;
+
+        FrameBuilder(byte type, int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+            bytes[4] = type;
+        }
+
+        void putInt(int v) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (v >>> shift);
+            }
+        }
+
+        void putLong(long v) {
+            putInt((int) (v >>> 32));
+            putInt((int) v);
+        }
+
+        void putVarint(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte) v;
+        }
+
+        void putBytes(byte[] b, int offset, int length) {
+            ensure(length);
+            System.arraycopy(b, offset, bytes, size, length);
+            size += length;
+        }
+
+        // the bytes written after the type byte, e.g. to share one payload between several frames
+        byte[] payload() {
+            return Arrays.copyOfRange(bytes, 5, size);
+        }
+
+        ByteBuffer finish() {
+            int length = size - 4;
+            bytes[0] = (byte) (length >>> 24);
+            bytes[1] = (byte) (length >>> 16);
+            bytes[2] = (byte) (length >>> 8);
+            bytes[3] = (byte) length;
+            return ByteBuffer.wrap(bytes, 0, size);
+        }
+
+        private void ensure(int n) {
+            if (size + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + n));
+            }
+        }
+    }
+
+    static long getVarint(ByteBuffer in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!in.hasRemaining()) {
+                throw new IOException("truncated frame");
+            }
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    // small negative and positive differences both become small varints
+    private static long zigzag(int v) {
+        return Integer.toUnsignedLong((v << 1) ^ (v >> 31));
+    }
+
+    private static int unzigzag(long v) {
+        int u = (int) v;
+        return (u >>> 1) ^ -(u & 1);
+    }
+}
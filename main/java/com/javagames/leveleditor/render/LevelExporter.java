@@ -0,0 +1,36 @@
+package com.javagames.leveleditor.render;
+
+import com.javagames.leveleditor.model.LevelData;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+
+// Exports full resolution, flattened renders of levels (for wiki pages and QA image diffs). Can be run
+// without a display: java com.javagames.leveleditor.render.LevelExporter <level file> <png file>
+public final class LevelExporter {
+    private LevelExporter() {}
+
+    public static void exportPng(LevelRasterizer rasterizer, File pngFile) throws IOException {
+        try (OutputStream os = new FileOutputStream(pngFile);
+             BufferedOutputStream bos = new BufferedOutputStream(os)) {
+            rasterizer.writePng(bos, ForkJoinPool.commonPool());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("usage: LevelExporter <level file> <png file>");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        LevelData level = LevelData.forLoadingALevel(new File(args[0]));
+        LevelRasterizer rasterizer = LevelRasterizer.forLevel(level);
+        exportPng(rasterizer, new File(args[1]));
+        System.out.println("Exported " + rasterizer.getWidth() + " x " + rasterizer.getHeight() + " pixels in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,337 @@
+package com.javagames.leveleditor.render;
+
+import com.javagames.leveleditor.model.ImageSize;
+import com.javagames.leveleditor.model.LevelData;
+import com.javagames.leveleditor.model.LevelSnapshot;
+import com.javagames.leveleditor.model.Tile;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+// Headless renderer that flattens the visible layers of a level into opaque RGB pixels, straight from the
+// layer codes and the palette's pixel data (no Swing, no Graphics2D). Output is split into horizontal bands
+// of whole tile rows that are rendered in parallel on a fork-join pool. The canvas uses it too, to compose
+// zoomed out views (any scale, nearest pixel sampling) without a drawImage call per cell.
+public class LevelRasterizer {
+    private static final int BACKGROUND = 0xFFFFFFFF;  // matches the white canvas background
+    private static final int BAND_TILE_ROWS = 4;        // tile rows per band
+    private static final int SCALED_BAND_ROWS = 32;     // output rows per band when rendering at a scale
+    private static final long PNG_BUFFER_BYTES = 64L << 20;    // band buffers writePng may hold, whatever the cores
+    private static final byte TRANSPARENT = 0;          // palette tile kinds - lets blits skip or copy whole rows
+    private static final byte OPAQUE = 1;
+    private static final byte TRANSLUCENT = 2;
+
+    private final LevelSnapshot level;
+    private final boolean[] visibleLayers;
+    private final int levelWidth;
+    private final int levelHeight;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int[] palettePixels;
+    private final int paletteWidth;
+    private final int paletteTilesWide;
+    private final byte[] tileKinds;
+    private final BufferedImage paletteImage;
+    private final IntUnaryOperator codeMap;     // applied to every cell's code before drawing, or null
+
+    // visibleLayers may be null to render every layer
+    public LevelRasterizer(LevelSnapshot level, boolean[] visibleLayers) {
+        ImageSize dataSize = level.getDataSize();
+        ImageSize tileSize = level.getTileSize();
+        BufferedImage paletteImage = level.getPaletteImage();
+        this.level = level;
+        this.visibleLayers = visibleLayers;
+        this.levelWidth = dataSize.width();
+        this.levelHeight = dataSize.height();
+        this.tileWidth = tileSize.width();
+        this.tileHeight = tileSize.height();
+        this.paletteImage = paletteImage;
+        this.paletteWidth = paletteImage.getWidth();
+        this.palettePixels = paletteImage.getRGB(0, 0, paletteWidth, paletteImage.getHeight(), null, 0, paletteWidth);
+        this.paletteTilesWide = paletteWidth / tileWidth;
+        this.tileKinds = classifyTiles(paletteTilesWide * (paletteImage.getHeight() / tileHeight));
+        this.codeMap = null;
+    }
+
+    private LevelRasterizer(LevelRasterizer palette, LevelSnapshot level, IntUnaryOperator codeMap) {
+        this.level = level;
+        this.visibleLayers = palette.visibleLayers;
+        this.levelWidth = level.getDataSize().width();
+        this.levelHeight = level.getDataSize().height();
+        this.tileWidth = palette.tileWidth;
+        this.tileHeight = palette.tileHeight;
+        this.paletteImage = palette.paletteImage;
+        this.paletteWidth = palette.paletteWidth;
+        this.palettePixels = palette.palettePixels;
+        this.paletteTilesWide = palette.paletteTilesWide;
+        this.tileKinds = palette.tileKinds;
+        this.codeMap = codeMap;
+    }
+
+    // renders a snapshot, so the result can be rendered on another thread while editing continues
+    public static LevelRasterizer forLevel(LevelData level) {
+        return new LevelRasterizer(level.snapshot(), null);
+    }
+
+    // true if level has the palette and tile size this rasterizer was made for, so withLevel() can reuse it
+    public boolean isFor(LevelSnapshot level) {
+        return level.getPaletteImage() == paletteImage
+                && level.getTileSize().width() == tileWidth && level.getTileSize().height() == tileHeight;
+    }
+
+    // renders another snapshot with this rasterizer's palette data, which is expensive to extract; codeMap
+    // replaces each cell's code before drawing (e.g.: with its current animation frame) and may be null
+    public LevelRasterizer withLevel(LevelSnapshot level, IntUnaryOperator codeMap) {
+        return new LevelRasterizer(this, level, codeMap);
+    }
+
+    public int getWidth() {
+        return levelWidth * tileWidth;
+    }
+
+    public int getHeight() {
+        return levelHeight * tileHeight;
+    }
+
+    public int getBandHeight() {
+        return BAND_TILE_ROWS * tileHeight;
+    }
+
+    public int getBandCount() {
+        return (getHeight() + getBandHeight() - 1) / getBandHeight();
+    }
+
+    // ------------------ rendering
+
+    // renders the pixel rectangle (x0, y0, width, height) of the flattened level into dst (row stride scan)
+    public void renderArea(int x0, int y0, int width, int height, int[] dst, int offset, int scan) {
+        for (int row = 0; row < height; row++) {
+            int rowStart = offset + row * scan;
+            Arrays.fill(dst, rowStart, rowStart + width, BACKGROUND);
+        }
+        int x1 = Math.min(x0 + width, getWidth());
+        int y1 = Math.min(y0 + height, getHeight());
+        if (x1 <= x0 || y1 <= y0) {
+            return;
+        }
+        int tx0 = x0 / tileWidth;
+        int tx1 = (x1 - 1) / tileWidth;
+        int ty0 = y0 / tileHeight;
+        int ty1 = (y1 - 1) / tileHeight;
+        int tileCount = tileKinds.length;
+        int[] codes = new int[tx1 - tx0 + 1];
+        for (int layer = 0; layer < level.getLayers(); layer++) {
+            if (visibleLayers != null && !visibleLayers[layer]) {
+                continue;
+            }
+            for (int ty = ty0; ty <= ty1; ty++) {
+                int py0 = Math.max(ty * tileHeight, y0);
+                int py1 = Math.min(ty * tileHeight + tileHeight, y1);
+                level.getRow(layer, tx0, ty, codes.length, codes, 0);
+                mapCodes(codes);
+                for (int tx = tx0; tx <= tx1; tx++) {
+                    int code = codes[tx - tx0];
+                    if (code == Tile.EMPTY_CODE || code >= tileCount || tileKinds[code] == TRANSPARENT) {
+                        continue;
+                    }
+                    int px0 = Math.max(tx * tileWidth, x0);
+                    int px1 = Math.min(tx * tileWidth + tileWidth, x1);
+                    int srcX = (code % paletteTilesWide) * tileWidth + (px0 - tx * tileWidth);
+                    int srcY = (code / paletteTilesWide) * tileHeight + (py0 - ty * tileHeight);
+                    int span = px1 - px0;
+                    boolean opaque = tileKinds[code] == OPAQUE;
+                    for (int py = py0; py < py1; py++) {
+                        int srcPos = (srcY + py - py0) * paletteWidth + srcX;
+                        int dstPos = offset + (py - y0) * scan + (px0 - x0);
+                        if (opaque) {
+                            System.arraycopy(palettePixels, srcPos, dst, dstPos, span);
+                        } else {
+                            blendRow(palettePixels, srcPos, dst, dstPos, span);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // renders the pixel rectangle (x0, y0, width, height) of the level drawn at scale into dst, taking the
+    // level pixel under each output pixel's center like a scaled drawImage does; rows are split into bands
+    // that are rendered in parallel on pool
+    public void renderScaled(int x0, int y0, int width, int height, double scale,
+            int[] dst, int offset, int scan, ForkJoinPool pool) {
+        int bands = (height + SCALED_BAND_ROWS - 1) / SCALED_BAND_ROWS;
+        pool.invoke(new BandTask(0, bands, band -> {
+            int row = band * SCALED_BAND_ROWS;
+            renderScaledRows(x0, y0 + row, width, Math.min(SCALED_BAND_ROWS, height - row), scale,
+                    dst, offset + row * scan, scan);
+        }));
+    }
+
+    private void renderScaledRows(int x0, int y0, int width, int height, double scale,
+            int[] dst, int offset, int scan) {
+        int[] levelX = new int[width];              // level pixel column under each output column
+        int columns = 0;
+        for (int i = 0; i < width; i++) {
+            levelX[i] = (int) ((x0 + i + 0.5) / scale);
+            columns = levelX[i] < getWidth() ? i + 1 : columns;
+        }
+        int tx0 = columns > 0 ? levelX[0] / tileWidth : 0;
+        int tx1 = columns > 0 ? levelX[columns - 1] / tileWidth : -1;
+        int[][] codes = new int[level.getLayers()][tx1 - tx0 + 1];
+        int codesRow = -1;                          // tile row held in codes
+        int tileCount = tileKinds.length;
+        for (int row = 0; row < height; row++) {
+            int rowStart = offset + row * scan;
+            Arrays.fill(dst, rowStart, rowStart + width, BACKGROUND);
+            int levelY = (int) ((y0 + row + 0.5) / scale);
+            if (levelY >= getHeight() || columns == 0) {
+                continue;
+            }
+            int ty = levelY / tileHeight;
+            if (ty != codesRow) {                   // zoomed in, consecutive rows share a tile row
+                for (int layer = 0; layer < codes.length; layer++) {
+                    level.getRow(layer, tx0, ty, codes[layer].length, codes[layer], 0);
+                    mapCodes(codes[layer]);
+                }
+                codesRow = ty;
+            }
+            int srcRow = (levelY % tileHeight) * paletteWidth;
+            for (int layer = 0; layer < codes.length; layer++) {
+                if (visibleLayers != null && !visibleLayers[layer]) {
+                    continue;
+                }
+                int[] layerCodes = codes[layer];
+                for (int i = 0; i < columns; i++) {
+                    int code = layerCodes[levelX[i] / tileWidth - tx0];
+                    if (code == Tile.EMPTY_CODE || code >= tileCount || tileKinds[code] == TRANSPARENT) {
+                        continue;
+                    }
+                    int src = palettePixels[(code / paletteTilesWide) * tileHeight * paletteWidth + srcRow
+                            + (code % paletteTilesWide) * tileWidth + levelX[i] % tileWidth];
+                    dst[rowStart + i] = tileKinds[code] == OPAQUE ? src : blend(src, dst[rowStart + i]);
+                }
+            }
+        }
+    }
+
+    // renders the whole level into a new image, all bands in parallel
+    public BufferedImage renderImage(ForkJoinPool pool) {
+        BufferedImage image = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int width = getWidth();
+        pool.invoke(new BandTask(0, getBandCount(), band -> {
+            int y0 = band * getBandHeight();
+            int rows = Math.min(getBandHeight(), getHeight() - y0);
+            renderArea(0, y0, width, rows, pixels, y0 * width, width);
+        }));
+        return image;
+    }
+
+    // streams the whole level out as a png; only as many bands as fit in PNG_BUFFER_BYTES (and at least one)
+    // are held in memory at any time, so the output can be far larger than the heap. The stream is not closed.
+    public void writePng(OutputStream out, ForkJoinPool pool) throws IOException {
+        int width = getWidth();
+        int bandHeight = getBandHeight();
+        int bandCount = getBandCount();
+        long bandBytes = (long) width * bandHeight * Integer.BYTES;
+        int groupSize = (int) Math.max(1, Math.min(pool.getParallelism() * 2L, PNG_BUFFER_BYTES / bandBytes));
+        int[][] buffers = new int[Math.min(groupSize, bandCount)][width * bandHeight];
+        PngBandWriter png = new PngBandWriter(out, width, getHeight());
+        for (int first = 0; first < bandCount; first += groupSize) {
+            int firstBand = first;
+            int lastBand = Math.min(first + groupSize, bandCount);
+            pool.invoke(new BandTask(firstBand, lastBand, band -> {
+                int y0 = band * bandHeight;
+                renderArea(0, y0, width, Math.min(bandHeight, getHeight() - y0),
+                        buffers[band - firstBand], 0, width);
+            }));
+            for (int band = firstBand; band < lastBand; band++) {
+                png.writeRows(buffers[band - firstBand], 0, width, Math.min(bandHeight, getHeight() - band * bandHeight));
+            }
+        }
+        png.finish();
+    }
+
+    // ------------------ helpers
+
+    private void mapCodes(int[] codes) {
+        if (codeMap != null) {
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = codes[i] != Tile.EMPTY_CODE ? codeMap.applyAsInt(codes[i]) : codes[i];
+            }
+        }
+    }
+
+    private byte[] classifyTiles(int tileCount) {
+        byte[] kinds = new byte[tileCount];
+        for (int code = 0; code < tileCount; code++) {
+            int srcX = (code % paletteTilesWide) * tileWidth;
+            int srcY = (code / paletteTilesWide) * tileHeight;
+            boolean anyVisible = false;
+            boolean allOpaque = true;
+            for (int y = 0; y < tileHeight; y++) {
+                int pos = (srcY + y) * paletteWidth + srcX;
+                for (int x = 0; x < tileWidth; x++) {
+                    int alpha = palettePixels[pos + x] >>> 24;
+                    anyVisible |= alpha != 0;
+                    allOpaque &= alpha == 0xFF;
+                }
+            }
+            kinds[code] = allOpaque ? OPAQUE : anyVisible ? TRANSLUCENT : TRANSPARENT;
+        }
+        return kinds;
+    }
+
+    // src-over blend of non-premultiplied argb pixels onto an opaque destination
+    private static void blendRow(int[] src, int srcPos, int[] dst, int dstPos, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstPos + i] = blend(src[srcPos + i], dst[dstPos + i]);
+        }
+    }
+
+    static int blend(int s, int d) {
+        int a = s >>> 24;
+        if (a == 0xFF) {
+            return s;
+        } else if (a == 0) {
+            return d;
+        }
+        int na = 0xFF - a;
+        int r = (((s >> 16) & 0xFF) * a + ((d >> 16) & 0xFF) * na + 127) / 0xFF;
+        int g = (((s >> 8) & 0xFF) * a + ((d >> 8) & 0xFF) * na + 127) / 0xFF;
+        int b = ((s & 0xFF) * a + (d & 0xFF) * na + 127) / 0xFF;
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    // splits a range of bands in half until each task renders a single band
+    private static class BandTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer renderBand;
+
+        BandTask(int from, int to, IntConsumer renderBand) {
+            this.from = from;
+            this.to = to;
+            this.renderBand = renderBand;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    renderBand.accept(from);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BandTask(from, mid, renderBand), new BandTask(mid, to, renderBand));
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.javagames.leveleditor.render;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+// Minimal streaming png encoder (8 bit RGB, no interlace). Rows are pushed in top to bottom order and
+// compressed straight into IDAT chunks, so an image never has to exist in memory as a whole.
+public class PngBandWriter {
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int IDAT_CHUNK_SIZE = 64 * 1024;
+    private static final int FILTER_SUB = 1;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final byte[] rowBytes;
+    private final Deflater deflater;
+    private final DeflaterOutputStream idat;
+    private int rowsWritten;
+
+    public PngBandWriter(OutputStream out, int width, int height) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.rowBytes = new byte[1 + width * 3];
+        this.out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;      // bit depth
+        header[9] = 2;      // color type: truecolor
+        writeChunk("IHDR", header, header.length);
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        this.idat = new DeflaterOutputStream(new IdatOutputStream(), deflater, IDAT_CHUNK_SIZE);
+    }
+
+    // appends rows of opaque rgb pixels (alpha is ignored)
+    public void writeRows(int[] rgb, int offset, int scan, int rows) throws IOException {
+        for (int row = 0; row < rows; row++) {
+            int pos = offset + row * scan;
+            rowBytes[0] = FILTER_SUB;
+            int prev = 0;
+            for (int x = 0, i = 1; x < width; x++, i += 3) {
+                int p = rgb[pos + x];
+                rowBytes[i] = (byte) ((p >> 16) - (prev >> 16));
+                rowBytes[i + 1] = (byte) ((p >> 8) - (prev >> 8));
+                rowBytes[i + 2] = (byte) (p - prev);
+                prev = p;
+            }
+            idat.write(rowBytes);
+        }
+        rowsWritten += rows;
+    }
+
+    // flushes the compressed data and writes the end chunk; does not close the underlying stream
+    public void finish() throws IOException {
+        if (rowsWritten != height) {
+            throw new IOException("png expects " + height + " rows, but " + rowsWritten + " were written");
+        }
+        idat.finish();
+        idat.flush();
+        deflater.end();
+        writeChunk("IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void putInt(byte[] b, int pos, int value) {
+        b[pos] = (byte) (value >>> 24);
+        b[pos + 1] = (byte) (value >>> 16);
+        b[pos + 2] = (byte) (value >>> 8);
+        b[pos + 3] = (byte) value;
+    }
+
+    // collects deflated bytes and emits them as a sequence of IDAT chunks
+    private class IdatOutputStream extends OutputStream {
+        private final byte[] buffer = new byte[IDAT_CHUNK_SIZE];
+        private int count;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == buffer.length) {
+                    flush();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                writeChunk("IDAT", buffer, count);
+                count = 0;
+            }
+        }
+    }
+}
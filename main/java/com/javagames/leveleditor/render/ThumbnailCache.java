@@ -0,0 +1,270 @@
+package com.javagames.leveleditor.render;
+
+import com.javagames.leveleditor.model.ImageSize;
+import com.javagames.leveleditor.model.LevelData;
+import com.javagames.leveleditor.model.Tile;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+
+// Low detail level previews, generated on a background pool and kept in an on-disk cache so that browsing a
+// folder of levels is instant after the first visit. Each level's thumbnail lives in a directory of its own,
+// named after the level's path, in a file named after the modification time and size of the level, its data
+// png and its palette - so saving any of them invalidates the thumbnail.
+public class ThumbnailCache {
+    public static final int THUMBNAIL_WIDTH = 160;
+    public static final int THUMBNAIL_HEIGHT = 120;
+    private static final File DEFAULT_CACHE_DIR = new File(System.getProperty("user.home"), ".leveleditor/thumbnails");
+
+    private final File cacheDir;
+    private final ExecutorService pool;
+    private final Map<String, int[]> tileColorsByPalette = new ConcurrentHashMap<>();
+
+    public ThumbnailCache() {
+        this(DEFAULT_CACHE_DIR);
+    }
+
+    public ThumbnailCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+        this.pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread thread = new Thread(r, "thumbnail-loader");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    // loads (or generates and caches) the thumbnail on the pool and hands it to onLoaded - on the pool thread.
+    // Levels that can't be read are reported with a null image.
+    public Future<?> load(File levelFile, BiConsumer<File, BufferedImage> onLoaded) {
+        return pool.submit(() -> {
+            BufferedImage thumbnail;
+            try {
+                thumbnail = get(levelFile);
+            } catch (IOException e) {
+                thumbnail = null;
+            }
+            onLoaded.accept(levelFile, thumbnail);
+        });
+    }
+
+    public BufferedImage get(File levelFile) throws IOException {
+        LevelData.LevelHeader header = LevelData.readLevelHeader(levelFile);
+        File levelDir = new File(cacheDir, hash(levelFile.getAbsolutePath()));
+        File cached = new File(levelDir, hash(versionKey(levelFile, header)) + ".png");
+        if (cached.isFile()) {
+            BufferedImage image = ImageIO.read(cached);
+            if (image != null) {
+                return image;
+            }
+        }
+        BufferedImage thumbnail = generate(header);
+        store(levelDir, cached, thumbnail);
+        return thumbnail;
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // ------------------ generation
+
+    // one pixel per cell (every step-th cell of large levels), colored with the average color of its palette
+    // tile, then scaled to fit. Only the level's xml and data png are read - not the palette, which is decoded
+    // once per palette for its tile colors, nor the objects or a tile index.
+    private BufferedImage generate(LevelData.LevelHeader header) throws IOException {
+        ImageSize tileSize = header.tileSize();
+        File paletteFile = header.paletteFile();
+        int[] tileColors;
+        try {
+            tileColors = tileColorsByPalette.computeIfAbsent(
+                    paletteFile.getAbsolutePath() + "|" + paletteFile.lastModified() + "|" + tileSize,
+                    key -> averageTileColors(readImage(paletteFile), tileSize));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // data png: the layers stacked vertically, read at a step that leaves about 2 cells per thumbnail pixel
+        ImageSize dataSize = readImageSize(header.dataFile());
+        int width = dataSize.width();
+        int layerHeight = dataSize.height() / header.layers();
+        int step = Math.max(1, Math.min(width / (2 * THUMBNAIL_WIDTH), layerHeight / (2 * THUMBNAIL_HEIGHT)));
+        BufferedImage data = readImage(header.dataFile(), step);
+        int stepWidth = data.getWidth();
+        int stepHeight = (layerHeight + step - 1) / step;
+        int[] cells = new int[stepWidth * stepHeight];
+        Arrays.fill(cells, 0xFFFFFFFF);
+        int[] row = new int[stepWidth];
+        for (int layer = 0; layer < header.layers(); layer++) {
+            int firstRow = layer * layerHeight / step;      // the read rows nearest the layer's own rows
+            for (int y = 0; y < stepHeight && firstRow + y < data.getHeight(); y++) {
+                data.getRGB(0, firstRow + y, stepWidth, 1, row, 0, stepWidth);
+                for (int x = 0; x < stepWidth; x++) {
+                    int code = row[x] & Tile.EMPTY_CODE;
+                    if (code != Tile.EMPTY_CODE && code < tileColors.length) {
+                        cells[x + y * stepWidth] = LevelRasterizer.blend(tileColors[code], cells[x + y * stepWidth]);
+                    }
+                }
+            }
+        }
+        BufferedImage cellImage = new BufferedImage(stepWidth, stepHeight, BufferedImage.TYPE_INT_RGB);
+        cellImage.setRGB(0, 0, stepWidth, stepHeight, cells, 0, stepWidth);
+
+        // fit the level's true aspect ratio (tiles need not be square) into the thumbnail box
+        double levelWidth = (double) width * tileSize.width();
+        double levelHeight = (double) layerHeight * tileSize.height();
+        double fit = Math.min(THUMBNAIL_WIDTH / levelWidth, THUMBNAIL_HEIGHT / levelHeight);
+        return scaleDown(cellImage, Math.max(1, (int) (levelWidth * fit)), Math.max(1, (int) (levelHeight * fit)));
+    }
+
+    private static BufferedImage readImage(File file) {
+        try {
+            return readImage(file, 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // reads every step-th pixel of every step-th row, without decoding the whole image into memory
+    private static BufferedImage readImage(File file, int step) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = readerFor(in, file);
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageSize readImageSize(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = readerFor(in, file);
+            try {
+                return ImageSize.of(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageReader readerFor(ImageInputStream in, File file) throws IOException {
+        Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+        if (readers == null || !readers.hasNext()) {
+            throw new IOException("image file is missing or corrupted: " + file);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(in, true, true);
+        return reader;
+    }
+
+    private static int[] averageTileColors(BufferedImage palette, ImageSize tileSize) {
+        int tileWidth = tileSize.width();
+        int tileHeight = tileSize.height();
+        int tilesWide = palette.getWidth() / tileWidth;
+        int tilesHigh = palette.getHeight() / tileHeight;
+        int[] pixels = palette.getRGB(0, 0, palette.getWidth(), palette.getHeight(), null, 0, palette.getWidth());
+        int[] colors = new int[tilesWide * tilesHigh];
+        for (int code = 0; code < colors.length; code++) {
+            long a = 0;
+            long r = 0;
+            long g = 0;
+            long b = 0;
+            int x0 = (code % tilesWide) * tileWidth;
+            int y0 = (code / tilesWide) * tileHeight;
+            for (int y = y0; y < y0 + tileHeight; y++) {
+                for (int x = x0; x < x0 + tileWidth; x++) {
+                    int p = pixels[x + y * palette.getWidth()];
+                    int alpha = p >>> 24;
+                    a += alpha;
+                    r += (long) ((p >> 16) & 0xFF) * alpha;     // weight colors by coverage
+                    g += (long) ((p >> 8) & 0xFF) * alpha;
+                    b += (long) (p & 0xFF) * alpha;
+                }
+            }
+            int n = tileWidth * tileHeight;
+            colors[code] = a == 0 ? 0 : (int) (a / n) << 24 | (int) (r / a) << 16 | (int) (g / a) << 8 | (int) (b / a);
+        }
+        return colors;
+    }
+
+    // halves the image repeatedly with bilinear filtering before the last step to avoid aliasing
+    private static BufferedImage scaleDown(BufferedImage image, int width, int height) {
+        BufferedImage current = image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            if (w == current.getWidth() && h == current.getHeight()) {
+                w = width;
+                h = height;
+            }
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = next.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(current, 0, 0, w, h, null);
+            g2d.dispose();
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    // ------------------ cache files
+
+    private void store(File levelDir, File cached, BufferedImage thumbnail) {
+        if (!levelDir.isDirectory() && !levelDir.mkdirs()) {
+            return;                                     // cache is an optimization only - carry on without it
+        }
+        File[] stale = levelDir.listFiles();            // older versions of the same level - usually one
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+        try {
+            File temp = new File(levelDir, cached.getName() + ".tmp");
+            ImageIO.write(thumbnail, "png", temp);
+            if (!temp.renameTo(cached)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            System.out.println("Unable to cache thumbnail for " + cached + ": " + e.getMessage());
+        }
+    }
+
+    private static String versionKey(File levelFile, LevelData.LevelHeader header) {
+        return version(levelFile) + "|" + version(header.dataFile()) + "|" + version(header.paletteFile());
+    }
+
+    private static String version(File file) {
+        return file.lastModified() + "|" + file.length();
+    }
+
+    private static String hash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);         // every java platform is required to have SHA-1
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.javagames.leveleditor.render;
+
+import com.javagames.leveleditor.model.ImageSize;
+import com.javagames.leveleditor.model.Tile;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+// The palette converted once into the screen's own pixel format, so tile draws hit Java2D's direct blit
+// loops instead of a per-pixel conversion, and the image stays managed (cached by the pipeline) because
+// it's only ever drawn from. Draws into VolatileImages come from a VolatileImage copy of the atlas where the
+// pipeline can accelerate one; it's restored from the atlas whenever the device loses it. Without a
+// GraphicsConfiguration (headless) the atlas is a premultiplied INT_ARGB image, the fastest software source.
+public class TileAtlas {
+    private final GraphicsConfiguration gc;     // null when headless
+    private final BufferedImage atlas;
+    private final int transparency;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int tilesWide;
+    private final int tileCount;
+    private VolatileImage volatileAtlas;
+    private boolean volatileFailed;             // the pipeline can't accelerate it - don't try again
+    private Image source;                       // image drawn from between beginDraw() and endDraw()
+
+    public TileAtlas(BufferedImage palette, ImageSize tileSize, GraphicsConfiguration gc) {
+        this.gc = gc;
+        this.transparency = transparencyOf(palette);
+        this.tileWidth = tileSize.width();
+        this.tileHeight = tileSize.height();
+        this.tilesWide = palette.getWidth() / tileWidth;
+        this.tileCount = tilesWide * (palette.getHeight() / tileHeight);
+        this.atlas = gc != null
+                ? gc.createCompatibleImage(palette.getWidth(), palette.getHeight(), transparency)
+                : new BufferedImage(palette.getWidth(), palette.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2d = atlas.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.drawImage(palette, 0, 0, null);
+        g2d.dispose();
+    }
+
+    public boolean isFor(GraphicsConfiguration gc) {
+        return this.gc == gc;
+    }
+
+    public BufferedImage getImage() {
+        return atlas;
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    // copies edited tiles of a palette with the same layout into the atlas
+    public void updateTiles(BufferedImage palette, int[] codes) {
+        Graphics2D g2d = atlas.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        for (int code : codes) {
+            if (code < tileCount) {
+                int x = (code % tilesWide) * tileWidth;
+                int y = (code / tilesWide) * tileHeight;
+                g2d.drawImage(palette, x, y, x + tileWidth, y + tileHeight, x, y, x + tileWidth, y + tileHeight, null);
+            }
+        }
+        g2d.dispose();
+        if (volatileAtlas != null) {
+            volatileAtlas.flush();                  // restored from the atlas on its next use
+            volatileAtlas = null;
+        }
+    }
+
+    // ------------------ drawing
+
+    // picks the image to draw tiles from for a batch of draws into destination
+    public void beginDraw(Image destination) {
+        source = destination instanceof VolatileImage ? validVolatileAtlas() : atlas;
+    }
+
+    // returns true if the volatile source was lost while drawing - the batch has to be drawn again
+    public boolean endDraw() {
+        boolean lost = source instanceof VolatileImage image && image.contentsLost();
+        source = null;
+        return lost;
+    }
+
+    // draws a tile at (x, y) at its own size; empty or unknown codes draw nothing
+    public void drawTile(Graphics2D g2d, int code, int x, int y) {
+        drawTile(g2d, code, x, y, tileWidth, tileHeight);
+    }
+
+    public void drawTile(Graphics2D g2d, int code, int x, int y, int width, int height) {
+        if (code != Tile.EMPTY_CODE && code < tileCount) {
+            int sx = (code % tilesWide) * tileWidth;
+            int sy = (code / tilesWide) * tileHeight;
+            g2d.drawImage(source != null ? source : atlas, x, y, x + width, y + height,
+                    sx, sy, sx + tileWidth, sy + tileHeight, null);
+        }
+    }
+
+    public void flush() {
+        if (volatileAtlas != null) {
+            volatileAtlas.flush();
+            volatileAtlas = null;
+        }
+        atlas.flush();
+    }
+
+    private Image validVolatileAtlas() {
+        if (gc == null || volatileFailed) {
+            return atlas;
+        }
+        try {
+            if (volatileAtlas == null || volatileAtlas.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (volatileAtlas != null) {
+                    volatileAtlas.flush();
+                }
+                volatileAtlas = gc.createCompatibleVolatileImage(atlas.getWidth(), atlas.getHeight(),
+                        new ImageCapabilities(true), transparency);
+                restoreVolatileAtlas();
+            } else if (volatileAtlas.contentsLost()) {
+                restoreVolatileAtlas();
+            }
+            return volatileAtlas;
+        } catch (AWTException e) {
+            volatileFailed = true;                  // e.g.: larger than the largest texture
+            return atlas;
+        }
+    }
+
+    private void restoreVolatileAtlas() {
+        volatileAtlas.validate(gc);
+        Graphics2D g2d = volatileAtlas.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.drawImage(atlas, 0, 0, null);
+        g2d.dispose();
+    }
+
+    private static int transparencyOf(BufferedImage palette) {
+        if (!palette.getColorModel().hasAlpha()) {
+            return Transparency.OPAQUE;
+        }
+        int[] row = new int[palette.getWidth()];
+        int transparency = Transparency.OPAQUE;
+        for (int y = 0; y < palette.getHeight(); y++) {
+            palette.getRGB(0, y, row.length, 1, row, 0, row.length);
+            for (int argb : row) {
+                int alpha = argb >>> 24;
+                if (alpha != 0 && alpha != 0xFF) {
+                    return Transparency.TRANSLUCENT;
+                } else if (alpha == 0) {
+                    transparency = Transparency.BITMASK;
+                }
+            }
+        }
+        return transparency;
+    }
+}
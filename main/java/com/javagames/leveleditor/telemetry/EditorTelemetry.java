@@ -0,0 +1,136 @@
+package com.javagames.leveleditor.telemetry;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+// Memory footprint and I/O timings of the editor, published over JMX (jconsole, VisualVM, ...) so there's
+// something to look at when it runs out of memory or stalls. The timings are recorded where the work is
+// done; the footprint is measured by the editor on the EDT, which owns the data, and only read here.
+public final class EditorTelemetry implements EditorTelemetryMXBean {
+    public static final String OBJECT_NAME = "com.javagames.leveleditor:type=EditorTelemetry";
+    public static final Timing LEVEL_LOADS = new Timing("LevelData.forLoadingALevel");
+    public static final Timing LEVEL_SAVES = new Timing("LevelData.saveXmlLevelFile");
+    public static final Timing PALETTE_LOADS = new Timing("LevelData.readPaletteImage");
+    public static final Timing CANVAS_LOADS = new Timing("LevelCanvas.onLevelLoaded");
+    private static final EditorTelemetry INSTANCE = new EditorTelemetry();
+
+    private volatile long layerDataBytes;
+    private volatile long tileIndexBytes;
+    private volatile long undoHistoryBytes;
+    private volatile long tileCacheBytes;
+    private volatile long imageCacheBytes;
+    private volatile long paletteImageBytes;
+
+    private EditorTelemetry() {}
+
+    public static EditorTelemetry get() {
+        return INSTANCE;
+    }
+
+    // registers with the platform MBean server; a failure only costs the telemetry, so it's just reported
+    public static void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            System.out.println("Unable to register editor telemetry: " + e.getMessage());
+        }
+    }
+
+    public void setFootprint(long layerDataBytes, long tileIndexBytes, long undoHistoryBytes, long tileCacheBytes,
+            long imageCacheBytes, long paletteImageBytes) {
+        this.layerDataBytes = layerDataBytes;
+        this.tileIndexBytes = tileIndexBytes;
+        this.undoHistoryBytes = undoHistoryBytes;
+        this.tileCacheBytes = tileCacheBytes;
+        this.imageCacheBytes = imageCacheBytes;
+        this.paletteImageBytes = paletteImageBytes;
+    }
+
+    // approximate bytes of pixel data behind an image; images not in the Java heap are counted at 4 bytes a pixel
+    public static long imageBytes(Image image) {
+        if (image instanceof BufferedImage bufferedImage) {
+            DataBuffer buffer = bufferedImage.getRaster().getDataBuffer();
+            return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        } else if (image != null) {
+            return (long) Math.max(image.getWidth(null), 0) * Math.max(image.getHeight(null), 0) * 4;
+        }
+        return 0;
+    }
+
+    // ------------------ EditorTelemetryMXBean
+
+    @Override
+    public long getLayerDataBytes() {
+        return layerDataBytes;
+    }
+
+    @Override
+    public long getTileIndexBytes() {
+        return tileIndexBytes;
+    }
+
+    @Override
+    public long getUndoHistoryBytes() {
+        return undoHistoryBytes;
+    }
+
+    @Override
+    public long getTileCacheBytes() {
+        return tileCacheBytes;
+    }
+
+    @Override
+    public long getImageCacheBytes() {
+        return imageCacheBytes;
+    }
+
+    @Override
+    public long getPaletteImageBytes() {
+        return paletteImageBytes;
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        return heap().getUsed();
+    }
+
+    @Override
+    public long getHeapMaxBytes() {
+        MemoryUsage heap = heap();
+        return heap.getMax() >= 0 ? heap.getMax() : heap.getCommitted();
+    }
+
+    @Override
+    public Timing.Stats getLevelLoads() {
+        return LEVEL_LOADS.getStats();
+    }
+
+    @Override
+    public Timing.Stats getLevelSaves() {
+        return LEVEL_SAVES.getStats();
+    }
+
+    @Override
+    public Timing.Stats getPaletteLoads() {
+        return PALETTE_LOADS.getStats();
+    }
+
+    @Override
+    public Timing.Stats getCanvasLoads() {
+        return CANVAS_LOADS.getStats();
+    }
+
+    private static MemoryUsage heap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    }
+}
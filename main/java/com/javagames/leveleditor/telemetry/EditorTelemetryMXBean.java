@@ -0,0 +1,28 @@
+package com.javagames.leveleditor.telemetry;
+
+// Management interface of EditorTelemetry - registered as "com.javagames.leveleditor:type=EditorTelemetry"
+public interface EditorTelemetryMXBean {
+    long getLayerDataBytes();
+
+    long getTileIndexBytes();
+
+    long getUndoHistoryBytes();
+
+    long getTileCacheBytes();
+
+    long getImageCacheBytes();
+
+    long getPaletteImageBytes();
+
+    long getHeapUsedBytes();
+
+    long getHeapMaxBytes();
+
+    Timing.Stats getLevelLoads();
+
+    Timing.Stats getLevelSaves();
+
+    Timing.Stats getPaletteLoads();
+
+    Timing.Stats getCanvasLoads();
+}
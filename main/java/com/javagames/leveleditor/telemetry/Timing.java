@@ -0,0 +1,93 @@
+package com.javagames.leveleditor.telemetry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Count, total, maximum and a histogram of the durations of one kind of operation. Cheap and lock free, so it
+// can be recorded from any thread on every call.
+public class Timing {
+    // upper bounds of the histogram buckets, in milliseconds; the last bucket takes everything slower
+    private static final long[] BUCKET_BOUNDS_MILLIS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+
+    public Timing(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // records the time since startNanos (a System.nanoTime() value)
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && millis >= BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+    }
+
+    public Stats getStats() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Stats(count.sum(), totalNanos.sum(), maxNanos.get(), counts);
+    }
+
+    // a copy of a Timing's numbers, shown as one composite attribute by JMX clients
+    public static final class Stats {
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] bucketCounts;
+
+        Stats(long count, long totalNanos, long maxNanos, long[] bucketCounts) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.bucketCounts = bucketCounts;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getTotalMillis() {
+            return totalNanos / 1e6;
+        }
+
+        public double getMeanMillis() {
+            return count > 0 ? totalNanos / 1e6 / count : 0;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1e6;
+        }
+
+        // bucket i counts durations under getBucketBoundsMillis()[i] (and not under the one before);
+        // the extra last bucket counts the rest
+        public long[] getBucketCounts() {
+            return bucketCounts.clone();
+        }
+
+        public long[] getBucketBoundsMillis() {
+            return BUCKET_BOUNDS_MILLIS.clone();
+        }
+    }
+}
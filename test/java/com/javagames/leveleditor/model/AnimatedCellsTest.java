@@ -0,0 +1,51 @@
+package com.javagames.leveleditor.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+class AnimatedCellsTest {
+
+    @Test
+    void animatedCells_followEdits_works() throws IOException {
+        File file = Files.createTempFile("palette", ".anim.xml").toFile();
+        try {
+            Files.writeString(file.toPath(), """
+                    <TileAnimations>
+                      <Animation code="40" frameMs="100" frames="40 41 42"/>
+                    </TileAnimations>
+                    """);
+            TileAnimations animations = TileAnimations.load(file);
+            Assertions.assertEquals(41, animations.frameCode(40, 150));
+            Assertions.assertEquals(40, animations.frameCode(40, 300));
+            Assertions.assertEquals(7, animations.frameCode(7, 150));
+            Assertions.assertFalse(animations.framesChanged(100, 199));
+            Assertions.assertTrue(animations.framesChanged(199, 200));
+
+            LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(64, 64), ImageSize.of(16, 16), 2);
+            ld.fillRect(new Rectangle(0, 0, 4, 4), 0, 40);
+            AnimatedCells cells = new AnimatedCells(ld, animations);
+            ld.addLevelChangeListener(cells);
+            Assertions.assertEquals(16, cells.getCount());
+
+            ld.setTile(1, 40 + 40 * 64, 40);                // (40, 40), in another block
+            ld.setTile(0, 0, 5);
+            Assertions.assertEquals(16, cells.getCount());
+            List<Rectangle> blocks = new ArrayList<>();
+            cells.forEachAnimatedBlock(new Rectangle(0, 0, 64, 64), blocks::add);
+            Assertions.assertEquals(List.of(new Rectangle(0, 0, 16, 16), new Rectangle(32, 32, 16, 16)), blocks);
+
+            blocks.clear();                                 // only the visible part of a block is reported
+            cells.forEachAnimatedBlock(new Rectangle(36, 20, 10, 22), blocks::add);
+            Assertions.assertEquals(List.of(new Rectangle(36, 32, 10, 10)), blocks);
+        } finally {
+            file.delete();
+        }
+    }
+}
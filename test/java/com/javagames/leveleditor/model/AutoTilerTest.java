@@ -0,0 +1,42 @@
+package com.javagames.leveleditor.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+
+class AutoTilerTest {
+    private static final File IN_LEVEL_PATH = new File("test/resources/test-level.xml");
+
+    @Test
+    void place_picksEdgesFromFourNeighbours_works() throws IOException {
+        AutoTiler tiler = AutoTiler.load(AutoTiler.rulesFileFor(IN_LEVEL_PATH));
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(6, 6), ImageSize.of(16, 16), 1);
+        tiler.place(ld, 0, 2, 2, 40);
+        Assertions.assertEquals(40, ld.getTile(0, 2 + 2 * 6));          // isolated: mask 0
+        tiler.place(ld, 0, 3, 2, 60);                                   // a member counts as water too
+        Assertions.assertEquals(40 + 2, ld.getTile(0, 2 + 2 * 6));      // E
+        Assertions.assertEquals(40 + 8, ld.getTile(0, 3 + 2 * 6));      // W
+        tiler.place(ld, 0, 3, 2, Tile.EMPTY_CODE);
+        Assertions.assertEquals(40, ld.getTile(0, 2 + 2 * 6));
+    }
+
+    @Test
+    void retile_picksCornersFromEightNeighbours_works() throws IOException {
+        AutoTiler tiler = AutoTiler.load(AutoTiler.rulesFileFor(IN_LEVEL_PATH));
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(6, 6), ImageSize.of(16, 16), 1);
+        Rectangle area = new Rectangle(1, 1, 3, 3);
+        ld.fillRect(area, 0, 100);
+        tiler.retile(ld, 0, area);
+        Assertions.assertEquals(103, ld.getTile(0, 1 + 6));             // top left: E SE S
+        Assertions.assertEquals(100, ld.getTile(0, 2 + 2 * 6));         // centre: surrounded
+        Assertions.assertEquals(100, ld.getTile(0, 3 + 3 * 6));         // no rule for W NW N - base tile
+
+        ld.setTile(0, 2 + 2 * 6, Tile.EMPTY_CODE);                      // a hole drops the corner: E S
+        tiler.retile(ld, 0, new Rectangle(2, 2, 1, 1));
+        Assertions.assertEquals(102, ld.getTile(0, 1 + 6));
+        Assertions.assertEquals(-1, tiler.terrainOf(7));
+    }
+}
@@ -0,0 +1,75 @@
+package com.javagames.leveleditor.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+class CollisionMapTest {
+
+    @Test
+    void collisionMap_followsEditsAndProperties_works() {
+        TileProperties properties = new TileProperties();
+        properties.set(5, properties.bitOf("solid"), true);
+        properties.set(6, properties.bitOf("ladder"), true);
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(10, 10), ImageSize.of(16, 16), 2);
+        ld.setTile(1, 3, 5);
+        CollisionMap map = new CollisionMap(ld, properties, properties.maskOf("solid"));
+        ld.addLevelChangeListener(map);
+        Assertions.assertTrue(map.isSet(1, 3, 0));
+
+        ld.fillRect(new Rectangle(2, 2, 3, 3), 0, 5);
+        ld.setTile(0, 3 + 3 * 10, 6);                           // a ladder in the middle
+        Assertions.assertTrue(map.isSet(0, 2, 2));
+        Assertions.assertFalse(map.isSet(0, 3, 3));
+        Assertions.assertTrue(map.isSetOnAnyLayer(3, 0));
+
+        properties.set(6, properties.bitOf("solid"), true);
+        map.onTilePropertiesChanged(6);
+        Assertions.assertTrue(map.isSet(0, 3, 3));
+    }
+
+    @Test
+    void tileProperties_saveAndLoad_works() throws IOException {
+        TileProperties properties = new TileProperties();
+        properties.set(12, properties.bitOf("hazard"), true);
+        properties.set(12, properties.bitOf("one-way"), true);
+        File file = Files.createTempFile("palette", ".tiles.xml").toFile();
+        try {
+            properties.save(file);
+            TileProperties loaded = TileProperties.load(file);
+            Assertions.assertEquals(properties.getNames(), loaded.getNames());
+            Assertions.assertEquals(properties.getFlags(12), loaded.getFlags(12));
+            Assertions.assertEquals(0, loaded.getFlags(11));
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test
+    void export_writesOneBitPerCell_works() throws IOException {
+        TileProperties properties = new TileProperties();
+        properties.set(5, 0, true);
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(10, 10), ImageSize.of(16, 16), 1);
+        ld.setTile(0, 70, 5);
+        CollisionMap map = new CollisionMap(ld, properties, 1);
+        File file = Files.createTempFile("level", ".collision").toFile();
+        map.export(file);
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            Assertions.assertEquals(0x4C434F4C, in.readInt());
+            Assertions.assertEquals(1, in.readInt());
+            Assertions.assertEquals(10, in.readInt());
+            Assertions.assertEquals(10, in.readInt());
+            Assertions.assertEquals(1, in.readInt());
+            Assertions.assertEquals(0L, in.readLong());
+            Assertions.assertEquals(1L << (70 - 64), in.readLong());
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+}
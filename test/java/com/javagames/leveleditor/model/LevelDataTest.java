@@ -3,10 +3,13 @@ package com.javagames.leveleditor.model;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 class LevelDataTest {
     private static final String TEMP_DIR = System.getProperty("java.io.tmpdir");
@@ -28,4 +31,107 @@ class LevelDataTest {
         Files.delete(Path.of(TEMP_DIR, TEST_FILE));
         Files.delete(Path.of(TEMP_DIR, TEST_DATA_FILE));
     }
-}
\ No newline at end of file
+
+    @Test
+    void copyAndPasteRegion_works() {
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(8, 8), ImageSize.of(16, 16), 1);
+        ld.setTile(0, 1 + 8, 5);                    // (1, 1)
+        ld.setTile(0, 2 + 2 * 8, 6);                // (2, 2)
+        TileRegion region = ld.copyRegion(new Rectangle(1, 1, 2, 2), 0, 1);
+        Assertions.assertArrayEquals(new int[] { 5, Tile.EMPTY_CODE, Tile.EMPTY_CODE, 6 }, region.codes()[0]);
+
+        TileRegion before = ld.pasteRegion(region, 7, 6, 0);     // clipped to a 1 x 2 block
+        Assertions.assertEquals(1, before.width());
+        Assertions.assertEquals(2, before.height());
+        Assertions.assertEquals(5, ld.getTile(0, 7 + 6 * 8));
+        Assertions.assertEquals(2, ld.getTileIndex().count(5));
+
+        ld.pasteRegion(before, 7, 6, 0);                         // undo
+        Assertions.assertEquals(1, ld.getTileIndex().count(5));
+    }
+
+    @Test
+    void transaction_publishesOneMergedEvent() {
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(8, 8), ImageSize.of(16, 16), 2);
+        List<LevelChangeEvent> events = new ArrayList<>();
+        ld.addLevelChangeListener(events::add);
+
+        ld.begin();
+        ld.setTile(0, 1 + 8, 5);                    // (1, 1)
+        ld.setTile(0, 2 + 8, 5);                    // (2, 1) - touches (1, 1)
+        ld.setTile(0, 6 + 6 * 8, 5);                // (6, 6) - apart from the others
+        ld.fillRect(new Rectangle(3, 3, 2, 2), 1, 7);
+        Assertions.assertTrue(events.isEmpty());
+        ld.commit();
+
+        Assertions.assertEquals(1, events.size());
+        LevelChangeEvent event = events.get(0);
+        Assertions.assertEquals(List.of(new Rectangle(1, 1, 2, 1), new Rectangle(6, 6, 1, 1)),
+                event.dirty(0).getRectangles());
+        Assertions.assertEquals(List.of(new Rectangle(3, 3, 2, 2)), event.dirty(1).getRectangles());
+        Assertions.assertEquals(4, ld.getTileIndex().count(7, 1));
+
+        ld.setTile(0, 1 + 8, 5);                    // no change - no event
+        Assertions.assertEquals(1, events.size());
+        ld.setTile(0, 0, 5);                        // outside a transaction - one event per edit
+        Assertions.assertEquals(2, events.size());
+    }
+
+    @Test
+    void snapshot_isUnaffectedByLaterEdits() throws IOException {
+        LevelData ld = LevelData.forLoadingALevel(IN_LEVEL_PATH);
+        int[][] original = ld.getData();
+        LevelSnapshot snapshot = ld.snapshot();
+        ld.setTile(0, 0, 42);
+        ld.fillRect(new Rectangle(0, 0, 4, 40), 0, 43);          // spans more than one band
+        ld.addLayer();
+        ld.setTile(ld.getLayers() - 1, 1, 44);
+
+        Assertions.assertEquals(original.length, snapshot.getLayers());
+        for (int layer = 0; layer < original.length; layer++) {
+            Assertions.assertArrayEquals(original[layer], snapshot.copyLayer(layer));
+        }
+        Assertions.assertEquals(43, ld.getTile(0, 0));
+        Assertions.assertEquals(44, ld.snapshot().getTile(ld.getLayers() - 1, 1));
+        Assertions.assertTrue(ld.snapshot().getVersion() > snapshot.getVersion());
+    }
+
+    @Test
+    void snapshot_withoutWrites_isReused_works() {
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(64, 64), ImageSize.of(16, 16), 1);
+        ld.setTile(0, 0, 1);
+        LevelSnapshot snapshot = ld.snapshot();
+        Assertions.assertSame(snapshot, ld.snapshot());
+        long bytes = ld.getLayerDataBytes();
+        ld.snapshot();
+        ld.setTile(0, 1, 2);                                // one band copied, however many snapshots were asked for
+        Assertions.assertEquals(bytes + 64L * ChunkedLayers.BAND_ROWS * Integer.BYTES, ld.getLayerDataBytes());
+        Assertions.assertNotSame(snapshot, ld.snapshot());
+        Assertions.assertEquals(Tile.EMPTY_CODE, snapshot.getTile(0, 1));
+    }
+
+    @Test
+    void layerDataBytes_countsBandsHeldBySnapshots_works() {
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(64, 64), ImageSize.of(16, 16), 1);
+        long bandBytes = 64L * ChunkedLayers.BAND_ROWS * Integer.BYTES;
+        Assertions.assertEquals(bandBytes, ld.getLayerDataBytes());         // blank bands are all shared
+        ld.setTile(0, 0, 1);
+        Assertions.assertEquals(2 * bandBytes, ld.getLayerDataBytes());
+        LevelSnapshot snapshot = ld.snapshot();
+        ld.setTile(0, 1, 2);                                                // copies band 0, the snapshot keeps the old one
+        Assertions.assertEquals(3 * bandBytes, ld.getLayerDataBytes());
+        Assertions.assertEquals(1, snapshot.getTile(0, 0));
+        Assertions.assertTrue(ld.getTileIndex().retainedBytes() > 0);
+    }
+
+    @Test
+    void failedEdit_doesNotLeaveTransactionOpen_works() {
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(8, 8), ImageSize.of(16, 16), 1);
+        List<LevelChangeEvent> events = new ArrayList<>();
+        ld.addLevelChangeListener(events::add);
+        Assertions.assertThrows(RuntimeException.class, () -> ld.fillRect(new Rectangle(0, 0, 2, 2), 3, 5));
+        events.clear();
+        ld.setTile(0, 0, 6);
+        Assertions.assertEquals(1, events.size());
+    }
+}
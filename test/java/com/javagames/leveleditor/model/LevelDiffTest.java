@@ -0,0 +1,79 @@
+package com.javagames.leveleditor.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.Arrays;
+
+class LevelDiffTest {
+
+    @Test
+    void between_reportsChangedCells_works() {
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(100, 70), ImageSize.of(16, 16), 2);
+        ld.fillRect(new Rectangle(0, 0, 100, 70), 0, 4);
+        LevelSnapshot before = ld.snapshot();
+        ld.setTile(0, 3 + 5 * 100, 9);
+        ld.setTile(1, 99 + 69 * 100, 0);
+        LevelSnapshot after = ld.snapshot();
+
+        LevelDiff diff = LevelDiff.between(before, after);
+        Assertions.assertEquals(2, diff.size());
+        Assertions.assertEquals(2, diff.getChangedChunks());
+        Assertions.assertEquals(0, diff.layer(0));
+        Assertions.assertEquals(3, diff.x(0));
+        Assertions.assertEquals(5, diff.y(0));
+        Assertions.assertEquals(4, diff.before(0));
+        Assertions.assertEquals(9, diff.after(0));
+        Assertions.assertEquals(Tile.EMPTY_CODE, diff.before(1));
+        Assertions.assertTrue(LevelDiff.between(after, ld.snapshot()).isEmpty());
+
+        int[][] wider = new int[3][120 * 70];              // the extra cells and layer are empty: no changes
+        for (int[] layer : wider) {
+            Arrays.fill(layer, Tile.EMPTY_CODE);
+        }
+        for (int layer = 0; layer < 2; layer++) {
+            for (int y = 0; y < 70; y++) {
+                after.getRow(layer, 0, y, 100, wider[layer], y * 120);
+            }
+        }
+        LevelDiff resized = LevelDiff.between(after, LevelSnapshot.of(wider, ImageSize.of(120, 70), null, null));
+        Assertions.assertTrue(resized.isEmpty());
+        Assertions.assertEquals(120, resized.getWidth());
+        Assertions.assertEquals(3, resized.getLayers());
+    }
+
+    @Test
+    void merge_takesTheirEditsAndFlagsConflicts_works() {
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(40, 40), ImageSize.of(16, 16), 1);
+        ld.fillRect(new Rectangle(0, 0, 40, 40), 0, 1);
+        LevelSnapshot base = ld.snapshot();
+        LevelData ours = LevelData.forNewBlankCanvas(ImageSize.of(40, 40), ImageSize.of(16, 16), 1);
+        LevelDiff.merge(base, base, base).applyTo(ours);
+        ours.setTile(0, 0, 2);                              // ours only
+        ours.setTile(0, 1, 3);                              // both, differently: conflict
+        ours.setTile(0, 2, 5);                              // both, the same way
+        ld.setTile(0, 1, 4);
+        ld.setTile(0, 2, 5);
+        ld.setTile(0, 39 + 39 * 40, 6);                     // theirs only
+        ld.addLayer();
+        ld.setTile(1, 10, 7);
+
+        LevelDiff.Merge merge = LevelDiff.merge(base, ours.snapshot(), ld.snapshot());
+        Assertions.assertEquals(1, merge.getConflictCount());
+        Assertions.assertEquals(1, merge.conflictX(0));
+        Assertions.assertEquals(1, merge.baseCode(0));
+        Assertions.assertEquals(3, merge.ourCode(0));
+        Assertions.assertEquals(4, merge.theirCode(0));
+        Assertions.assertEquals(4, merge.getTheirChanges());
+        Assertions.assertEquals(2, merge.getTakenChanges());
+
+        merge.applyTo(ours);
+        Assertions.assertEquals(2, ours.getLayers());
+        Assertions.assertEquals(2, ours.getTile(0, 0));
+        Assertions.assertEquals(3, ours.getTile(0, 1));
+        Assertions.assertEquals(5, ours.getTile(0, 2));
+        Assertions.assertEquals(6, ours.getTile(0, 39 + 39 * 40));
+        Assertions.assertEquals(7, ours.getTile(1, 10));
+    }
+}
@@ -0,0 +1,120 @@
+package com.javagames.leveleditor.model;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Writes synthetic levels of any size, in the same files the editor saves (xml descriptor, data png with the
+// layers stacked, palette png), so tests aren't limited to the tiny fixture in test/resources. Levels are
+// seeded, so the same arguments always write the same level.
+final class LevelGenerator {
+    static final ImageSize TILE_SIZE = ImageSize.of(16, 16);
+    static final int PALETTE_TILES_WIDE = 16;
+    static final int PALETTE_TILES_HIGH = 16;
+    static final int TILE_COUNT = PALETTE_TILES_WIDE * PALETTE_TILES_HIGH;
+    private static final int CLUSTER_SIZE = 8;              // cells per side of a clustered patch
+    private static final int SPARSE_DIVISOR = 32;           // sparse levels place density / 32 of their cells
+
+    enum Fill {
+        RANDOM,         // each cell filled with probability density, with any tile
+        CLUSTERED,      // patches of one tile (with a few odd cells), each patch there with probability density
+        SPARSE          // scattered single cells, like props on an otherwise empty layer
+    }
+
+    private LevelGenerator() {}
+
+    // writes name.xml, name.png and name-palette.png into dir and returns the xml file
+    static File write(File dir, String name, ImageSize dataSize, int layers, Fill fill, double density, long seed)
+            throws IOException {
+        File paletteFile = new File(dir, name + "-palette.png");
+        writePalette(paletteFile);
+        int[][] cells = cells(dataSize, layers, fill, density, seed);
+        BufferedImage dataImage = new BufferedImage(dataSize.width(), dataSize.height() * layers,
+                BufferedImage.TYPE_INT_RGB);
+        for (int layer = 0; layer < layers; layer++) {
+            dataImage.setRGB(0, layer * dataSize.height(), dataSize.width(), dataSize.height(),
+                    cells[layer], 0, dataSize.width());
+        }
+        ImageIO.write(dataImage, "png", new File(dir, name + ".png"));
+        File levelFile = new File(dir, name + ".xml");
+        Files.writeString(levelFile.toPath(), """
+                <?xml version="1.0" encoding="utf-8"?>
+                <Level modified="generated" layers="%d">
+                    <Palette tileWidth="%d" tileHeight="%d">%s</Palette>
+                    <Data>%s</Data>
+                </Level>
+                """.formatted(layers, TILE_SIZE.width(), TILE_SIZE.height(), paletteFile.getName(), name + ".png"),
+                StandardCharsets.UTF_8);
+        return levelFile;
+    }
+
+    // the cells of a generated level, one int[width * height] per layer; each layer has its own seed
+    static int[][] cells(ImageSize dataSize, int layers, Fill fill, double density, long seed) {
+        int width = dataSize.width();
+        int height = dataSize.height();
+        int[][] cells = new int[layers][width * height];
+        for (int layer = 0; layer < layers; layer++) {
+            SplittableRandom random = new SplittableRandom(seed * 31 + layer);
+            int[] layerCells = cells[layer];
+            Arrays.fill(layerCells, Tile.EMPTY_CODE);
+            switch (fill) {
+                case RANDOM -> {
+                    for (int i = 0; i < layerCells.length; i++) {
+                        if (random.nextDouble() < density) {
+                            layerCells[i] = random.nextInt(TILE_COUNT);
+                        }
+                    }
+                }
+                case CLUSTERED -> {
+                    for (int cy = 0; cy < height; cy += CLUSTER_SIZE) {
+                        for (int cx = 0; cx < width; cx += CLUSTER_SIZE) {
+                            if (random.nextDouble() >= density) {
+                                continue;
+                            }
+                            int code = random.nextInt(TILE_COUNT);
+                            for (int y = cy; y < Math.min(cy + CLUSTER_SIZE, height); y++) {
+                                for (int x = cx; x < Math.min(cx + CLUSTER_SIZE, width); x++) {
+                                    layerCells[x + y * width] = random.nextInt(16) == 0 ? random.nextInt(TILE_COUNT) : code;
+                                }
+                            }
+                        }
+                    }
+                }
+                case SPARSE -> {
+                    int count = (int) (layerCells.length * density / SPARSE_DIVISOR);
+                    for (int i = 0; i < count; i++) {
+                        layerCells[random.nextInt(layerCells.length)] = random.nextInt(TILE_COUNT);
+                    }
+                }
+            }
+        }
+        return cells;
+    }
+
+    // a palette of TILE_COUNT opaque tiles, each a different color with a darker border, so rendered levels
+    // show every cell
+    static void writePalette(File paletteFile) throws IOException {
+        int tileWidth = TILE_SIZE.width();
+        int tileHeight = TILE_SIZE.height();
+        BufferedImage palette = new BufferedImage(PALETTE_TILES_WIDE * tileWidth, PALETTE_TILES_HIGH * tileHeight,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = palette.createGraphics();
+        for (int code = 0; code < TILE_COUNT; code++) {
+            int x = (code % PALETTE_TILES_WIDE) * tileWidth;
+            int y = (code / PALETTE_TILES_WIDE) * tileHeight;
+            Color color = Color.getHSBColor(code / (float) TILE_COUNT, 0.6f + (code % 3) * 0.2f, 0.9f);
+            g2d.setColor(color.darker());
+            g2d.fillRect(x, y, tileWidth, tileHeight);
+            g2d.setColor(color);
+            g2d.fillRect(x + 1, y + 1, tileWidth - 2, tileHeight - 2);
+        }
+        g2d.dispose();
+        ImageIO.write(palette, "png", paletteFile);
+    }
+}
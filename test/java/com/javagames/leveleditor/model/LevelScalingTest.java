@@ -0,0 +1,141 @@
+package com.javagames.leveleditor.model;
+
+import com.javagames.leveleditor.render.LevelRasterizer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+// Loads, edits, renders and saves generated levels of growing size and fails if the cost per cell of any step
+// grows much faster than the level does - so quadratic behaviour shows up as a failing test instead of a
+// stalled editor on a big map. Small levels are dominated by fixed costs, so only growth is checked.
+class LevelScalingTest {
+    private static final ImageSize[] SIZES = {
+            ImageSize.of(64, 32), ImageSize.of(256, 128), ImageSize.of(1024, 512),
+            ImageSize.of(4096, 2048), ImageSize.of(4096, 4096) };
+    private static final int LAYERS = 2;
+    private static final double MAX_TIME_GROWTH = 3.0;      // per cell, between one size and the next
+    private static final double MAX_ALLOCATION_GROWTH = 1.5;
+    private static final long MIN_CHECKED_NANOS = 50_000_000;   // shorter steps are too noisy to compare
+    private static final long MIN_CHECKED_BYTES = 4L << 20;
+    private static final String[] STEPS = { "load", "edit", "render", "save" };
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void loadEditRenderSave_scalesLinearly_works() throws IOException {
+        File dir = Files.createTempDirectory("scaling").toFile();
+        try {
+            measure(dir, SIZES[0]);                         // warm up, not compared
+            List<long[][]> costs = new ArrayList<>();
+            for (ImageSize size : SIZES) {
+                costs.add(measure(dir, size));
+            }
+            for (int i = 1; i < SIZES.length; i++) {
+                double growth = cells(SIZES[i]) / (double) cells(SIZES[i - 1]);
+                for (int step = 0; step < STEPS.length; step++) {
+                    checkGrowth(STEPS[step] + " time", SIZES[i - 1], SIZES[i], growth * MAX_TIME_GROWTH,
+                            costs.get(i - 1)[step][0], costs.get(i)[step][0], MIN_CHECKED_NANOS);
+                    checkGrowth(STEPS[step] + " allocation", SIZES[i - 1], SIZES[i], growth * MAX_ALLOCATION_GROWTH,
+                            costs.get(i - 1)[step][1], costs.get(i)[step][1], MIN_CHECKED_BYTES);
+                }
+            }
+        } finally {
+            try (Stream<java.nio.file.Path> files = Files.walk(dir.toPath())) {
+                files.sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Test
+    void generator_fillsAsAsked_works() {
+        ImageSize size = ImageSize.of(256, 256);
+        Assertions.assertEquals(0.5, filled(LevelGenerator.cells(size, 1, LevelGenerator.Fill.RANDOM, 0.5, 1)), 0.02);
+        Assertions.assertEquals(0.5, filled(LevelGenerator.cells(size, 1, LevelGenerator.Fill.CLUSTERED, 0.5, 1)), 0.06);
+        Assertions.assertTrue(filled(LevelGenerator.cells(size, 1, LevelGenerator.Fill.SPARSE, 0.5, 1)) < 0.02);
+        Assertions.assertArrayEquals(LevelGenerator.cells(size, 2, LevelGenerator.Fill.RANDOM, 0.3, 7)[1],
+                LevelGenerator.cells(size, 2, LevelGenerator.Fill.RANDOM, 0.3, 7)[1]);
+    }
+
+    // nanoseconds and bytes allocated (by all threads) of each step, for one generated level
+    private static long[][] measure(File dir, ImageSize size) throws IOException {
+        String name = "level-" + size.width() + "x" + size.height();
+        File levelFile = LevelGenerator.write(dir, name, size, LAYERS, LevelGenerator.Fill.CLUSTERED, 0.6, 1);
+        long[][] costs = new long[STEPS.length][];
+        Cost cost = new Cost();
+        LevelData ld = LevelData.forLoadingALevel(levelFile);
+        costs[0] = cost.next();
+
+        ld.begin();
+        ld.fillRect(new Rectangle(0, 0, size.width() / 2, size.height() / 2), 0, 3);
+        ld.replaceAll(5, 6, 0);
+        for (int i = 0; i < size.width() * size.height(); i += 97) {
+            ld.setTile(1, i, i % LevelGenerator.TILE_COUNT);
+        }
+        ld.commit();
+        costs[1] = cost.next();
+
+        LevelRasterizer rasterizer = LevelRasterizer.forLevel(ld);
+        int[] pixels = new int[size.width() * size.height()];  // one pixel per cell
+        rasterizer.renderScaled(0, 0, size.width(), size.height(), 1.0 / LevelGenerator.TILE_SIZE.width(),
+                pixels, 0, size.width(), ForkJoinPool.commonPool());
+        costs[2] = cost.next();
+
+        ld.saveXmlLevelFile(new File(dir, name + "-saved.xml"));
+        costs[3] = cost.next();
+        Assertions.assertEquals(3, ld.getTile(0, 0));
+        return costs;
+    }
+
+    private static void checkGrowth(String what, ImageSize from, ImageSize to, double allowed,
+            long fromCost, long toCost, long minChecked) {
+        if (toCost < minChecked) {
+            return;
+        }
+        double growth = toCost / (double) Math.max(fromCost, minChecked / 16);
+        Assertions.assertTrue(growth <= allowed, String.format("%s grew %.1fx from %dx%d to %dx%d (at most %.1fx)",
+                what, growth, from.width(), from.height(), to.width(), to.height(), allowed));
+    }
+
+    private static long cells(ImageSize size) {
+        return (long) size.width() * size.height();
+    }
+
+    private static double filled(int[][] cells) {
+        return java.util.Arrays.stream(cells[0]).filter(code -> code != Tile.EMPTY_CODE).count() / (double) cells[0].length;
+    }
+
+    // time and allocation since the last call
+    private static class Cost {
+        private long nanos = System.nanoTime();
+        private long bytes = allocatedBytes();
+
+        long[] next() {
+            long now = System.nanoTime();
+            long allocated = allocatedBytes();
+            long[] cost = { now - nanos, allocated - bytes };
+            nanos = now;
+            bytes = allocated;
+            return cost;
+        }
+
+        // threads that ended in between take their counts with them, so this can only undercount
+        private static long allocatedBytes() {
+            long total = 0;
+            for (long bytes : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+                total += Math.max(bytes, 0);
+            }
+            return total;
+        }
+    }
+}
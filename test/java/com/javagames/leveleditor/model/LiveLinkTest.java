@@ -0,0 +1,47 @@
+package com.javagames.leveleditor.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+class LiveLinkTest {
+
+    @Test
+    void reader_followsEdits_works() throws IOException {
+        File file = Files.createTempFile("level", ".live").toFile();
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(16, 8), ImageSize.of(16, 16), 2);
+        ld.setTile(1, 3, 42);
+        try (LiveLink link = new LiveLink(ld, file); LiveLinkReader reader = new LiveLinkReader(file)) {
+            ld.addLevelChangeListener(link);
+            Assertions.assertTrue(reader.poll(null));
+            Assertions.assertEquals(16, reader.getWidth());
+            Assertions.assertEquals(2, reader.getLayers());
+            Assertions.assertEquals(42, reader.getTile(1, 3, 0));
+            Assertions.assertFalse(reader.poll(null));
+
+            ld.fillRect(new Rectangle(2, 2, 3, 2), 0, 7);
+            ld.setTile(1, 15 + 7 * 16, 9);
+            List<Rectangle> patched = new ArrayList<>();
+            Assertions.assertTrue(reader.poll((layer, area) -> patched.add(area)));
+            Assertions.assertEquals(List.of(new Rectangle(2, 2, 3, 2), new Rectangle(15, 7, 1, 1)), patched);
+            Assertions.assertArrayEquals(ld.snapshot().copyLayer(0), reader.getLayer(0));
+            Assertions.assertArrayEquals(ld.snapshot().copyLayer(1), reader.getLayer(1));
+
+            ld.setDataSize(ImageSize.of(40, 30));          // structural - the file grows and is reread
+            ld.setTile(0, 40 * 30 - 1, 5);
+            Assertions.assertTrue(reader.poll(null));
+            Assertions.assertEquals(40, reader.getWidth());
+            Assertions.assertEquals(30, reader.getHeight());
+            Assertions.assertEquals(5, reader.getTile(0, 39, 29));
+            Assertions.assertEquals(Tile.EMPTY_CODE, reader.getTile(1, 3, 0));
+        } finally {
+            file.delete();
+        }
+    }
+}
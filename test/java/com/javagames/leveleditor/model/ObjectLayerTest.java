@@ -0,0 +1,89 @@
+package com.javagames.leveleditor.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+class ObjectLayerTest {
+
+    @Test
+    void queries_matchABruteForceScan_works() {
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(256, 256), ImageSize.of(16, 16), 1);
+        ObjectLayer objects = ld.getObjects();
+        List<LevelObject> all = new ArrayList<>();
+        Random random = new Random(3);
+        for (int id = 1; id <= 20000; id++) {
+            LevelObject object = LevelObject.of(id, "pickup", random.nextInt(4200) - 50, random.nextInt(4200) - 50,
+                    random.nextInt(300), random.nextInt(40));
+            objects.add(object);
+            all.add(object);
+        }
+        for (int i = 0; i < 5000; i += 2) {                 // leave holes in the slots
+            Assertions.assertTrue(objects.remove(all.get(i)));
+        }
+        all.removeIf(object -> object.id() % 2 == 1 && object.id() <= 5000);
+        LevelObject moved = all.get(100);
+        objects.replace(moved, moved.movedTo(10, 10));
+        all.set(100, moved.movedTo(10, 10));
+        Assertions.assertEquals(all.size(), objects.size());
+
+        for (int i = 0; i < 50; i++) {
+            Rectangle area = new Rectangle(random.nextInt(4096), random.nextInt(4096),
+                    random.nextInt(600), random.nextInt(600));
+            List<LevelObject> expected = all.stream().filter(o -> o.getBounds().intersects(area))
+                    .sorted(Comparator.comparingInt(LevelObject::id)).toList();
+            List<LevelObject> found = objects.objectsIn(area);
+            found.sort(Comparator.comparingInt(LevelObject::id));
+            Assertions.assertEquals(expected, found);
+
+            int x = area.x;
+            int y = area.y;
+            LevelObject top = all.stream().filter(o -> o.getBounds().contains(x, y))
+                    .max(Comparator.comparingInt(LevelObject::id)).orElse(null);
+            Assertions.assertEquals(top, objects.objectAt(x, y));
+        }
+    }
+
+    @Test
+    void objectEdits_arePublishedAsLevelChanges_works() {
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(8, 8), ImageSize.of(16, 16), 1);
+        List<LevelChangeEvent> events = new ArrayList<>();
+        ld.addLevelChangeListener(events::add);
+        LevelObject spawn = LevelObject.of(1, "spawn", 16, 16, 16, 16);
+        ld.getObjects().add(spawn);
+        ld.getObjects().replace(spawn, spawn.movedTo(64, 16));
+        Assertions.assertEquals(2, events.size());
+        Assertions.assertEquals(new Rectangle(16, 16, 64, 16), events.get(1).objects());
+        Assertions.assertTrue(events.get(1).dirty(0).isEmpty());
+        Assertions.assertEquals(2, ld.getVersion());
+    }
+
+    @Test
+    void objects_saveAndLoad_works() throws IOException {
+        LevelData ld = LevelData.forLoadingALevel(new File("test/resources/test-level.xml"));
+        ld.getObjects().add(new LevelObject(7, "door", 32, 48, 16, 32, Map.of("target", "level-2")));
+        ld.getObjects().add(LevelObject.of(9, "spawn", 0, 0, 16, 16));
+        File dir = Files.createTempDirectory("objects").toFile();
+        File levelFile = new File(dir, "level.xml");
+        try {
+            ld.saveXmlLevelFile(levelFile);
+            LevelData loaded = LevelData.forLoadingALevel(levelFile);
+            Assertions.assertEquals(ld.getObjects().getObjects(), loaded.getObjects().getObjects());
+            Assertions.assertEquals(10, loaded.getObjects().nextId());
+            Assertions.assertEquals(0, loaded.getVersion());
+        } finally {
+            new File(dir, "level.xml").delete();
+            new File(dir, "level.png").delete();
+            dir.delete();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.javagames.leveleditor.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class PathFinderTest {
+
+    @Test
+    void findPath_goesThroughTheGapInAWall_works() {
+        // 10 x 10 with a wall down column 5, open only at row 8
+        boolean[] wall = new boolean[100];
+        for (int y = 0; y < 10; y++) {
+            wall[5 + y * 10] = y != 8;
+        }
+        PathFinder finder = new PathFinder(10, 10);
+        Assertions.assertTrue(finder.findPath(0, 9, cell -> wall[cell]));
+        int[] path = finder.getPath();
+        int length = finder.getPathLength();
+        Assertions.assertEquals(0, path[0]);
+        Assertions.assertEquals(9, path[length - 1]);
+        boolean throughGap = false;
+        for (int i = 0; i < length; i++) {
+            Assertions.assertFalse(wall[path[i]]);
+            throughGap |= path[i] == 5 + 8 * 10;
+            if (i > 0) {
+                Assertions.assertTrue(Math.abs(path[i] % 10 - path[i - 1] % 10) <= 1
+                        && Math.abs(path[i] / 10 - path[i - 1] / 10) <= 1);
+            }
+        }
+        Assertions.assertTrue(throughGap);
+        Assertions.assertEquals(19, length);                    // 8 moves down to (4, 8), across, 8 back up
+
+        // the same finder is reused: close the gap and there's no way across
+        wall[5 + 8 * 10] = true;
+        Assertions.assertFalse(finder.findPath(0, 9, cell -> wall[cell]));
+        Assertions.assertEquals(0, finder.getPathLength());
+
+        // and an open grid gives the straight line
+        Assertions.assertTrue(finder.findPath(0, 99, cell -> false));
+        Assertions.assertEquals(10, finder.getPathLength());
+    }
+
+    @Test
+    void findPath_doesNotCutCorners_works() {
+        // 3 x 3 with the cells (1, 0) and (0, 1) solid - the diagonal from (0, 0) is closed off
+        boolean[] solid = new boolean[9];
+        solid[1] = true;
+        solid[3] = true;
+        PathFinder finder = new PathFinder(3, 3);
+        Assertions.assertFalse(finder.findPath(0, 4, cell -> solid[cell]));
+        solid[1] = false;
+        Assertions.assertTrue(finder.findPath(0, 4, cell -> solid[cell]));
+        Assertions.assertEquals(3, finder.getPathLength());     // (0, 0) -> (1, 0) -> (1, 1)
+    }
+
+    @Test
+    void continuePath_matchesAFreshSearch_works() {
+        int n = 64;
+        boolean[] solid = new boolean[n * n];
+        Random random = new Random(7);
+        for (int i = 1; i < solid.length; i++) {
+            solid[i] = random.nextInt(100) < 20;
+        }
+        PathFinder dragged = new PathFinder(n, n);
+        PathFinder fresh = new PathFinder(n, n);
+        dragged.findPath(0, 0, cell -> solid[cell]);
+        for (int step = 1; step < n; step++) {
+            int goal = step + (step / 2) * n;               // the goal wanders off like a drag
+            boolean found = dragged.continuePath(goal);
+            Assertions.assertEquals(fresh.findPath(0, goal, cell -> solid[cell]), found);
+            Assertions.assertEquals(cost(fresh, n), cost(dragged, n));
+        }
+    }
+
+    // path cost in the finder's units: 10 per straight step, 14 per diagonal
+    private static int cost(PathFinder finder, int width) {
+        int cost = 0;
+        int[] path = finder.getPath();
+        for (int i = 1; i < finder.getPathLength(); i++) {
+            boolean diagonal = path[i] % width != path[i - 1] % width && path[i] / width != path[i - 1] / width;
+            cost += diagonal ? 14 : 10;
+        }
+        return cost;
+    }
+}
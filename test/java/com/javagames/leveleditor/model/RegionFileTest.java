@@ -0,0 +1,99 @@
+package com.javagames.leveleditor.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+class RegionFileTest {
+    private static final int RANDOM_READS = 2000;
+    private static final long MAX_MEDIAN_READ_NANOS = 2_000_000;    // a 64 x 64 region reads in ~50 us
+
+    @Test
+    void export_roundTrip_works() throws IOException {
+        File file = Files.createTempFile("level", ".regions").toFile();
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(50, 20), ImageSize.of(16, 16), 2);
+        ld.fillRect(new Rectangle(16, 0, 16, 16), 0, 3);    // exactly region 1,0: uniform
+        ld.setTile(0, 49 + 19 * 50, 70000);                 // clipped corner region: mixed
+        ld.fillRect(new Rectangle(0, 16, 4, 4), 1, 0);      // code 0 isn't empty
+        try {
+            RegionFile.export(ld.snapshot(), file, 16);
+            try (RegionReader reader = new RegionReader(file)) {
+                Assertions.assertEquals(4, reader.getRegionsWide());
+                Assertions.assertEquals(2, reader.getRegionsHigh());
+                Assertions.assertEquals(2, reader.regionWidth(3));
+                Assertions.assertEquals(4, reader.regionHeight(1));
+                Assertions.assertTrue(reader.isEmpty(0, 0, 0));
+                Assertions.assertFalse(reader.isEmpty(0, 1, 0));
+                Assertions.assertFalse(reader.isEmpty(1, 0, 1));
+                for (int layer = 0; layer < 2; layer++) {
+                    Assertions.assertArrayEquals(ld.snapshot().copyLayer(layer), readLayer(reader, layer));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    // random access over a 2048 x 2048, 2 layer level: every read is right, and a typical one is far from
+    // having to decode the whole file
+    @Test
+    void readRegion_randomAccess_works() throws IOException {
+        File file = Files.createTempFile("level", ".regions").toFile();
+        int size = 2048;
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(size, size), ImageSize.of(16, 16), 2);
+        Random random = new Random(1);
+        ld.begin();
+        for (int i = 0; i < size * size; i++) {
+            ld.setTile(0, i, (i / size / 8 + i % size / 8) % 5);            // terrain patches
+            if (random.nextInt(20) == 0) {
+                ld.setTile(1, i, random.nextInt(400));                      // scattered props
+            }
+        }
+        ld.commit();
+        try {
+            RegionFile.export(ld.snapshot(), file, RegionFile.DEFAULT_REGION_SIZE);
+            try (RegionReader reader = new RegionReader(file)) {
+                int[] region = new int[reader.getRegionSize() * reader.getRegionSize()];
+                long[] nanos = new long[RANDOM_READS];
+                for (int i = 0; i < RANDOM_READS; i++) {
+                    int layer = random.nextInt(2);
+                    int rx = random.nextInt(reader.getRegionsWide());
+                    int ry = random.nextInt(reader.getRegionsHigh());
+                    long start = System.nanoTime();
+                    reader.readRegion(layer, rx, ry, region);
+                    nanos[i] = System.nanoTime() - start;
+                    int x = rx * reader.getRegionSize() + 5;
+                    int y = ry * reader.getRegionSize() + 7;
+                    Assertions.assertEquals(ld.getTile(layer, x + y * size), region[5 + 7 * reader.regionWidth(rx)]);
+                }
+                Arrays.sort(nanos);
+                long median = nanos[RANDOM_READS / 2];
+                Assertions.assertTrue(median < MAX_MEDIAN_READ_NANOS,
+                        "median region read took " + median / 1000 + " us");
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static int[] readLayer(RegionReader reader, int layer) throws IOException {
+        int[] cells = new int[reader.getWidth() * reader.getHeight()];
+        for (int ry = 0; ry < reader.getRegionsHigh(); ry++) {
+            for (int rx = 0; rx < reader.getRegionsWide(); rx++) {
+                int[] region = reader.readRegion(layer, rx, ry);
+                int w = reader.regionWidth(rx);
+                for (int y = 0; y < reader.regionHeight(ry); y++) {
+                    System.arraycopy(region, y * w, cells, rx * reader.getRegionSize()
+                            + (ry * reader.getRegionSize() + y) * reader.getWidth(), w);
+                }
+            }
+        }
+        return cells;
+    }
+}
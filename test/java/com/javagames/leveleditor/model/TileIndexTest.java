@@ -0,0 +1,114 @@
+package com.javagames.leveleditor.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+class TileIndexTest {
+    private static final File IN_LEVEL_PATH = new File("test/resources/test-level.xml");
+
+    @Test
+    void cellBitmap_addRemoveAndIterate_works() {
+        CellBitmap cells = new CellBitmap();
+        int[] expected = { 3, 64, 4095, 4096, 70000, 1 << 20 };
+        for (int cell : expected) {
+            Assertions.assertTrue(cells.add(cell));
+        }
+        Assertions.assertFalse(cells.add(64));
+        Assertions.assertArrayEquals(expected, cells.toArray());
+        Assertions.assertTrue(cells.remove(4096));
+        Assertions.assertFalse(cells.contains(4096));
+        Assertions.assertEquals(expected.length - 1, cells.cardinality());
+
+        StringBuilder inRange = new StringBuilder();
+        cells.forEachInRange(64, 70001, cell -> inRange.append(cell).append(' '));
+        Assertions.assertEquals("64 4095 70000 ", inRange.toString());
+    }
+
+    @Test
+    void index_tracksEdits_works() {
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(8, 8), ImageSize.of(16, 16), 2);
+        ld.setTile(0, 5, 7);
+        ld.setTile(1, 5, 7);
+        ld.setTile(1, 6, 7);
+        TileIndex index = ld.getTileIndex();
+        Assertions.assertEquals(3, index.count(7));
+        Assertions.assertEquals(2, index.count(7, 1));
+
+        ld.setTile(1, 5, Tile.EMPTY_CODE);
+        Assertions.assertEquals(1, index.count(7, 1));
+        Assertions.assertArrayEquals(new int[] { 7 }, index.codes());
+    }
+
+    @Test
+    void replaceAll_movesOccurrences_works() {
+        LevelData ld = LevelData.forNewBlankCanvas(ImageSize.of(8, 8), ImageSize.of(16, 16), 2);
+        ld.setTile(0, 1, 3);
+        ld.setTile(1, 2, 3);
+        ld.setTile(1, 3, 4);
+        List<LevelChangeEvent> events = new ArrayList<>();
+        ld.addLevelChangeListener(events::add);
+        CellBitmap[] replaced = ld.replaceAll(3, 4, -1);
+        DirtyRegion dirty = events.get(0).dirty(1);         // just the replaced cells, not a box around them
+        Assertions.assertTrue(dirty.getRectangles().isEmpty());
+        List<Integer> visited = new ArrayList<>();
+        dirty.forEachCell(8, visited::add);
+        Assertions.assertEquals(List.of(2), visited);
+        Assertions.assertArrayEquals(new int[] { 1 }, replaced[0].toArray());
+        Assertions.assertArrayEquals(new int[] { 2 }, replaced[1].toArray());
+        Assertions.assertEquals(4, ld.getTile(1, 2));
+        Assertions.assertFalse(ld.getTileIndex().contains(3));
+        Assertions.assertEquals(3, ld.getTileIndex().count(4));
+
+        ld.setTile(0, 1, 5);                                // the result is the caller's, not the index's
+        Assertions.assertArrayEquals(new int[] { 1 }, replaced[0].toArray());
+        replaced[1].add(7);
+        Assertions.assertEquals(2, ld.getTileIndex().count(4));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> ld.getTileIndex().occurrences(9, 0).add(1));
+    }
+
+    @Test
+    void index_matchesLoadedLevel_works() throws IOException {
+        LevelData ld = LevelData.forLoadingALevel(IN_LEVEL_PATH);
+        TileIndex index = ld.getTileIndex();
+        int[][] data = ld.getData();
+        int nonEmpty = 0;
+        for (int[] layer : data) {
+            for (int code : layer) {
+                nonEmpty += code != Tile.EMPTY_CODE ? 1 : 0;
+            }
+        }
+        int indexed = 0;
+        for (int code : index.codes()) {
+            indexed += index.count(code);
+        }
+        Assertions.assertEquals(nonEmpty, indexed);
+    }
+
+    @Test
+    void of_indexesEveryLayer_works() {
+        int[][] data = new int[4][64 * 64];
+        for (int layer = 0; layer < data.length; layer++) {
+            java.util.Arrays.fill(data[layer], Tile.EMPTY_CODE);
+            for (int i = layer; i < data[layer].length; i += 3) {
+                data[layer][i] = i % 5;                     // codes 0..4, a different mix on every layer
+            }
+        }
+        TileIndex index = TileIndex.of(data);
+        Assertions.assertArrayEquals(new int[] { 0, 1, 2, 3, 4 }, index.codes());
+        for (int layer = 0; layer < data.length; layer++) {
+            for (int code = 0; code < 5; code++) {
+                int expected = 0;
+                for (int cell : data[layer]) {
+                    expected += cell == code ? 1 : 0;
+                }
+                Assertions.assertEquals(expected, index.count(code, layer));
+                Assertions.assertEquals(expected, index.occurrences(code, layer).toArray().length);
+            }
+        }
+    }
+}
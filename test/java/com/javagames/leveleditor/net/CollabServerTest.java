@@ -0,0 +1,158 @@
+package com.javagames.leveleditor.net;
+
+import com.javagames.leveleditor.model.ImageSize;
+import com.javagames.leveleditor.model.LevelData;
+import com.javagames.leveleditor.model.Tile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class CollabServerTest {
+    private static final int CLIENTS = 4;
+    private static final int BATCHES = 500;
+
+    @Test
+    void deltas_roundTrip_works() throws IOException {
+        DeltaProtocol.Deltas deltas = new DeltaProtocol.Deltas();
+        deltas.add(1, 70000, 5);
+        deltas.add(0, 3, Tile.EMPTY_CODE);
+        deltas.add(0, 2, 0);
+        deltas.add(0, 3, 9);                                // the later delta of a cell wins
+        deltas.sort();
+        DeltaProtocol.FrameBuilder frame = new DeltaProtocol.FrameBuilder(DeltaProtocol.DELTAS, 0);
+        deltas.writeTo(frame);
+        java.nio.ByteBuffer in = frame.finish();
+        Assertions.assertEquals(in.remaining() - 5, in.getInt() - 1);
+        Assertions.assertEquals(DeltaProtocol.DELTAS, in.get());
+        DeltaProtocol.Deltas read = DeltaProtocol.Deltas.readFrom(in);
+        Assertions.assertEquals(3, read.size());
+        Assertions.assertEquals("0:2=0 0:3=9 1:70000=5", describe(read));
+        Assertions.assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    void clients_convergeUnderConcurrentEdits_works() throws Exception {
+        LevelData hostLevel = LevelData.forNewBlankCanvas(ImageSize.of(64, 48), ImageSize.of(16, 16), 2);
+        hostLevel.fillRect(new Rectangle(0, 0, 8, 8), 1, 77);
+        List<ExecutorService> owners = new ArrayList<>();
+        List<CollabClient> clients = new ArrayList<>();
+        try (CollabServer server = CollabServer.onLocalhost(hostLevel, 0)) {
+            server.start();
+            InetSocketAddress address = new InetSocketAddress(java.net.InetAddress.getLoopbackAddress(), server.getPort());
+            for (int c = 0; c < CLIENTS; c++) {
+                ExecutorService owner = Executors.newSingleThreadExecutor();
+                LevelData level = LevelData.forNewBlankCanvas(ImageSize.of(8, 8), ImageSize.of(16, 16), 1);
+                clients.add(owner.submit(() -> new CollabClient(level, address, owner)).get());
+                owners.add(owner);
+            }
+            Assertions.assertEquals(77, clients.get(0).getLevel().getTile(1, 0));
+            Assertions.assertEquals(64, clients.get(3).getLevel().getDataSize().width());
+
+            List<Future<?>> editing = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                LevelData level = clients.get(c).getLevel();
+                Random random = new Random(c);
+                for (int b = 0; b < BATCHES; b++) {         // small batches, all clients at once
+                    editing.add(owners.get(c).submit(() -> {
+                        level.begin();
+                        for (int i = 0; i < 8; i++) {
+                            int code = random.nextInt(10) == 0 ? Tile.EMPTY_CODE : random.nextInt(300);
+                            level.setTile(random.nextInt(2), random.nextInt(64 * 8), code);    // contended rows
+                        }
+                        level.commit();
+                    }));
+                }
+            }
+            for (Future<?> f : editing) {
+                f.get(10, TimeUnit.SECONDS);
+            }
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            boolean converged = false;
+            while (!converged && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+                converged = true;
+                for (int c = 0; c < CLIENTS; c++) {
+                    CollabClient client = clients.get(c);
+                    int[][] cells = owners.get(c).submit(() -> client.getLevel().getData()).get();
+                    for (int layer = 0; layer < 2; layer++) {
+                        converged &= java.util.Arrays.equals(server.snapshot().copyLayer(layer), cells[layer]);
+                    }
+                }
+            }
+            Assertions.assertTrue(converged, "clients didn't converge on the server's cells");
+            Assertions.assertEquals(CLIENTS, server.getClientCount());
+        } finally {
+            for (int c = 0; c < clients.size(); c++) {
+                clients.get(c).close();
+            }
+            owners.forEach(ExecutorService::shutdownNow);
+        }
+    }
+
+    @Test
+    void client_disconnectsWhenResized_works() throws Exception {
+        LevelData hostLevel = LevelData.forNewBlankCanvas(ImageSize.of(16, 16), ImageSize.of(16, 16), 1);
+        ExecutorService owner = Executors.newSingleThreadExecutor();
+        try (CollabServer server = CollabServer.onLocalhost(hostLevel, 0)) {
+            server.start();
+            InetSocketAddress address = new InetSocketAddress(java.net.InetAddress.getLoopbackAddress(), server.getPort());
+            LevelData level = LevelData.forNewBlankCanvas(ImageSize.of(16, 16), ImageSize.of(16, 16), 1);
+            CollabClient client = owner.submit(() -> new CollabClient(level, address, owner)).get();
+            CountDownLatch disconnected = new CountDownLatch(1);
+            client.setOnDisconnected(disconnected::countDown);
+            owner.submit(() -> {
+                level.setDataSize(ImageSize.of(32, 32));
+                level.setTile(0, 32 * 32 - 1, 5);           // would be outside the session's cells
+            }).get(5, TimeUnit.SECONDS);
+            Assertions.assertTrue(disconnected.await(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(Tile.EMPTY_CODE, server.snapshot().getTile(0, 255));
+            client.close();
+        } finally {
+            owner.shutdownNow();
+        }
+    }
+
+    @Test
+    void client_receivesLevelLargerThanOneFrame_works() throws Exception {
+        int width = 1000;                                   // 4000 bytes a row: several CELLS frames per layer
+        LevelData hostLevel = LevelData.forNewBlankCanvas(ImageSize.of(width, 700), ImageSize.of(16, 16), 2);
+        hostLevel.fillRect(new Rectangle(0, 0, width, 700), 0, 3);
+        hostLevel.setTile(1, width * 700 - 1, 9);
+        Assertions.assertTrue(DeltaProtocol.cellsFrameRows(width) < 700);
+        ExecutorService owner = Executors.newSingleThreadExecutor();
+        try (CollabServer server = CollabServer.onLocalhost(hostLevel, 0)) {
+            server.start();
+            InetSocketAddress address = new InetSocketAddress(java.net.InetAddress.getLoopbackAddress(), server.getPort());
+            LevelData level = LevelData.forNewBlankCanvas(ImageSize.of(8, 8), ImageSize.of(16, 16), 1);
+            CollabClient client = owner.submit(() -> new CollabClient(level, address, owner)).get(10, TimeUnit.SECONDS);
+            Assertions.assertEquals(2, level.getLayers());
+            Assertions.assertEquals(3, level.getTile(0, width * 700 - 1));
+            Assertions.assertEquals(9, level.getTile(1, width * 700 - 1));
+            Assertions.assertEquals(Tile.EMPTY_CODE, level.getTile(1, 0));
+            client.close();
+        } finally {
+            owner.shutdownNow();
+        }
+    }
+
+    private static String describe(DeltaProtocol.Deltas deltas) {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < deltas.size(); i++) {
+            s.append(i > 0 ? " " : "").append(deltas.layer(i)).append(':').append(deltas.index(i))
+                    .append('=').append(deltas.code(i));
+        }
+        return s.toString();
+    }
+}
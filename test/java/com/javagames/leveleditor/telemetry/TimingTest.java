@@ -0,0 +1,24 @@
+package com.javagames.leveleditor.telemetry;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TimingTest {
+
+    @Test
+    void record_fillsHistogram_works() {
+        Timing timing = new Timing("test");
+        timing.record(500_000);                             // 0.5 ms
+        timing.record(3_000_000);
+        timing.record(3_500_000);
+        timing.record(60_000_000_000L);                     // a minute: slower than every bound
+        Timing.Stats stats = timing.getStats();
+        Assertions.assertEquals(4, stats.getCount());
+        Assertions.assertEquals(60_000.0, stats.getMaxMillis());
+        long[] counts = stats.getBucketCounts();
+        Assertions.assertEquals(stats.getBucketBoundsMillis().length + 1, counts.length);
+        Assertions.assertEquals(1, counts[0]);
+        Assertions.assertEquals(2, counts[2]);              // under 5 ms
+        Assertions.assertEquals(1, counts[counts.length - 1]);
+    }
+}